@@ -0,0 +1,836 @@
+package run;
+
+import run.util.IdAllocator;
+import run.util.IntObjectMap;
+import tasks.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Менеджер работы с задачами в памяти с хранением полей задач по столбцам (struct of arrays)
+ * для аналитики по большому количеству задач
+ * <p>
+ * - поля задач хранятся в параллельных массивах примитивов (строка - задача): идентификатор, тип,
+ * старт (секунды от 1970-01-01 UTC), длительность (секунды), статус, идентификатор эпика;
+ * имена и описания - в общем массиве символов (ссылка - смещение и длина)
+ * - при удалении задачи на ее место переносится последняя строка, массивы остаются без пропусков
+ * - подсчеты по статусам, поиск пересечений и загрузка по времени - циклы по массивам
+ * без обращения к объектам задач и LocalDateTime (см. {@link #getStatusCounts()},
+ * {@link #getMaxConcurrency()}, {@link #getUtilization(LocalDateTime, Duration, int)})
+ * - объекты задач создаются при получении задач из менеджера; изменение полученного объекта
+ * не изменяет менеджер (изменения передаются методами update...)
+ * - время хранится с точностью до секунды; задачи без времени старта (AbstractTask.DEFAULT_TIME)
+ * не пересекаются с другими задачами и идут в списке приоритетов после остальных в порядке идентификатора
+ * - промежутки задач полуоткрытые [start, end), как в InMemoryTaskManager: задачи нулевой длительности
+ * хранятся в расписании отдельно и могут стартовать одновременно с задачей ненулевой длительности
+ * - идентификаторы задач, эпиков и подзадач не повторяются (задача не добавляется,
+ * если в менеджере есть задача другого типа с тем же идентификатором)
+ * - подзадачи эпика определяются по идентификатору эпика подзадачи
+ *
+ * @see InMemoryTaskManager
+ */
+public class ColumnarTaskManager implements TaskManager {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final byte NO_STATUS = -1;
+    private static final Status[] STATUSES = Status.values();
+    /**
+     * старт задачи без времени старта (AbstractTask.DEFAULT_TIME)
+     */
+    private static final long UNSCHEDULED = AbstractTask.DEFAULT_TIME.toEpochSecond(ZoneOffset.UTC);
+
+    private final IdAllocator idAllocator = new IdAllocator();
+    private int size;
+    private int[] ids = new int[DEFAULT_CAPACITY];
+    private byte[] types = new byte[DEFAULT_CAPACITY];
+    private long[] starts = new long[DEFAULT_CAPACITY];
+    private long[] durations = new long[DEFAULT_CAPACITY];
+    private byte[] statuses = new byte[DEFAULT_CAPACITY];
+    private int[] epicIds = new int[DEFAULT_CAPACITY];
+    private long[] names = new long[DEFAULT_CAPACITY];
+    private long[] descriptions = new long[DEFAULT_CAPACITY];
+    private final StringHeap strings = new StringHeap();
+    /**
+     * строка задачи по идентификатору
+     */
+    private final IntObjectMap<Integer> rows = new IntObjectMap<>();
+    /**
+     * подзадачи по идентификатору эпика (по возрастанию идентификатора)
+     */
+    private final IntObjectMap<TreeSet<Integer>> subsOfEpic = new IntObjectMap<>();
+    /**
+     * расписание: старт - идентификатор задачи/подзадачи ненулевой длительности (старты таких задач не совпадают)
+     */
+    private final TreeMap<Long, Integer> schedule = new TreeMap<>();
+    /**
+     * расписание задач нулевой длительности: старт - идентификаторы задач/подзадач
+     * (в списке приоритетов идут перед задачей ненулевой длительности с тем же стартом)
+     */
+    private final TreeMap<Long, TreeSet<Integer>> points = new TreeMap<>();
+    private final Set<Integer> unscheduled = new TreeSet<>();
+    private final HistoryManager history;
+
+    public ColumnarTaskManager(HistoryManager history) {
+        this.history = history;
+    }
+
+    public void setIdForNewTask(int initialValue) {
+        idAllocator.reset(initialValue);
+    }
+
+    @Override
+    public int getNewTaskId() {
+        return idAllocator.nextId();
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        List<Task> list = new ArrayList<>();
+        rows.forEach((id, row) -> {
+            if (types[row] == TaskType.NORM.ordinal()) {
+                list.add(toTask(row));
+            }
+        });
+        return list;
+    }
+
+    @Override
+    public List<EpicTask> getAllEpics() {
+        List<EpicTask> list = new ArrayList<>();
+        rows.forEach((id, row) -> {
+            if (types[row] == TaskType.EPIC.ordinal()) {
+                list.add(toEpic(row));
+            }
+        });
+        return list;
+    }
+
+    @Override
+    public List<SubTask> getAllSubs() {
+        List<SubTask> list = new ArrayList<>();
+        rows.forEach((id, row) -> {
+            if (types[row] == TaskType.SUBT.ordinal()) {
+                list.add(toSub(row));
+            }
+        });
+        return list;
+    }
+
+    @Override
+    public Task getTaskById(int id) {
+        int row = rowOf(id, TaskType.NORM);
+        return row < 0 ? null : viewed(toTask(row));
+    }
+
+    @Override
+    public EpicTask getEpicById(int id) {
+        int row = rowOf(id, TaskType.EPIC);
+        return row < 0 ? null : viewed(toEpic(row));
+    }
+
+    @Override
+    public SubTask getSubById(int id) {
+        int row = rowOf(id, TaskType.SUBT);
+        return row < 0 ? null : viewed(toSub(row));
+    }
+
+    @Override
+    public int addNewTask(Task task) {
+        return addScheduled(task, TaskType.NORM, -1);
+    }
+
+    @Override
+    public int addNewEpic(EpicTask epic) {
+        if (epic == null || rows.containsKey(epic.getId())) {
+            return -1;
+        }
+        int row = addRow(epic.getId(), TaskType.EPIC);
+        starts[row] = UNSCHEDULED;
+        statuses[row] = (byte) Status.N_A.ordinal();
+        epicIds[row] = -1;
+        setStrings(row, epic);
+        return epic.getId();
+    }
+
+    @Override
+    public int addNewSub(SubTask sub) {
+        return addScheduled(sub, TaskType.SUBT, sub == null ? -1 : sub.getOverId());
+    }
+
+    @Override
+    public int updateTask(Task task) {
+        return updateScheduled(task, TaskType.NORM, -1);
+    }
+
+    @Override
+    public int updateEpic(EpicTask epic) {
+        int row = epic == null ? -1 : rowOf(epic.getId(), TaskType.EPIC);
+        if (row < 0) {
+            return -1;
+        }
+        releaseStrings(row);
+        setStrings(row, epic);
+        return epic.getId();
+    }
+
+    @Override
+    public int updateSub(SubTask sub) {
+        return updateScheduled(sub, TaskType.SUBT, sub == null ? -1 : sub.getOverId());
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        deleteAll(TaskType.NORM);
+    }
+
+    /**
+     * удаление эпиков и их подзадач
+     */
+    @Override
+    public void deleteAllEpics() {
+        List<Integer> epicsToRemove = new ArrayList<>();
+        for (int row = 0; row < size; row++) {
+            if (types[row] == TaskType.EPIC.ordinal()) {
+                epicsToRemove.add(ids[row]);
+            }
+        }
+        epicsToRemove.forEach(this::deleteEpicById);
+    }
+
+    @Override
+    public void deleteAllSubs() {
+        deleteAll(TaskType.SUBT);
+    }
+
+    @Override
+    public void deleteTaskById(int id) {
+        deleteRow(rowOf(id, TaskType.NORM));
+    }
+
+    @Override
+    public void deleteEpicById(int id) {
+        int row = rowOf(id, TaskType.EPIC);
+        if (row < 0) {
+            return;
+        }
+        clearSubsListOfEpic(id);
+        deleteRow(rowOf(id, TaskType.EPIC));
+    }
+
+    @Override
+    public void deleteSubById(int id) {
+        deleteRow(rowOf(id, TaskType.SUBT));
+    }
+
+    @Override
+    public List<SubTask> getSubsForEpicId(int id) {
+        List<SubTask> subs = new ArrayList<>();
+        if (rowOf(id, TaskType.EPIC) >= 0) {
+            for (int subId : subIds(id)) {
+                subs.add(toSub(rows.get(subId)));
+            }
+        }
+        return subs;
+    }
+
+    @Override
+    public Status getTaskStatus(int id) {
+        int row = rowOf(id, TaskType.NORM);
+        return row < 0 ? null : status(row);
+    }
+
+    /**
+     * статус эпика по статусам подзадач (правила - см. {@link EpicTask#getSubsStatus()}) - O(k)
+     */
+    @Override
+    public Status getEpicStatus(int id) {
+        if (rowOf(id, TaskType.EPIC) < 0) {
+            return Status.N_A;
+        }
+        int[] counts = new int[STATUSES.length];
+        Set<Integer> subs = subIds(id);
+        for (int subId : subs) {
+            byte status = statuses[rows.get(subId)];
+            if (status != NO_STATUS) {
+                counts[status]++;
+            }
+        }
+        if (subs.isEmpty()) {
+            return Status.NEW;
+        }
+        if (counts[Status.IN_PROGRESS.ordinal()] > 0) {
+            return Status.IN_PROGRESS;
+        }
+        if (counts[Status.NEW.ordinal()] == 0) {
+            return Status.DONE;
+        }
+        if (counts[Status.DONE.ordinal()] == 0) {
+            return Status.NEW;
+        }
+        return Status.IN_PROGRESS;
+    }
+
+    @Override
+    public Status getSubtaskStatus(int id) {
+        int row = rowOf(id, TaskType.SUBT);
+        return row < 0 ? null : status(row);
+    }
+
+    @Override
+    public void clearSubsListOfEpic(int epicId) {
+        if (rowOf(epicId, TaskType.EPIC) < 0) {
+            return;
+        }
+        for (int subId : new ArrayList<>(subIds(epicId))) {
+            deleteRow(rows.get(subId));
+        }
+    }
+
+    @Override
+    public LocalDateTime getTaskEndTime(int id) {
+        int row = rowOf(id, TaskType.NORM);
+        return row < 0 ? null : toTime(starts[row] + durations[row]);
+    }
+
+    @Override
+    public LocalDateTime getSubEndTime(int id) {
+        int row = rowOf(id, TaskType.SUBT);
+        return row < 0 ? null : toTime(starts[row] + durations[row]);
+    }
+
+    /**
+     * окончание эпика - самое позднее окончание подзадач (DEFAULT_TIME, если подзадач нет) - O(k)
+     */
+    @Override
+    public LocalDateTime getEpicEndTime(int id) {
+        if (rowOf(id, TaskType.EPIC) < 0) {
+            return null;
+        }
+        Set<Integer> subs = subIds(id);
+        if (subs.isEmpty()) {
+            return AbstractTask.DEFAULT_TIME;
+        }
+        long end = Long.MIN_VALUE;
+        for (int subId : subs) {
+            int row = rows.get(subId);
+            end = Math.max(end, starts[row] + durations[row]);
+        }
+        return toTime(end);
+    }
+
+    @Override
+    public int addToHistory(AbstractTask task) {
+        return history.add(task);
+    }
+
+    @Override
+    public List<AbstractTask> getHistory() {
+        return history.getHistory();
+    }
+
+    /**
+     * проверка пересечения временных промежутков задачи с задачами расписания
+     * (см. {@link InMemoryTaskManager#validateTimeFrame(AbstractTask)})
+     *
+     * @param newItem добавляемая (обновляемая) задача
+     * @return true/false: задача может быть добавлена или нет
+     */
+    public boolean validateTimeFrame(AbstractTask newItem) {
+        if (newItem == null)
+            return false;
+        if (newItem.getTaskType() == TaskType.EPIC)
+            return true;
+        return validate(newItem.getId(), toSecond(newItem.getStartTime()), newItem.getDuration().getSeconds());
+    }
+
+    /**
+     * список приоритетов: задачи по времени старта, затем задачи без времени старта в порядке идентификатора
+     */
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        List<Task> list = new ArrayList<>(schedule.size() + points.size() + unscheduled.size());
+        addScheduled(list, schedule, points);
+        unscheduled.forEach(id -> list.add(toScheduled(rows.get(id))));
+        return list;
+    }
+
+    /**
+     * добавление в список задач части расписания по времени старта
+     * (при одинаковом старте задачи нулевой длительности - перед задачей ненулевой длительности)
+     *
+     * @param list список задач
+     * @param tasks часть расписания задач ненулевой длительности
+     * @param zeroLength часть расписания задач нулевой длительности
+     */
+    private void addScheduled(List<Task> list, NavigableMap<Long, Integer> tasks,
+                              NavigableMap<Long, TreeSet<Integer>> zeroLength) {
+        Iterator<Map.Entry<Long, Integer>> task = tasks.entrySet().iterator();
+        Iterator<Map.Entry<Long, TreeSet<Integer>>> point = zeroLength.entrySet().iterator();
+        Map.Entry<Long, Integer> nextTask = task.hasNext() ? task.next() : null;
+        Map.Entry<Long, TreeSet<Integer>> nextPoint = point.hasNext() ? point.next() : null;
+        while (nextTask != null || nextPoint != null) {
+            if (nextPoint != null && (nextTask == null || nextPoint.getKey() <= nextTask.getKey())) {
+                nextPoint.getValue().forEach(id -> list.add(toScheduled(rows.get(id))));
+                nextPoint = point.hasNext() ? point.next() : null;
+            } else {
+                list.add(toScheduled(rows.get(nextTask.getValue())));
+                nextTask = task.hasNext() ? task.next() : null;
+            }
+        }
+    }
+
+    /**
+     * задачи с заданным статусом: просмотр столбцов типа и статуса, объекты создаются только для результата
+     */
+    @Override
+    public List<Task> getTasksByStatus(Status status) {
+        List<Task> list = new ArrayList<>();
+        byte type = (byte) TaskType.NORM.ordinal();
+        byte wanted = status == null ? NO_STATUS : (byte) status.ordinal();
+        for (int row = 0; row < size; row++) {
+            if (types[row] == type && statuses[row] == wanted) {
+                list.add(toTask(row));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public List<SubTask> getSubsByStatus(Status status) {
+        List<SubTask> list = new ArrayList<>();
+        byte type = (byte) TaskType.SUBT.ordinal();
+        byte wanted = status == null ? NO_STATUS : (byte) status.ordinal();
+        for (int row = 0; row < size; row++) {
+            if (types[row] == type && statuses[row] == wanted) {
+                list.add(toSub(row));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * задачи, стартующие в промежутке: часть расписания (subMap) - O(log n + результат)
+     */
+    @Override
+    public List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        List<Task> list = new ArrayList<>();
+        long fromSecond = toSecond(from);
+        long toSecond = toSecond(to);
+        if (fromSecond < toSecond) {
+            addScheduled(list, schedule.subMap(fromSecond, true, toSecond, false),
+                    points.subMap(fromSecond, true, toSecond, false));
+        }
+        return list;
+    }
+
+    /**
+     * задачи, выполняющиеся в заданный момент: задачи расписания не пересекаются,
+     * поэтому проверяется только ближайшая задача, стартующая не позже момента - O(log n)
+     */
+    @Override
+    public List<Task> getTasksActiveAt(LocalDateTime time) {
+        long second = toSecond(time);
+        Map.Entry<Long, Integer> floor = schedule.floorEntry(second);
+        if (floor == null) {
+            return List.of();
+        }
+        int row = rows.get(floor.getValue());
+        return starts[row] + durations[row] > second ? List.of(toScheduled(row)) : List.of();
+    }
+
+    /**
+     * количество задач и подзадач по статусам - один проход по столбцам типа и статуса
+     *
+     * @return количество по статусам (статусы без задач - 0)
+     */
+    public Map<Status, Integer> getStatusCounts() {
+        int[] counts = new int[STATUSES.length];
+        byte epic = (byte) TaskType.EPIC.ordinal();
+        for (int row = 0; row < size; row++) {
+            byte status = statuses[row];
+            if (types[row] != epic && status != NO_STATUS) {
+                counts[status]++;
+            }
+        }
+        Map<Status, Integer> result = new EnumMap<>(Status.class);
+        for (Status status : STATUSES) {
+            result.put(status, counts[status.ordinal()]);
+        }
+        return result;
+    }
+
+    /**
+     * наибольшее количество задач и подзадач, выполняющихся одновременно (больше 1 - есть пересечения)
+     * проход по отсортированным массивам стартов и окончаний (sweep line) - O(n log n) по массивам примитивов
+     *
+     * @return наибольшее количество одновременно выполняющихся задач
+     */
+    public int getMaxConcurrency() {
+        long[] begin = new long[size];
+        long[] end = new long[size];
+        int count = 0;
+        byte epic = (byte) TaskType.EPIC.ordinal();
+        for (int row = 0; row < size; row++) {
+            if (types[row] != epic && starts[row] != UNSCHEDULED && durations[row] > 0) {
+                begin[count] = starts[row];
+                end[count] = starts[row] + durations[row];
+                count++;
+            }
+        }
+        Arrays.sort(begin, 0, count);
+        Arrays.sort(end, 0, count);
+        int active = 0;
+        int max = 0;
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            // задача, закончившаяся к старту следующей, с ней не пересекается
+            while (end[j] <= begin[i]) {
+                j++;
+                active--;
+            }
+            active++;
+            max = Math.max(max, active);
+        }
+        return max;
+    }
+
+    /**
+     * загрузка по времени: занятое задачами и подзадачами время в каждом из последовательных промежутков
+     * (например, по дням) - один проход по столбцам старта и длительности
+     *
+     * @param from начало первого промежутка
+     * @param bucket длина промежутка
+     * @param buckets количество промежутков
+     * @return занятое время в секундах по промежуткам
+     */
+    public long[] getUtilization(LocalDateTime from, Duration bucket, int buckets) {
+        long[] busy = new long[buckets];
+        long origin = toSecond(from);
+        long length = bucket.getSeconds();
+        if (length <= 0) {
+            throw new IllegalArgumentException("Длина промежутка должна быть не меньше секунды");
+        }
+        long horizon = origin + length * buckets;
+        byte epic = (byte) TaskType.EPIC.ordinal();
+        for (int row = 0; row < size; row++) {
+            long start = Math.max(starts[row], origin);
+            long end = Math.min(starts[row] + durations[row], horizon);
+            if (types[row] == epic || starts[row] == UNSCHEDULED || start >= end) {
+                continue;
+            }
+            for (int i = (int) ((start - origin) / length); start < end; i++) {
+                long bucketEnd = origin + length * (i + 1);
+                long part = Math.min(end, bucketEnd) - start;
+                busy[i] += part;
+                start += part;
+            }
+        }
+        return busy;
+    }
+
+    private int addScheduled(Task task, TaskType type, int epicId) {
+        if (task == null || rows.containsKey(task.getId())) {
+            return -1;
+        }
+        long start = toSecond(task.getStartTime());
+        long duration = task.getDuration().getSeconds();
+        if (!validate(task.getId(), start, duration)) {
+            return -1;
+        }
+        int row = addRow(task.getId(), type);
+        setScheduled(row, task, start, duration, epicId);
+        return task.getId();
+    }
+
+    private int updateScheduled(Task task, TaskType type, int epicId) {
+        int row = task == null ? -1 : rowOf(task.getId(), type);
+        if (row < 0) {
+            return -1;
+        }
+        long start = toSecond(task.getStartTime());
+        long duration = task.getDuration().getSeconds();
+        if (!validate(task.getId(), start, duration)) {
+            return -1;
+        }
+        unlinkScheduled(row);
+        releaseStrings(row);
+        setScheduled(row, task, start, duration, epicId);
+        return task.getId();
+    }
+
+    /**
+     * запись полей задачи/подзадачи в строку, добавление в расписание и в подзадачи эпика
+     */
+    private void setScheduled(int row, Task task, long start, long duration, int epicId) {
+        int id = ids[row];
+        starts[row] = start;
+        durations[row] = duration;
+        statuses[row] = task.getStatus() == null ? NO_STATUS : (byte) task.getStatus().ordinal();
+        epicIds[row] = epicId;
+        setStrings(row, task);
+        if (start == UNSCHEDULED) {
+            unscheduled.add(id);
+        } else if (duration == 0) {
+            points.computeIfAbsent(start, point -> new TreeSet<>()).add(id);
+        } else {
+            schedule.put(start, id);
+        }
+        if (types[row] == TaskType.SUBT.ordinal()) {
+            TreeSet<Integer> subs = subsOfEpic.get(epicId);
+            if (subs == null) {
+                subs = new TreeSet<>();
+                subsOfEpic.put(epicId, subs);
+            }
+            subs.add(id);
+        }
+    }
+
+    /**
+     * удаление задачи/подзадачи строки из расписания и из подзадач эпика
+     */
+    private void unlinkScheduled(int row) {
+        int id = ids[row];
+        if (starts[row] == UNSCHEDULED) {
+            unscheduled.remove(id);
+        } else if (durations[row] == 0) {
+            TreeSet<Integer> ids = points.get(starts[row]);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                points.remove(starts[row]);
+            }
+        } else {
+            schedule.remove(starts[row], id);
+        }
+        if (types[row] == TaskType.SUBT.ordinal()) {
+            TreeSet<Integer> subs = subsOfEpic.get(epicIds[row]);
+            if (subs != null) {
+                subs.remove(id);
+                if (subs.isEmpty()) {
+                    subsOfEpic.remove(epicIds[row]);
+                }
+            }
+        }
+    }
+
+    /**
+     * проверка пересечения с задачами расписания (критерии - см. {@link InMemoryTaskManager#validateTimeFrame})
+     * задача с тем же идентификатором (предыдущая версия обновляемой задачи) не учитывается - O(log n)
+     * задача нулевой длительности может стартовать одновременно с задачей ненулевой длительности,
+     * задача ненулевой длительности не может накрывать старт задачи нулевой длительности
+     */
+    private boolean validate(int id, long start, long duration) {
+        if (start == UNSCHEDULED) {
+            return true;
+        }
+        Map.Entry<Long, Integer> lower = duration == 0 ? schedule.lowerEntry(start) : schedule.floorEntry(start);
+        if (lower != null && lower.getValue() == id) {
+            lower = schedule.lowerEntry(lower.getKey());
+        }
+        if (lower != null) {
+            int row = rows.get(lower.getValue());
+            if (starts[row] + durations[row] > start) {
+                return false;
+            }
+        }
+        if (duration == 0) {
+            return true;
+        }
+        Map.Entry<Long, Integer> higher = schedule.higherEntry(start);
+        if (higher != null && higher.getValue() == id) {
+            higher = schedule.higherEntry(higher.getKey());
+        }
+        if (higher != null && start + duration > higher.getKey()) {
+            return false;
+        }
+        for (TreeSet<Integer> inside : points.subMap(start, false, start + duration, false).values()) {
+            if (inside.size() > 1 || !inside.contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void deleteAll(TaskType type) {
+        for (int row = size - 1; row >= 0; row--) {
+            if (types[row] == type.ordinal()) {
+                deleteRow(row);
+            }
+        }
+    }
+
+    /**
+     * удаление строки: на место удаленной строки переносится последняя строка
+     */
+    private void deleteRow(int row) {
+        if (row < 0) {
+            return;
+        }
+        int id = ids[row];
+        if (types[row] != TaskType.EPIC.ordinal()) {
+            unlinkScheduled(row);
+        }
+        releaseStrings(row);
+        history.remove(id);
+        rows.remove(id);
+        int last = --size;
+        if (row != last) {
+            ids[row] = ids[last];
+            types[row] = types[last];
+            starts[row] = starts[last];
+            durations[row] = durations[last];
+            statuses[row] = statuses[last];
+            epicIds[row] = epicIds[last];
+            names[row] = names[last];
+            descriptions[row] = descriptions[last];
+            rows.put(ids[row], Integer.valueOf(row));
+        }
+        if (strings.garbage > strings.length / 2 && strings.length > 1_024) {
+            compactStrings();
+        }
+    }
+
+    private int addRow(int id, TaskType type) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+            statuses = Arrays.copyOf(statuses, capacity);
+            epicIds = Arrays.copyOf(epicIds, capacity);
+            names = Arrays.copyOf(names, capacity);
+            descriptions = Arrays.copyOf(descriptions, capacity);
+        }
+        int row = size++;
+        ids[row] = id;
+        types[row] = (byte) type.ordinal();
+        rows.put(id, Integer.valueOf(row));
+        return row;
+    }
+
+    /**
+     * строка задачи заданного типа
+     *
+     * @return номер строки или -1, если задачи этого типа с таким идентификатором нет
+     */
+    private int rowOf(int id, TaskType type) {
+        Integer row = rows.get(id);
+        return row == null || types[row] != type.ordinal() ? -1 : row;
+    }
+
+    private Set<Integer> subIds(int epicId) {
+        TreeSet<Integer> subs = subsOfEpic.get(epicId);
+        return subs == null ? Collections.emptySet() : subs;
+    }
+
+    private void setStrings(int row, AbstractTask task) {
+        names[row] = strings.add(task.getName());
+        descriptions[row] = strings.add(task.getDescription());
+    }
+
+    private void releaseStrings(int row) {
+        strings.release(names[row]);
+        strings.release(descriptions[row]);
+    }
+
+    /**
+     * перезапись массива строк без освобожденных (удаленных и замененных) строк
+     */
+    private void compactStrings() {
+        StringHeap compacted = new StringHeap();
+        for (int row = 0; row < size; row++) {
+            names[row] = compacted.add(strings.get(names[row]));
+            descriptions[row] = compacted.add(strings.get(descriptions[row]));
+        }
+        strings.replaceWith(compacted);
+    }
+
+    private Status status(int row) {
+        return statuses[row] == NO_STATUS ? null : STATUSES[statuses[row]];
+    }
+
+    private Task toScheduled(int row) {
+        return types[row] == TaskType.SUBT.ordinal() ? toSub(row) : toTask(row);
+    }
+
+    private Task toTask(int row) {
+        Task task = new Task(ids[row], strings.get(names[row]), strings.get(descriptions[row]),
+                Duration.ofSeconds(durations[row]), toTime(starts[row]));
+        task.setStatus(status(row));
+        return task;
+    }
+
+    private SubTask toSub(int row) {
+        SubTask sub = new SubTask(ids[row], epicIds[row], strings.get(names[row]), strings.get(descriptions[row]),
+                Duration.ofSeconds(durations[row]), toTime(starts[row]));
+        sub.setStatus(status(row));
+        return sub;
+    }
+
+    /**
+     * эпик с подзадачами (статус и время эпика определяются по подзадачам)
+     */
+    private EpicTask toEpic(int row) {
+        EpicTask epic = new EpicTask(ids[row], strings.get(names[row]), strings.get(descriptions[row]));
+        for (int subId : subIds(ids[row])) {
+            epic.addSubTask(toSub(rows.get(subId)));
+        }
+        return epic;
+    }
+
+    private <T extends AbstractTask> T viewed(T task) {
+        addToHistory(task);
+        return task;
+    }
+
+    private static long toSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime toTime(long second) {
+        return LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * общий массив символов строк (имен и описаний задач)
+     * ссылка на строку: смещение (старшие 32 бита) и длина (младшие 32 бита); -1 - строка null
+     */
+    private static final class StringHeap {
+        private char[] chars = new char[256];
+        private int length;
+        /**
+         * количество символов освобожденных строк
+         */
+        private int garbage;
+
+        long add(String value) {
+            if (value == null) {
+                return -1;
+            }
+            if (length + value.length() > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + value.length()));
+            }
+            value.getChars(0, value.length(), chars, length);
+            long ref = ((long) length << 32) | value.length();
+            length += value.length();
+            return ref;
+        }
+
+        String get(long ref) {
+            return ref == -1 ? null : new String(chars, (int) (ref >>> 32), (int) ref);
+        }
+
+        void release(long ref) {
+            if (ref != -1) {
+                garbage += (int) ref;
+            }
+        }
+
+        void replaceWith(StringHeap other) {
+            chars = other.chars;
+            length = other.length;
+            garbage = 0;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package run;
+
+import tasks.AbstractTask;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * класс реализации методов HistoryManager, безопасный для одновременного использования из нескольких потоков
+ * (для ConcurrentTaskManager)
+ * <p>
+ * просмотр записывается без блокировки: задача получает порядковый номер просмотра (AtomicLong)
+ * и заменяет предыдущий просмотр той же задачи в ConcurrentHashMap;
+ * история упорядочивается по номерам просмотров только при запросе {@link #getHistory()} - O(n log n)
+ * <p>
+ * при ограничении количества задач лишние задачи удаляются не при каждом просмотре, а после превышения
+ * ограничения на половину (одним потоком, остальные потоки не ожидают) - амортизированно O(log n) на просмотр;
+ * до удаления getHistory() возвращает не больше заданного количества последних просмотренных задач
+ *
+ * @see HistoryManager
+ * @see InMemoryHistoryManager
+ */
+public class ConcurrentHistoryManager implements HistoryManager {
+    private static final Comparator<View> LATEST_FIRST = Comparator.comparingLong((View v) -> v.order).reversed();
+
+    private final Map<Integer, View> views = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ReentrantLock trimLock = new ReentrantLock();
+    private final int capacity;
+    /**
+     * количество задач, при превышении которого из истории удаляются задачи, просмотренные раньше остальных
+     */
+    private final long trimThreshold;
+
+    /**
+     * история без ограничения количества задач
+     */
+    public ConcurrentHistoryManager() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param capacity наибольшее количество задач в истории
+     */
+    public ConcurrentHistoryManager(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Размер истории должен быть положительным");
+        }
+        this.capacity = capacity;
+        this.trimThreshold = capacity + Math.max(1L, capacity / 2);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public int add(AbstractTask task) {
+        int id = task.getId();
+        // при одновременных просмотрах одной задачи сохраняется просмотр с большим номером
+        views.merge(id, new View(task, sequence.incrementAndGet()),
+                (previous, view) -> view.order > previous.order ? view : previous);
+        if (views.size() > trimThreshold && trimLock.tryLock()) {
+            try {
+                trim();
+            } finally {
+                trimLock.unlock();
+            }
+        }
+        return id;
+    }
+
+    /**
+     * удаление задачи из истории
+     * перед удалением из истории удаляются задачи сверх ограничения: иначе после удаления
+     * в историю вернулась бы задача, уже вытесненная более поздними просмотрами
+     */
+    @Override
+    public AbstractTask remove(int id) {
+        if (views.size() > capacity) {
+            trimLock.lock();
+            try {
+                trim();
+            } finally {
+                trimLock.unlock();
+            }
+        }
+        View view = views.remove(id);
+        return view == null ? null : view.task;
+    }
+
+    @Override
+    public List<AbstractTask> getHistory() {
+        List<View> latest = sorted();
+        List<AbstractTask> history = new ArrayList<>(Math.min(latest.size(), capacity));
+        for (int i = 0; i < latest.size() && i < capacity; i++) {
+            history.add(latest.get(i).task);
+        }
+        return history;
+    }
+
+    /**
+     * удаление задач, просмотренных раньше последних capacity задач (выполняется под trimLock)
+     */
+    private void trim() {
+        List<View> latest = sorted();
+        for (int i = capacity; i < latest.size(); i++) {
+            View view = latest.get(i);
+            views.remove(view.task.getId(), view);
+        }
+    }
+
+    /**
+     * просмотры, начиная с последнего
+     */
+    private List<View> sorted() {
+        List<View> latest = new ArrayList<>(views.values());
+        latest.sort(LATEST_FIRST);
+        return latest;
+    }
+
+    /**
+     * просмотр задачи с порядковым номером
+     */
+    private static final class View {
+        final AbstractTask task;
+        final long order;
+
+        View(AbstractTask task, long order) {
+            this.task = task;
+            this.order = order;
+        }
+    }
+}
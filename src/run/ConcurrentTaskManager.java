@@ -0,0 +1,681 @@
+package run;
+
+import run.util.IdAllocator;
+import tasks.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Менеджер работы с задачами в памяти, безопасный для одновременного использования из нескольких потоков
+ * (поведение методов совпадает с InMemoryTaskManager)
+ * <p>
+ * - задачи хранятся в ConcurrentHashMap: получение задач и списков задач не блокируется
+ * - список приоритетов - ConcurrentSkipListSet (порядок: время старта, задачи нулевой длительности раньше
+ * остальных, идентификатор - как в InMemoryTaskManager), читается без блокировки;
+ * проверка пересечения по времени и изменение списка приоритетов выполняются под общей блокировкой расписания
+ * - задачи без времени старта (AbstractTask.DEFAULT_TIME) хранятся отдельно от skip-list (по идентификатору),
+ * ни с чем не пересекаются и идут в списке приоритетов после задач с временем старта
+ * - подзадачи и эпик согласованно изменяются под блокировкой записи эпика (блокировки распределены по эпикам:
+ * {@link #STRIPES} блокировок чтения-записи, эпик выбирается по идентификатору);
+ * чтение подзадач, статуса и времени эпика - под блокировкой чтения
+ * - порядок захвата блокировок: блокировки эпиков (по возрастанию номера), затем блокировка расписания
+ * - идентификаторы новых задач выдаются блоками по потокам (см. IdAllocator): общий счетчик изменяется
+ * один раз на блок
+ * - история просмотра ConcurrentHistoryManager изменяется без блокировки (получение задачи по id не ожидает
+ * других потоков), история другого типа - под блокировкой объекта истории
+ * <p>
+ * изменение полей задач (статус, время подзадачи), уже добавленных в менеджер,
+ * должно выполняться вызывающим кодом без одновременного доступа к тем же задачам
+ *
+ * @see InMemoryTaskManager
+ */
+public class ConcurrentTaskManager implements TaskManager {
+    /**
+     * количество блокировок эпиков (степень 2)
+     */
+    static final int STRIPES = 64;
+
+    private static final Comparator<Task> START_TIME_ID_ORDER = Comparator.comparing(Task::getStartTime)
+            .thenComparing((Task task) -> !task.getDuration().isZero())
+            .thenComparing(Task::getId);
+
+    private final IdAllocator idAllocator = new IdAllocator();
+    private final Map<Integer, EpicTask> epics = new ConcurrentHashMap<>();
+    private final Map<Integer, Task> tasks = new ConcurrentHashMap<>();
+    private final Map<Integer, SubTask> subtasks = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Task> prioritizedTasks = new ConcurrentSkipListSet<>(START_TIME_ID_ORDER);
+    /**
+     * задачи и подзадачи без времени старта в порядке идентификатора (в skip-list не добавляются)
+     */
+    private final ConcurrentSkipListMap<Integer, Task> unscheduledTasks = new ConcurrentSkipListMap<>();
+    private final Lock scheduleLock = new ReentrantLock();
+    private final ReentrantReadWriteLock[] epicLocks = new ReentrantReadWriteLock[STRIPES];
+    private final HistoryManager history;
+    /**
+     * true - история не безопасна для одновременного использования и изменяется под блокировкой объекта истории
+     */
+    private final boolean lockHistory;
+
+    public ConcurrentTaskManager(HistoryManager history) {
+        this.history = history;
+        this.lockHistory = !(history instanceof ConcurrentHistoryManager);
+        for (int i = 0; i < STRIPES; i++) {
+            epicLocks[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    public void setIdForNewTask(int initialValue) {
+        idAllocator.reset(initialValue);
+    }
+
+    @Override
+    public int getNewTaskId() {
+        return idAllocator.nextId();
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        return new ArrayList<>(tasks.values());
+    }
+
+    @Override
+    public List<EpicTask> getAllEpics() {
+        return new ArrayList<>(epics.values());
+    }
+
+    @Override
+    public List<SubTask> getAllSubs() {
+        return new ArrayList<>(subtasks.values());
+    }
+
+    @Override
+    public Task getTaskById(int id) {
+        return getTaskCommon(id, tasks);
+    }
+
+    @Override
+    public EpicTask getEpicById(int id) {
+        return getTaskCommon(id, epics);
+    }
+
+    @Override
+    public SubTask getSubById(int id) {
+        return getTaskCommon(id, subtasks);
+    }
+
+    @Override
+    public int addNewTask(Task task) {
+        return recordScheduled(task, tasks);
+    }
+
+    @Override
+    public int addNewEpic(EpicTask epic) {
+        if (epic == null) {
+            return -1;
+        }
+        return epics.putIfAbsent(epic.getId(), epic) == null ? epic.getId() : -1;
+    }
+
+    @Override
+    public int addNewSub(SubTask sub) {
+        return recordScheduled(sub, subtasks);
+    }
+
+    @Override
+    public int updateTask(Task task) {
+        scheduleLock.lock();
+        try {
+            return updateScheduled(task, tasks);
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    @Override
+    public int updateEpic(EpicTask epic) {
+        if (epic == null) {
+            return -1;
+        }
+        ReentrantReadWriteLock.WriteLock lock = epicLock(epic.getId()).writeLock();
+        lock.lock();
+        try {
+            return epics.replace(epic.getId(), epic) != null ? epic.getId() : -1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * обновление подзадачи (см. {@link InMemoryTaskManager#updateSub(SubTask)})
+     * выполняется под блокировками эпиков предыдущей и новой версии подзадачи
+     */
+    @Override
+    public int updateSub(SubTask sub) {
+        if (sub == null) {
+            return -1;
+        }
+        while (true) {
+            SubTask current = subtasks.get(sub.getId());
+            int oldEpicId = current == null ? sub.getOverId() : current.getOverId();
+            int first = Math.min(stripe(oldEpicId), stripe(sub.getOverId()));
+            int second = Math.max(stripe(oldEpicId), stripe(sub.getOverId()));
+            epicLocks[first].writeLock().lock();
+            epicLocks[second].writeLock().lock();
+            try {
+                if (subtasks.get(sub.getId()) != current) {
+                    // подзадача изменена другим потоком до захвата блокировок
+                    continue;
+                }
+                int id;
+                scheduleLock.lock();
+                try {
+                    id = updateScheduled(sub, subtasks);
+                } finally {
+                    scheduleLock.unlock();
+                }
+                if (current != null && current != sub && subtasks.get(id) == sub) {
+                    EpicTask epic = epics.get(current.getOverId());
+                    if (epic != null && epic.hasSub(id)) {
+                        epic.removeSubTask(current);
+                        EpicTask newEpic = epics.get(sub.getOverId());
+                        if (newEpic != null) {
+                            newEpic.addSubTask(sub);
+                        }
+                    }
+                }
+                return id;
+            } finally {
+                epicLocks[second].writeLock().unlock();
+                epicLocks[first].writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        for (Integer id : tasks.keySet()) {
+            deleteScheduled(id, tasks);
+        }
+    }
+
+    @Override
+    public void deleteAllEpics() {
+        for (Integer id : epics.keySet()) {
+            deleteEpicById(id);
+        }
+    }
+
+    @Override
+    public void deleteAllSubs() {
+        for (SubTask sub : subtasks.values()) {
+            ReentrantReadWriteLock.WriteLock lock = epicLock(sub.getOverId()).writeLock();
+            lock.lock();
+            try {
+                EpicTask epic = epics.get(sub.getOverId());
+                if (epic != null) {
+                    epic.clearSubTasks();
+                }
+                deleteScheduled(sub.getId(), subtasks);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void deleteTaskById(int id) {
+        deleteScheduled(id, tasks);
+    }
+
+    @Override
+    public void deleteEpicById(int id) {
+        ReentrantReadWriteLock.WriteLock lock = epicLock(id).writeLock();
+        lock.lock();
+        try {
+            EpicTask epic = epics.get(id);
+            if (epic == null) {
+                return;
+            }
+            deleteSubsOfEpic(epic);
+            history(h -> h.remove(id));
+            epics.remove(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * удаление подзадачи под блокировкой эпика подзадачи
+     * если до захвата блокировки подзадача заменена другим потоком (в т.ч. перенесена в другой эпик),
+     * подзадача читается повторно (как в {@link #updateSub(SubTask)})
+     */
+    @Override
+    public void deleteSubById(int id) {
+        while (true) {
+            SubTask sub = subtasks.get(id);
+            if (sub == null) {
+                return;
+            }
+            ReentrantReadWriteLock.WriteLock lock = epicLock(sub.getOverId()).writeLock();
+            lock.lock();
+            try {
+                if (subtasks.get(id) != sub) {
+                    continue;
+                }
+                EpicTask epic = epics.get(sub.getOverId());
+                if (epic != null) {
+                    epic.removeSubTask(sub);
+                }
+                deleteScheduled(id, subtasks);
+                return;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public List<SubTask> getSubsForEpicId(int id) {
+        List<SubTask> subs = new ArrayList<>();
+        EpicTask epic = epics.get(id);
+        if (epic != null) {
+            ReentrantReadWriteLock.ReadLock lock = epicLock(id).readLock();
+            lock.lock();
+            try {
+                epic.getSubs().forEach(i -> subs.add(subtasks.get(i)));
+            } finally {
+                lock.unlock();
+            }
+        }
+        return subs;
+    }
+
+    @Override
+    public Status getTaskStatus(int id) {
+        Task task = tasks.get(id);
+        return task == null ? null : task.getStatus();
+    }
+
+    @Override
+    public Status getEpicStatus(int id) {
+        EpicTask epic = epics.get(id);
+        if (epic == null) {
+            return Status.N_A;
+        }
+        ReentrantReadWriteLock.ReadLock lock = epicLock(id).readLock();
+        lock.lock();
+        try {
+            return epic.getSubsStatus();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Status getSubtaskStatus(int id) {
+        SubTask sub = subtasks.get(id);
+        return sub == null ? null : sub.getStatus();
+    }
+
+    @Override
+    public void clearSubsListOfEpic(int id) {
+        ReentrantReadWriteLock.WriteLock lock = epicLock(id).writeLock();
+        lock.lock();
+        try {
+            EpicTask epic = epics.get(id);
+            if (epic != null) {
+                deleteSubsOfEpic(epic);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public LocalDateTime getTaskEndTime(int id) {
+        Task task = tasks.get(id);
+        return task == null ? null : task.getEndTime();
+    }
+
+    @Override
+    public LocalDateTime getSubEndTime(int id) {
+        SubTask sub = subtasks.get(id);
+        return sub == null ? null : sub.getEndTime();
+    }
+
+    @Override
+    public LocalDateTime getEpicEndTime(int id) {
+        EpicTask epic = epics.get(id);
+        if (epic == null) {
+            return null;
+        }
+        ReentrantReadWriteLock.ReadLock lock = epicLock(id).readLock();
+        lock.lock();
+        try {
+            return epic.getEndTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int addToHistory(AbstractTask task) {
+        if (!lockHistory) {
+            return history.add(task);
+        }
+        synchronized (history) {
+            return history.add(task);
+        }
+    }
+
+    @Override
+    public List<AbstractTask> getHistory() {
+        if (!lockHistory) {
+            return history.getHistory();
+        }
+        synchronized (history) {
+            return history.getHistory();
+        }
+    }
+
+    /**
+     * список приоритетов (снимок без блокировки)
+     *
+     * @return задачи и подзадачи по времени старта, затем задачи без времени старта в порядке идентификатора
+     */
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        List<Task> list = new ArrayList<>(prioritizedTasks);
+        list.addAll(unscheduledTasks.values());
+        return list;
+    }
+
+    /**
+     * поток задач непосредственно из ConcurrentHashMap
+     * (слабо согласованный: допускает одновременные изменения менеджера другими потоками)
+     */
+    @Override
+    public Stream<Task> streamTasks() {
+        return tasks.values().stream();
+    }
+
+    @Override
+    public Stream<EpicTask> streamEpics() {
+        return epics.values().stream();
+    }
+
+    @Override
+    public Stream<SubTask> streamSubs() {
+        return subtasks.values().stream();
+    }
+
+    @Override
+    public List<SubTask> getSubsPage(int epicId, int afterId, int limit) {
+        EpicTask epic = epics.get(epicId);
+        if (epic == null) {
+            return List.of();
+        }
+        List<Integer> ids;
+        ReentrantReadWriteLock.ReadLock lock = epicLock(epicId).readLock();
+        lock.lock();
+        try {
+            ids = epic.getSubsAfter(afterId, limit);
+        } finally {
+            lock.unlock();
+        }
+        List<SubTask> page = new ArrayList<>(ids.size());
+        for (Integer subId : ids) {
+            SubTask sub = subtasks.get(subId);
+            if (sub != null) {
+                page.add(sub);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * страница списка приоритетов из skip-list без блокировки (O(log n + limit)),
+     * после конца skip-list - из задач без времени старта начиная с идентификатора курсора
+     */
+    @Override
+    public List<Task> getPrioritizedPage(LocalDateTime after, int afterId, int limit) {
+        Collection<Task> scheduled = prioritizedTasks;
+        Collection<Task> unscheduled = unscheduledTasks.values();
+        if (AbstractTask.DEFAULT_TIME.equals(after)) {
+            scheduled = List.of();
+            unscheduled = unscheduledTasks.tailMap(afterId, false).values();
+        } else if (after != null) {
+            scheduled = prioritizedTasks.tailSet(pageCursor(after, afterId), false);
+        }
+        return Stream.concat(scheduled.stream(), unscheduled.stream()).limit(limit).toList();
+    }
+
+    /**
+     * задачи, стартующие в промежутке: представление части skip-list (subSet) без блокировки
+     */
+    @Override
+    public List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return List.of();
+        }
+        return List.copyOf(prioritizedTasks.subSet(probeBefore(from), probeBefore(to)));
+    }
+
+    /**
+     * задачи, выполняющиеся в заданный момент: задачи не пересекаются,
+     * поэтому проверяется только ближайшая задача, стартующая не позже момента - O(log n)
+     */
+    @Override
+    public List<Task> getTasksActiveAt(LocalDateTime time) {
+        Task floor = prioritizedTasks.floor(probeAfter(time));
+        if (floor == null || !floor.getEndTime().isAfter(time)) {
+            return List.of();
+        }
+        return List.of(floor);
+    }
+
+    /**
+     * задача-образец перед всеми задачами с заданным временем старта
+     */
+    private static Task probeBefore(LocalDateTime startTime) {
+        Task probe = new Task(Integer.MIN_VALUE);
+        probe.setStartTime(startTime);
+        return probe;
+    }
+
+    /**
+     * задача-образец на месте курсора страницы (время старта, идентификатор) в списке приоритетов:
+     * задача нулевой длительности, если такая задача есть в списке, иначе - задача ненулевой длительности
+     * (при одинаковом времени старта задачи нулевой длительности идут раньше)
+     */
+    private Task pageCursor(LocalDateTime after, int afterId) {
+        Task cursor = new Task(afterId);
+        cursor.setStartTime(after);
+        if (!prioritizedTasks.contains(cursor)) {
+            cursor.setDuration(Duration.ofNanos(1));
+        }
+        return cursor;
+    }
+
+    /**
+     * задача-образец после всех задач с заданным временем старта
+     * (ненулевой длительности - после задач нулевой длительности)
+     */
+    private static Task probeAfter(LocalDateTime startTime) {
+        Task probe = new Task(Integer.MAX_VALUE);
+        probe.setStartTime(startTime);
+        probe.setDuration(Duration.ofNanos(1));
+        return probe;
+    }
+
+    /**
+     * проверка пересечения временных промежутков задачи с задачами списка приоритетов
+     * (см. {@link InMemoryTaskManager#validateTimeFrame(AbstractTask)})
+     * промежутки задач полуоткрытые [start, end): задача нулевой длительности может совпадать со стартом
+     * или окончанием другой задачи, задачи ненулевой длительности с одинаковым стартом пересекаются
+     * задача без времени старта ни с чем не пересекается
+     *
+     * @param newItem добавляемая (обновляемая) задача
+     * @return true/false: задача может быть добавлена или нет
+     */
+    public boolean validateTimeFrame(AbstractTask newItem) {
+        if (newItem == null)
+            return false;
+        if (newItem.getTaskType() == TaskType.EPIC)
+            return true;
+        Task item = (Task) newItem;
+        if (isUnscheduled(item))
+            return true;
+        Task lower = prioritizedTasks.floor(item);
+        while (lower != null && lower.getId().equals(item.getId())) {
+            lower = prioritizedTasks.lower(lower);
+        }
+        if (lower != null && lower.getEndTime().isAfter(item.getStartTime())) {
+            return false;
+        }
+        Task higher = prioritizedTasks.higher(item);
+        while (higher != null && higher.getId().equals(item.getId())) {
+            higher = prioritizedTasks.higher(higher);
+        }
+        return higher == null || !item.getEndTime().isAfter(higher.getStartTime());
+    }
+
+    private ReentrantReadWriteLock epicLock(int epicId) {
+        return epicLocks[stripe(epicId)];
+    }
+
+    private static int stripe(int epicId) {
+        return (epicId ^ (epicId >>> 16)) & (STRIPES - 1);
+    }
+
+    private <T extends AbstractTask> T getTaskCommon(int id, Map<Integer, T> map) {
+        T item = map.get(id);
+        if (item != null) {
+            addToHistory(item);
+        }
+        return item;
+    }
+
+    /**
+     * добавление задачи/подзадачи: проверка пересечения и запись под блокировкой расписания
+     *
+     * @param item задача или подзадача
+     * @param map  соответствующий объект Map, в котором должна храниться задача
+     * @return идентификатор добавленной задачи или -1
+     */
+    private <T extends Task> int recordScheduled(T item, Map<Integer, T> map) {
+        scheduleLock.lock();
+        try {
+            if (!validateTimeFrame(item) || map.putIfAbsent(item.getId(), item) != null) {
+                return -1;
+            }
+            addPrioritized(item);
+            return item.getId();
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    /**
+     * обновление задачи/подзадачи (вызывается под блокировкой расписания)
+     *
+     * @param item задача или подзадача
+     * @param map  соответствующий объект Map, в котором должна храниться задача
+     * @return идентификатор обновленной задачи или -1
+     */
+    private <T extends Task> int updateScheduled(T item, Map<Integer, T> map) {
+        if (!validateTimeFrame(item)) {
+            return -1;
+        }
+        T old = map.replace(item.getId(), item);
+        if (old == null) {
+            return -1;
+        }
+        removePrioritized(old);
+        addPrioritized(item);
+        return item.getId();
+    }
+
+    /**
+     * удаление задачи/подзадачи из менеджера, истории и списка приоритетов
+     *
+     * @param id  идентификатор задачи
+     * @param map соответствующий объект Map, в котором должна храниться задача
+     */
+    private <T extends Task> void deleteScheduled(int id, Map<Integer, T> map) {
+        history(h -> h.remove(id));
+        scheduleLock.lock();
+        try {
+            removePrioritized(map.remove(id));
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    /**
+     * удаление подзадач эпика из менеджера (вызывается под блокировкой записи эпика)
+     *
+     * @param epic эпик
+     */
+    private void deleteSubsOfEpic(EpicTask epic) {
+        for (Integer subId : epic.getSubs()) {
+            deleteScheduled(subId, subtasks);
+        }
+        epic.clearSubTasks();
+    }
+
+    /**
+     * добавление задачи в список приоритетов (вызывается под блокировкой расписания)
+     *
+     * @param task задача/подзадача
+     */
+    private void addPrioritized(Task task) {
+        if (isUnscheduled(task)) {
+            unscheduledTasks.put(task.getId(), task);
+        } else {
+            prioritizedTasks.add(task);
+        }
+    }
+
+    /**
+     * удаление задачи из списка приоритетов (вызывается под блокировкой расписания)
+     * если время старта задачи было изменено после добавления, задача ищется просмотром списка
+     *
+     * @param task задача/подзадача
+     */
+    private void removePrioritized(Task task) {
+        if (task == null || unscheduledTasks.remove(task.getId(), task)) {
+            return;
+        }
+        if (!prioritizedTasks.remove(task)) {
+            prioritizedTasks.removeIf(t -> t == task);
+        }
+    }
+
+    /**
+     * задача без времени старта (время старта не задано - AbstractTask.DEFAULT_TIME)
+     */
+    private static boolean isUnscheduled(Task task) {
+        return AbstractTask.DEFAULT_TIME.equals(task.getStartTime());
+    }
+
+    private void history(Consumer<HistoryManager> action) {
+        if (!lockHistory) {
+            action.accept(history);
+            return;
+        }
+        synchronized (history) {
+            action.accept(history);
+        }
+    }
+}
@@ -1,17 +1,28 @@
 package run;
 
+import run.util.BinarySnapshot;
+import run.util.GroupCommitter;
+import run.util.IdAllocator;
 import run.util.ManagerLoadException;
+import run.util.ManagerSaveException;
 import run.util.Managers;
+import run.util.SnapshotFormat;
+import run.util.SyncedFiles;
+import run.util.TaskJournal;
 import run.util.TaskLoader;
 import run.util.TaskSaver;
 import tasks.*;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 /**
  * класс менеджера, который после каждой операции автоматически сохраняет все задачи и их состояние в специальный файл.
@@ -23,10 +34,75 @@ import java.util.*;
  * @see InMemoryHistoryManager
  * отличается реализацией сохранения данных в файл
  * @see TaskSaver
+ * изменения могут записываться в журнал (см. TaskJournal) и группироваться фоновым потоком (см. GroupCommitter)
+ * снимок записывается в текстовом (CSV) или двоичном формате (см. BinarySnapshot)
  */
-public class FileBackedTasksManager extends InMemoryTaskManager {
+public class FileBackedTasksManager extends InMemoryTaskManager implements AutoCloseable {
+    /**
+     * количество записей в журнале по умолчанию, после которого журнал сворачивается в снимок
+     */
+    public static final int DEFAULT_COMPACT_THRESHOLD = 1000;
+    /**
+     * суффикс файла с верхней границей выданных идентификаторов (хранится рядом с файлом сохранения)
+     * @see IdAllocator
+     */
+    public static final String IDS_SUFFIX = ".ids";
 
-     private final File saveFile;
+    private final File saveFile;
+    /**
+     * файл верхней границы идентификаторов: перезаписывается (атомарно) вместе с записью снимка или журнала,
+     * если с предыдущей записи арендованы новые блоки идентификаторов;
+     * после перезапуска выдача идентификаторов продолжается с сохраненной границы
+     * (идентификаторы задач, записанных в снимок или журнал, не превышают сохраненную границу)
+     */
+    private final File idsFile;
+    /**
+     * верхняя граница арендованных идентификаторов (обновляется счетчиком при аренде блока без записи в файл)
+     */
+    private final AtomicInteger leasedHighWaterMark = new AtomicInteger();
+    /**
+     * последняя записанная в файл верхняя граница идентификаторов
+     */
+    private int savedHighWaterMark;
+    /**
+     * журнал изменений
+     * @see TaskJournal
+     */
+    private final TaskJournal journal;
+    /**
+     * журнал просмотров для режима полной перезаписи:
+     * просмотр задачи не перезаписывает файл сохранения, а дописывает запись в этот журнал
+     */
+    private final TaskJournal viewLog;
+    /**
+     * режим сохранения: true - изменения дописываются в журнал, false - полная перезапись файла
+     */
+    private final boolean journaled;
+    /**
+     * формат снимка: текстовый CSV или двоичный
+     * @see #convertTo(SnapshotFormat)
+     */
+    private SnapshotFormat format = SnapshotFormat.CSV;
+    private int compactThreshold = DEFAULT_COMPACT_THRESHOLD;
+    /**
+     * записи журнала текущей операции (еще не записанные в файл)
+     */
+    private final List<String> pendingRecords = new ArrayList<>();
+    /**
+     * просмотры задач, еще не записанные в журнал просмотров (режим полной перезаписи)
+     */
+    private final List<String> pendingViews = new ArrayList<>();
+    private boolean dirty;
+    /**
+     * глубина вложенности операций: операции менеджера могут вызывать друг друга
+     * (например, удаление всех эпиков удаляет подзадачи), запись в файл проводится по завершении внешней операции
+     */
+    private int changeDepth;
+    /**
+     * групповая запись изменений фоновым потоком (null - изменения записываются до возврата из операции)
+     * @see #enableGroupCommit(long, int)
+     */
+    private GroupCommitter committer;
 
     /**
      * Конструктор пустого менеджера, принимающий имя файла для сохранения
@@ -35,9 +111,50 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
      *
      */
     public FileBackedTasksManager(String fileName) {
-        super(Managers.getDefaultHistory());
+        this(fileName, false);
+    }
+
+    /**
+     * Конструктор пустого менеджера с выбором режима сохранения
+     * @param fileName мя файла для сохранения
+     * @param journaled true - изменения дописываются в журнал рядом с файлом сохранения
+     * @see TaskJournal
+     */
+    public FileBackedTasksManager(String fileName, boolean journaled) {
+        this(fileName, journaled, SnapshotFormat.CSV);
+    }
+
+    /**
+     * Конструктор пустого менеджера с выбором режима сохранения и формата снимка
+     * @param fileName мя файла для сохранения
+     * @param journaled true - изменения дописываются в журнал рядом с файлом сохранения
+     * @param format формат снимка
+     * @see BinarySnapshot
+     */
+    public FileBackedTasksManager(String fileName, boolean journaled, SnapshotFormat format) {
+        this(fileName, journaled, format, Managers.getDefaultHistory());
+    }
+
+    /**
+     * Конструктор пустого менеджера с выбором режима сохранения, формата снимка и менеджера истории
+     * @param fileName мя файла для сохранения
+     * @param journaled true - изменения дописываются в журнал рядом с файлом сохранения
+     * @param format формат снимка
+     * @param history менеджер истории (например, с ограничением количества задач -
+     * см. {@link Managers#getDefaultHistory(int)})
+     */
+    public FileBackedTasksManager(String fileName, boolean journaled, SnapshotFormat format, HistoryManager history) {
+        super(history);
         saveFile = new File(fileName);
+        idsFile = new File(saveFile.getPath() + IDS_SUFFIX);
+        idsFile.delete();
+        setIdAllocator(new IdAllocator(0, IdAllocator.DEFAULT_BLOCK_SIZE, this::leased));
+        journal = new TaskJournal(saveFile);
+        viewLog = new TaskJournal(saveFile, TaskJournal.HISTORY_SUFFIX);
+        this.journaled = journaled;
+        this.format = format;
         save();
+        journal.clear();
     }
 
     /**
@@ -45,118 +162,615 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
      *
      * @param file экз. файл предварительно сохраненными данными о задачах
      * @implNote список сохраняется в файл в прямом порядке.
-     * для восстановления используется метод интерфейса addToHistory()
-     * (специальный метод восстановления не создавался в классе родителе
-     * поэтому перед восстановлением history реверсируется
+     * для восстановления используется метод родителя addToHistory() в обратном порядке
+     * (без записи в файл, см. {@link #restore(TaskLoader)})
      * @see Managers#loadFromFile(File)
      * @see Task
      * @see SubTask
      * @see EpicTask
      */
     public FileBackedTasksManager(File file) throws ManagerLoadException {
-        super(Managers.getDefaultHistory());
-        TaskLoader taskLoader = new TaskLoader(file);
-        ((Map<Integer, Task>) super.getTaskMap(TaskType.NORM)).putAll(taskLoader.getTasks());
-        ((Map<Integer, SubTask>) super.getTaskMap(TaskType.SUBT)).putAll(taskLoader.getSubs());
-        ((Map<Integer, EpicTask>) super.getTaskMap(TaskType.EPIC)).putAll(taskLoader.getEpics());
-        taskLoader.attachSubs((Map<Integer, SubTask>) super.getTaskMap(TaskType.SUBT),
-                              (Map<Integer, EpicTask>) super.getTaskMap(TaskType.EPIC));
+        this(file, false);
+    }
+
+    /**
+     * Конструктор восстановления с выбором режима сохранения
+     * при наличии журнала рядом с файлом сохранения его записи применяются к снимку
+     * (в режиме полной перезаписи журнал после этого сворачивается в снимок)
+     *
+     * @param file экз. файл предварительно сохраненными данными о задачах
+     * @param journaled true - изменения дописываются в журнал рядом с файлом сохранения
+     */
+    public FileBackedTasksManager(File file, boolean journaled) throws ManagerLoadException {
+        this(new TaskLoader(file), journaled);
+    }
+
+    /**
+     * Конструктор восстановления из данных, предварительно загруженных заданным способом
+     * (последовательно, с отчетом о ходе загрузки или параллельно)
+     *
+     * @param taskLoader загруженные из файла сохранения задачи и история
+     * @param journaled true - изменения дописываются в журнал рядом с файлом сохранения
+     * @see TaskLoader
+     * @see run.util.ParallelTaskLoader
+     */
+    public FileBackedTasksManager(TaskLoader taskLoader, boolean journaled) throws ManagerLoadException {
+        this(taskLoader, journaled, Managers.getDefaultHistory());
+    }
+
+    /**
+     * Конструктор восстановления с заданным менеджером истории
+     * (при ограниченной истории восстанавливаются последние просмотренные задачи)
+     *
+     * @param taskLoader загруженные из файла сохранения задачи и история
+     * @param journaled true - изменения дописываются в журнал рядом с файлом сохранения
+     * @param history менеджер истории
+     */
+    public FileBackedTasksManager(TaskLoader taskLoader, boolean journaled, HistoryManager history)
+            throws ManagerLoadException {
+        super(history);
         this.saveFile = taskLoader.getFile();
-        setIdForNewTask(taskLoader.getMaxId());
-        List<AbstractTask> loadedHistory  = taskLoader.getHistory();
-        Collections.reverse(loadedHistory);
-        loadedHistory.forEach(t -> addToHistory(t));
+        this.idsFile = new File(saveFile.getPath() + IDS_SUFFIX);
+        this.journal = new TaskJournal(saveFile);
+        this.viewLog = new TaskJournal(saveFile, TaskJournal.HISTORY_SUFFIX);
+        this.journaled = journaled;
+        this.format = taskLoader.getFormat();
+        taskLoader.replayJournal(journal.read());
+        taskLoader.replayJournal(viewLog.read());
+        restore(taskLoader);
+        // единственная запись при загрузке: сворачивание журнала, записанного в другом режиме
+        if ((!journaled && journal.size() > 0) || (journaled && viewLog.size() > 0)) {
+            compact();
+        }
+    }
+
+    /**
+     * восстановление состояния менеджера в памяти без записи в файл:
+     * задачи, связи эпиков с подзадачами, список приоритетов, счетчик идентификаторов и история
+     * счетчик идентификаторов продолжает выдачу с границы из файла IDS_SUFFIX (если она больше
+     * максимального идентификатора загруженных задач)
+     * @see InMemoryTaskManager#loadTasks(Collection, Collection, Collection)
+     * история восстанавливается методом родителя (переопределенный addToHistory записывал бы
+     * каждый просмотр в файл, т.е. загрузка истории из H задач приводила бы к H записям)
+     *
+     * @param taskLoader загруженные из файла сохранения задачи и история
+     */
+    private void restore(TaskLoader taskLoader) {
+        List<Task> overlapping = loadTasks(taskLoader.getTasks().values(), taskLoader.getSubs().values(),
+                taskLoader.getEpics().values());
+        if (!overlapping.isEmpty()) {
+            System.out.println("Пересечение по времени у восстановленных задач: " + overlapping.size());
+        }
+        savedHighWaterMark = readHighWaterMark();
+        // следующий идентификатор - после сохраненной границы арендованных блоков и максимального из загруженных
+        setIdAllocator(new IdAllocator(Math.max(taskLoader.getMaxId() + 1, savedHighWaterMark),
+                IdAllocator.DEFAULT_BLOCK_SIZE, this::leased));
+        // история сохранена в прямом порядке (последняя просмотренная - первая)
+        List<AbstractTask> loadedHistory = taskLoader.getHistory();
+        for (int i = loadedHistory.size() - 1; i >= 0; i--) {
+            super.addToHistory(loadedHistory.get(i));
+        }
+    }
+
+    /**
+     * преобразование файла сохранения в заданный формат: снимок перезаписывается в новом формате,
+     * последующие снимки записываются в нем же
+     *
+     * @param format формат снимка
+     */
+    public synchronized void convertTo(SnapshotFormat format) {
+        this.format = format;
+        pendingRecords.clear();
+        dirty = false;
+        compact();
+    }
+
+    public synchronized SnapshotFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * установка порога сворачивания журнала
+     * @param compactThreshold количество записей журнала, после которого журнал сворачивается в снимок
+     */
+    public void setCompactThreshold(int compactThreshold) {
+        this.compactThreshold = compactThreshold;
+    }
+
+    /**
+     * включение групповой записи: операции только отмечают изменения, а фоновый поток записывает все изменения,
+     * накопленные за окно windowMillis (или за maxOps операций), одной записью снимка/журнала
+     * <p>
+     * режимы сохранения:
+     * - синхронный (по умолчанию): изменения записаны в файл до возврата из операции
+     * - групповая запись без ожидания: изменения будут записаны в течение окна
+     * - групповая запись с ожиданием: после операции дождаться CompletableFuture из {@link #flush()}
+     * ошибка записи в синхронном режиме выбрасывается из операции (ManagerSaveException),
+     * при групповой записи - завершает CompletableFuture с исключением
+     *
+     * @param windowMillis окно накопления изменений, мс
+     * @param maxOps количество операций, при достижении которого запись выполняется без ожидания окна
+     * @see GroupCommitter
+     */
+    public void enableGroupCommit(long windowMillis, int maxOps) {
+        GroupCommitter previous;
+        synchronized (this) {
+            previous = committer;
+            committer = new GroupCommitter(this::flushPending, windowMillis, maxOps);
+        }
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * запись накопленных изменений без ожидания окна групповой записи
+     *
+     * @return CompletableFuture, завершаемый после записи всех выполненных к этому моменту операций
+     */
+    public CompletableFuture<Void> flush() {
+        GroupCommitter current;
+        synchronized (this) {
+            current = committer;
+        }
+        if (current == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return current.flush();
     }
 
+    /**
+     * запись накопленных изменений и возврат к синхронному режиму сохранения
+     */
     @Override
-    public int addNewTask(Task task) {
-        int id = super.addNewTask(task);
-        save();
-        return id;
+    public void close() {
+        GroupCommitter current;
+        synchronized (this) {
+            current = committer;
+            committer = null;
+        }
+        if (current != null) {
+            current.close();
+        }
     }
 
     @Override
-    public int addNewEpic(EpicTask epic) {
-        int id = super.addNewEpic(epic);
-        save();
-        return id;
+    public synchronized int addNewTask(Task task) {
+        beginChange();
+        try {
+            int id = super.addNewTask(task);
+            if (id != -1) {
+                record(TaskJournal.put(task));
+            }
+            return id;
+        } finally {
+            endChange();
+        }
     }
 
     @Override
-    public int addNewSub(SubTask sub) {
-        int id = super.addNewSub(sub);
-        save();
-        return id;
+    public synchronized int addNewEpic(EpicTask epic) {
+        beginChange();
+        try {
+            int id = super.addNewEpic(epic);
+            if (id != -1) {
+                record(TaskJournal.put(epic, getEpicStatus(id)));
+            }
+            return id;
+        } finally {
+            endChange();
+        }
     }
 
     @Override
-    public int updateTask(Task task) {
-        int id = super.updateTask(task);
-        save();
-        return id;
+    public synchronized int addNewSub(SubTask sub) {
+        beginChange();
+        try {
+            int id = super.addNewSub(sub);
+            if (id != -1) {
+                record(TaskJournal.put(sub));
+            }
+            return id;
+        } finally {
+            endChange();
+        }
     }
 
     @Override
-    public int updateEpic(EpicTask epic) {
-        int id = super.updateEpic(epic);
-        save();
-        return id;
+    public synchronized int updateTask(Task task) {
+        beginChange();
+        try {
+            int id = super.updateTask(task);
+            if (id != -1) {
+                record(TaskJournal.put(task));
+            }
+            return id;
+        } finally {
+            endChange();
+        }
     }
 
     @Override
-    public int updateSub(SubTask sub) {
-        int id = super.updateSub(sub);
-        save();
-        return id;
+    public synchronized int updateEpic(EpicTask epic) {
+        beginChange();
+        try {
+            int id = super.updateEpic(epic);
+            if (id != -1) {
+                record(TaskJournal.put(epic, getEpicStatus(id)));
+            }
+            return id;
+        } finally {
+            endChange();
+        }
     }
 
     @Override
-    public void deleteAllTasks() {
-        super.deleteAllTasks();
-        save();
+    public synchronized int updateSub(SubTask sub) {
+        beginChange();
+        try {
+            int id = super.updateSub(sub);
+            if (id != -1) {
+                record(TaskJournal.put(sub));
+            }
+            return id;
+        } finally {
+            endChange();
+        }
     }
 
     @Override
-    public void deleteAllEpics() {
-        super.deleteAllEpics();
-        save();
+    public synchronized void deleteAllTasks() {
+        beginChange();
+        try {
+            getTaskMap(TaskType.NORM).keySet().forEach(id -> record(TaskJournal.delete(id)));
+            super.deleteAllTasks();
+        } finally {
+            endChange();
+        }
     }
 
     @Override
-    public void deleteAllSubs() {
-        super.deleteAllSubs();
-        save();
+    public synchronized void deleteAllEpics() {
+        beginChange();
+        try {
+            // подзадачи эпиков удаляются через deleteSubById() и записываются в журнал там же
+            getTaskMap(TaskType.EPIC).keySet().forEach(id -> record(TaskJournal.delete(id)));
+            super.deleteAllEpics();
+        } finally {
+            endChange();
+        }
     }
 
     @Override
-    public void deleteTaskById(int id) {
-        super.deleteTaskById(id);
-        save();
+    public synchronized void deleteAllSubs() {
+        beginChange();
+        try {
+            getTaskMap(TaskType.SUBT).keySet().forEach(id -> record(TaskJournal.delete(id)));
+            super.deleteAllSubs();
+        } finally {
+            endChange();
+        }
     }
 
     @Override
-    public void deleteEpicById(int id) {
-        super.deleteEpicById(id);
-        save();
+    public synchronized void deleteTaskById(int id) {
+        beginChange();
+        try {
+            if (getTaskMap(TaskType.NORM).containsKey(id)) {
+                record(TaskJournal.delete(id));
+            }
+            super.deleteTaskById(id);
+        } finally {
+            endChange();
+        }
     }
 
     @Override
-    public void deleteSubById(int id) {
-        super.deleteSubById(id);
-        save();
+    public synchronized void deleteEpicById(int id) {
+        beginChange();
+        try {
+            EpicTask epic = (EpicTask) getTaskMap(TaskType.EPIC).get(id);
+            if (epic != null) {
+                epic.getSubs().forEach(subId -> record(TaskJournal.delete(subId)));
+                record(TaskJournal.delete(id));
+            }
+            super.deleteEpicById(id);
+        } finally {
+            endChange();
+        }
     }
 
     @Override
-    public void clearSubsListOfEpic(int id) {
-        super.clearSubsListOfEpic(id);
-        save();
+    public synchronized void deleteSubById(int id) {
+        beginChange();
+        try {
+            if (getTaskMap(TaskType.SUBT).containsKey(id)) {
+                record(TaskJournal.delete(id));
+            }
+            super.deleteSubById(id);
+        } finally {
+            endChange();
+        }
+    }
+
+    @Override
+    public synchronized void clearSubsListOfEpic(int id) {
+        beginChange();
+        try {
+            EpicTask epic = (EpicTask) getTaskMap(TaskType.EPIC).get(id);
+            if (epic != null) {
+                epic.getSubs().forEach(subId -> record(TaskJournal.delete(subId)));
+            }
+            super.clearSubsListOfEpic(id);
+        } finally {
+            endChange();
+        }
+    }
+
+    @Override
+    public synchronized int addToHistory(AbstractTask task) {
+        beginChange();
+        try {
+            int id = super.addToHistory(task);
+            if (journaled) {
+                record(TaskJournal.view(id));
+            } else {
+                pendingViews.add(TaskJournal.view(id));
+            }
+            return id;
+        } finally {
+            endChange();
+        }
+    }
+
+    /*
+     * методы чтения выполняются под блокировкой менеджера: при групповой записи снимок строится
+     * фоновым потоком (см. flushPending), а снимки списков задач и список приоритетов
+     * кешируются в полях InMemoryTaskManager и не должны перестраиваться одновременно несколькими потоками
+     */
+
+    @Override
+    public synchronized List<Task> getAllTasks() {
+        return super.getAllTasks();
+    }
+
+    @Override
+    public synchronized List<EpicTask> getAllEpics() {
+        return super.getAllEpics();
+    }
+
+    @Override
+    public synchronized List<SubTask> getAllSubs() {
+        return super.getAllSubs();
+    }
+
+    @Override
+    public synchronized Task getTaskById(int id) {
+        return super.getTaskById(id);
+    }
+
+    @Override
+    public synchronized EpicTask getEpicById(int id) {
+        return super.getEpicById(id);
+    }
+
+    @Override
+    public synchronized SubTask getSubById(int id) {
+        return super.getSubById(id);
+    }
+
+    @Override
+    public synchronized List<SubTask> getSubsForEpicId(int id) {
+        return super.getSubsForEpicId(id);
+    }
+
+    @Override
+    public synchronized Status getTaskStatus(int id) {
+        return super.getTaskStatus(id);
+    }
+
+    @Override
+    public synchronized Status getEpicStatus(int id) {
+        return super.getEpicStatus(id);
+    }
+
+    @Override
+    public synchronized Status getSubtaskStatus(int id) {
+        return super.getSubtaskStatus(id);
+    }
+
+    @Override
+    public synchronized LocalDateTime getTaskEndTime(int id) {
+        return super.getTaskEndTime(id);
+    }
+
+    @Override
+    public synchronized LocalDateTime getSubEndTime(int id) {
+        return super.getSubEndTime(id);
+    }
+
+    @Override
+    public synchronized LocalDateTime getEpicEndTime(int id) {
+        return super.getEpicEndTime(id);
+    }
+
+    @Override
+    public synchronized List<AbstractTask> getHistory() {
+        return super.getHistory();
+    }
+
+    @Override
+    public synchronized List<Task> getPrioritizedTasks() {
+        return super.getPrioritizedTasks();
+    }
+
+    @Override
+    public synchronized List<Task> getTasksByStatus(Status status) {
+        return super.getTasksByStatus(status);
+    }
+
+    @Override
+    public synchronized List<SubTask> getSubsByStatus(Status status) {
+        return super.getSubsByStatus(status);
+    }
+
+    @Override
+    public synchronized List<SubTask> getSubsByStatus(int epicId, Status status) {
+        return super.getSubsByStatus(epicId, status);
+    }
+
+    /**
+     * поток задач по снимку списка задач (поток из Мапы читался бы после снятия блокировки)
+     */
+    @Override
+    public Stream<Task> streamTasks() {
+        return getAllTasks().stream();
+    }
+
+    @Override
+    public Stream<EpicTask> streamEpics() {
+        return getAllEpics().stream();
+    }
+
+    @Override
+    public Stream<SubTask> streamSubs() {
+        return getAllSubs().stream();
+    }
+
+    @Override
+    public synchronized List<SubTask> getSubsPage(int epicId, int afterId, int limit) {
+        return super.getSubsPage(epicId, afterId, limit);
+    }
+
+    @Override
+    public synchronized List<Task> getPrioritizedPage(LocalDateTime after, int afterId, int limit) {
+        return super.getPrioritizedPage(after, afterId, limit);
+    }
+
+    @Override
+    public synchronized List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        return super.getTasksStartingBetween(from, to);
+    }
+
+    @Override
+    public synchronized List<Task> getTasksActiveAt(LocalDateTime time) {
+        return super.getTasksActiveAt(time);
+    }
+
+    @Override
+    public synchronized LocalDateTime findFreeSlot(LocalDateTime after, Duration duration, LocalDateTime deadline) {
+        return super.findFreeSlot(after, duration, deadline);
     }
 
     @Override
-    public int addToHistory(AbstractTask task) {
-        int id = super.addToHistory(task);
+    public synchronized boolean validateTimeFrame(AbstractTask newItem) {
+        return super.validateTimeFrame(newItem);
+    }
+
+    /**
+     * запись просмотров в журнал просмотров (режим полной перезаписи)
+     * при достижении порога журнал просмотров перезаписывается текущей историей
+     *
+     * @param views записи просмотров
+     */
+    private void appendViews(List<String> views) {
+        if (viewLog.size() + views.size() <= compactThreshold) {
+            viewLog.append(views);
+            return;
+        }
+        List<String> records = new ArrayList<>();
+        List<AbstractTask> history = getHistory();
+        // история хранится в обратном порядке: последняя просмотренная задача - первая
+        for (int i = history.size() - 1; i >= 0; i--) {
+            records.add(TaskJournal.view(history.get(i).getId()));
+        }
+        viewLog.clear();
+        viewLog.append(records);
+    }
+
+    /**
+     * начало операции, изменяющей состояние менеджера
+     * каждому вызову соответствует вызов {@link #endChange()} в блоке finally: при исключении в операции
+     * глубина вложенности восстанавливается, и последующие операции записываются в файл
+     */
+    private void beginChange() {
+        changeDepth++;
+    }
+
+    /**
+     * регистрация изменения в текущей операции
+     *
+     * @param journalRecord запись журнала, описывающая изменение
+     */
+    private void record(String journalRecord) {
+        if (journaled) {
+            pendingRecords.add(journalRecord);
+        }
+        dirty = true;
+    }
+
+    /**
+     * завершение операции: по завершении внешней операции изменения записываются в файл
+     * (или передаются на групповую запись, если она включена)
+     */
+    private void endChange() {
+        if (--changeDepth > 0 || (!dirty && pendingViews.isEmpty())) {
+            return;
+        }
+        if (committer != null) {
+            committer.submit();
+            return;
+        }
+        writePending();
+    }
+
+    /**
+     * запись накопленных изменений в файл из фонового потока групповой записи
+     */
+    private synchronized void flushPending() {
+        writePending();
+    }
+
+    /**
+     * запись накопленных изменений:
+     * - в режиме журнала записи дописываются в журнал (журнал сворачивается при достижении порога)
+     * - иначе файл сохранения перезаписывается полностью
+     * - просмотры без других изменений дописываются в журнал просмотров
+     * данные сбрасываются на диск до возврата из метода
+     *
+     * @throws ManagerSaveException ошибка записи (при групповой записи - завершает CompletableFuture
+     * из {@link #flush()} с исключением)
+     */
+    private void writePending() {
+        saveHighWaterMark();
+        if (dirty) {
+            // при ошибке записи изменения остаются несохраненными и записываются при следующей операции
+            if (!journaled) {
+                save();
+            } else {
+                journal.append(pendingRecords);
+                pendingRecords.clear();
+                if (journal.size() >= compactThreshold) {
+                    compact();
+                }
+            }
+            dirty = false;
+        }
+        if (!pendingViews.isEmpty()) {
+            appendViews(pendingViews);
+            pendingViews.clear();
+        }
+    }
+
+    /**
+     * сворачивание журнала: запись полного снимка и очистка журнала
+     * снимок заменяется атомарно (см. {@link SyncedFiles#replace}), журнал очищается только после замены:
+     * при сбое во время записи снимка остаются прежний снимок и журнал к нему
+     */
+    private void compact() {
+        saveHighWaterMark();
         save();
-        return id;
+        journal.clear();
     }
 
      /**
@@ -178,36 +792,96 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
         HashMap<Integer, Status> epicIdMapStatus = getEpicsStatuses(epics);
         tasksAndSubs.addAll(getAllTasks());
         tasksAndSubs.addAll(getAllSubs());
+        if (format == SnapshotFormat.BINARY) {
+            saveBinary(tasksAndSubs, epics, epicIdMapStatus);
+            return;
+        }
         // сохранение задач/подзадач и эпиков может быть в любом порядке
         // т.к. статус Эпик-задачи определеяется статусом входящих подзадач,
         // эпик-задачи можно сохранять со статусом Status.N_A
         // статус эпик-задачи может быть восттановлен по статусу под-задач при восстановлении из файла
         for (Task t : tasksAndSubs) {
-            save.append(TaskSaver.taskToString(t));
+            TaskSaver.appendTask(save, t);
         }
         for (EpicTask e : epics) {
             Status status = epicIdMapStatus.get(e.getId());
-            save.append(TaskSaver.epicTaskToString(e, status.toString()));
+            TaskSaver.appendEpicTask(save, e, status.toString());
         }
         // история должна быть преобразована в последнюю очередь для следования формату
         save.append(TaskSaver.historyToString(getHistory()));
         saveToFile(saveFile, save.toString());
+        // история сохранена в снимке
+        pendingViews.clear();
+        viewLog.clear();
+    }
+
+    /**
+     * метод сохранения задач в файл в двоичном формате
+     *
+     * @see BinarySnapshot - описание формата
+     */
+    private void saveBinary(List<Task> tasksAndSubs, List<EpicTask> epics, HashMap<Integer, Status> epicStatuses) {
+        try {
+            BinarySnapshot.write(saveFile, tasksAndSubs, epics, epicStatuses, getHistory());
+        } catch (IOException ioe) {
+            throw new ManagerSaveException("Ошибка записи в файл", ioe);
+        }
+        pendingViews.clear();
+        viewLog.clear();
     }
 
     /**
-     * метод записи сохраненных данных в файл
+     * метод записи сохраненных данных в файл: атомарная замена файла,
+     * данные сбрасываются на диск до возврата из метода
      *
      * @param file файл для записи
      * @param data преобразованные строковые данные
+     * @throws ManagerSaveException ошибка записи в файл
      */
     private void saveToFile(File file, String data) {
-        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(),
-                StandardOpenOption.CREATE,
-                StandardOpenOption.WRITE,
-                StandardOpenOption.TRUNCATE_EXISTING)) {
-            writer.write(data);
+        try {
+            SyncedFiles.replace(file.toPath(), data.getBytes(StandardCharsets.UTF_8));
         } catch (IOException ioe) {
-            System.out.println("Ошибка записи в файл");
+            throw new ManagerSaveException("Ошибка записи в файл", ioe);
+        }
+    }
+
+    /**
+     * регистрация новой верхней границы арендованных идентификаторов (вызывается счетчиком при аренде блока,
+     * в том числе из разных потоков, без обращения к файлу)
+     *
+     * @param highWaterMark первый идентификатор, не входящий в арендованные блоки
+     */
+    private void leased(int highWaterMark) {
+        leasedHighWaterMark.accumulateAndGet(highWaterMark, Math::max);
+    }
+
+    /**
+     * запись верхней границы арендованных идентификаторов, если она увеличилась с предыдущей записи
+     * (вызывается при записи снимка или журнала под блокировкой менеджера)
+     */
+    private void saveHighWaterMark() {
+        int highWaterMark = leasedHighWaterMark.get();
+        if (highWaterMark <= savedHighWaterMark) {
+            return;
+        }
+        saveToFile(idsFile, Integer.toString(highWaterMark));
+        savedHighWaterMark = highWaterMark;
+    }
+
+    /**
+     * чтение верхней границы арендованных идентификаторов
+     *
+     * @return граница из файла или 0, если файла нет или он поврежден
+     */
+    private int readHighWaterMark() {
+        if (!idsFile.exists()) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(Files.readString(idsFile.toPath()).trim());
+        } catch (IOException | NumberFormatException e) {
+            return 0;
         }
     }
 
@@ -1,14 +1,17 @@
 package run;
 
+import run.util.IntObjectMap;
 import tasks.AbstractTask;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
 /**
  * класс реализации методов HistoryManager
  * для управления историей просмотра в оперативной памяти при работе InMemoryTaskManager
+ * <p>
+ * история может быть ограничена по количеству задач: при добавлении задачи сверх ограничения
+ * из истории удаляется задача, просмотренная раньше остальных (первый узел списка) - O(1)
  *
  * @see HistoryManager
  * @see InMemoryTaskManager
@@ -16,13 +19,37 @@ import java.util.List;
 public class InMemoryHistoryManager implements HistoryManager {
     private Node first;
     private Node last;
-    private final HashMap<Integer, Node> historyMap = new HashMap<>();
+    private final IntObjectMap<Node> historyMap = new IntObjectMap<>();
+    private final int capacity;
+
+    /**
+     * история без ограничения количества задач
+     */
+    public InMemoryHistoryManager() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param capacity наибольшее количество задач в истории
+     */
+    public InMemoryHistoryManager(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Размер истории должен быть положительным");
+        }
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
 
     @Override
     public int add(AbstractTask task) {
         int id = task.getId();
         if (historyMap.containsKey(id)) {
             remove(id);
+        } else if (historyMap.size() >= capacity) {
+            remove(first.item.getId());
         }
         return linkLast(task);
     }
@@ -1,36 +1,93 @@
 package run;
 
+import run.util.GapIndex;
+import run.util.IdAllocator;
+import run.util.IntObjectMap;
+import run.util.TimeSlotGrid;
 import tasks.*;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * Менеджер работы с задачами в памяти
  */
 public class InMemoryTaskManager implements TaskManager {
     /**
-     * счетчик для присвоения уникального идентификатора задач
+     * счетчик для присвоения уникального идентификатора задач (выдает идентификаторы блоками по потокам)
      *
      * @see TaskManager#getNewTaskId()
+     * @see IdAllocator
      */
-    private int idForNewTask;
+    private IdAllocator idAllocator = new IdAllocator();
     /**
-     * Мапы для хранения задач по типам
+     * Мапы для хранения задач по типам (ключ - идентификатор без упаковки в Integer)
+     * Мапы задач и подзадач ведут индексы по статусам
+     * @see IntObjectMap
+     * @see StatusIndexedMap
      */
-    private final Map<Integer, EpicTask> epics = new HashMap<>();
-    private final Map<Integer, Task> tasks = new HashMap<>();
-    private final Map<Integer, SubTask> subtasks = new HashMap<>();
+    private final IntObjectMap<EpicTask> epics = new IntObjectMap<>();
+    private final StatusIndexedMap<Task> tasks = new StatusIndexedMap<>();
+    private final StatusIndexedMap<SubTask> subtasks = new StatusIndexedMap<>();
 
-    private final TreeSet<Task> prioritizedTasks = new TreeSet<>
-            (new Comparator<>() {
-                @Override
-                public int compare(Task t1, Task t2) {
-                    if (t1.getStartTime().equals(t2.getStartTime()))
-                        return 0;
-                    return t1.getStartTime().isBefore(t2.getStartTime()) ? -1 : 1;
-                }
-            });
+    /**
+     * порядок задач в списке приоритетов: по времени старта, при одинаковом времени старта задачи нулевой
+     * длительности - раньше остальных, далее - по идентификатору
+     * (задачи с одинаковым временем старта не заменяют друг друга в дереве;
+     * задача нулевой длительности [S, S) может стартовать одновременно с задачей [S, end) - см.
+     * {@link #validateTimeFrame(AbstractTask)}, и окончание каждой задачи списка не позже старта следующей)
+     */
+    private static final Comparator<Task> START_TIME_ID_ORDER = Comparator.comparing(Task::getStartTime)
+            .thenComparing((Task task) -> !task.getDuration().isZero())
+            .thenComparing(Task::getId);
+
+    /**
+     * задачи и подзадачи с заданным временем старта
+     */
+    private final TreeSet<Task> prioritizedTasks = new TreeSet<>(START_TIME_ID_ORDER);
+    /**
+     * задачи и подзадачи без времени старта (AbstractTask.DEFAULT_TIME) в порядке идентификатора:
+     * не пересекаются с другими задачами и в дерево не добавляются
+     */
+    private final TreeMap<Integer, Task> unscheduledTasks = new TreeMap<>();
+    /**
+     * свободные промежутки между задачами списка приоритетов (для поиска свободного времени)
+     * обновляются при добавлении и удалении задач; после загрузки пересекающихся задач
+     * или удаления задачи, время которой изменено после добавления, перестраиваются при следующем поиске
+     * @see #findFreeSlot(LocalDateTime, Duration, LocalDateTime)
+     */
+    private final GapIndex gaps = new GapIndex();
+    private boolean gapsValid;
+    /**
+     * сетка занятости слотов горизонта планирования для проверки пересечения без обращения к дереву (null - не используется)
+     * @see #setTimeGrid(TimeSlotGrid)
+     */
+    private TimeSlotGrid timeGrid;
+    private boolean timeGridValid;
+    /**
+     * кэшированные неизменяемые списки задач: перестраиваются при первом чтении после изменения
+     * соответствующей Мапы (версия Мапы) или списка приоритетов (prioritizedVersion)
+     */
+    private final Snapshot<Task> tasksSnapshot = new Snapshot<>(tasks);
+    private final Snapshot<EpicTask> epicsSnapshot = new Snapshot<>(epics);
+    private final Snapshot<SubTask> subsSnapshot = new Snapshot<>(subtasks);
+    private List<Task> prioritizedSnapshot = List.of();
+    private int prioritizedVersion;
+    private int prioritizedSnapshotVersion;
+    /**
+     * true - в список приоритетов загружены пересекающиеся задачи
+     * (проверка только соседних задач в этом случае недостаточна)
+     * сбрасывается, когда из списка приоритетов удалены все задачи из overlappingIds
+     * @see #loadTasks(Collection, Collection, Collection)
+     */
+    private boolean overlapsLoaded;
+    /**
+     * идентификаторы загруженных задач, пересекающихся с более ранними задачами
+     * остальные задачи списка приоритетов между собой не пересекаются
+     */
+    private final Set<Integer> overlappingIds = new HashSet<>();
     /**
      * объект для реализации истории просмотра в памяти
      */
@@ -41,8 +98,30 @@ public class InMemoryTaskManager implements TaskManager {
     }
 
     public void setIdForNewTask(int initialValue) {
-        idForNewTask = initialValue;
+        idAllocator.reset(initialValue);
     }
+
+    /**
+     * замена счетчика идентификаторов (например, на счетчик с сохранением верхней границы в файл)
+     *
+     * @param idAllocator счетчик идентификаторов
+     */
+    protected void setIdAllocator(IdAllocator idAllocator) {
+        this.idAllocator = idAllocator;
+    }
+
+    /**
+     * включение проверки пересечения задач по сетке занятости слотов (см. {@link #validateTimeFrame(AbstractTask)})
+     * сетка заполняется задачами менеджера при первой проверке; для сдвига горизонта планирования
+     * задается новая сетка
+     *
+     * @param timeGrid пустая сетка занятости или null - проверка только по списку приоритетов
+     */
+    public void setTimeGrid(TimeSlotGrid timeGrid) {
+        this.timeGrid = timeGrid;
+        this.timeGridValid = false;
+    }
+
     /**
      * метод получения значения нового идентификатора задач
      * (обновляет значение)
@@ -50,22 +129,31 @@ public class InMemoryTaskManager implements TaskManager {
      * @return новое значения счетчика-идентификатора создаваемой задачи
      */
     public int getNewTaskId() {
-        return idForNewTask++;
+        return idAllocator.nextId();
     }
 
+    /**
+     * @return неизменяемый список задач (один и тот же объект списка до изменения задач)
+     */
     @Override
     public List<Task> getAllTasks() {
-        return new ArrayList<>(tasks.values());
+        return tasksSnapshot.get();
     }
 
+    /**
+     * @return неизменяемый список эпиков (один и тот же объект списка до изменения эпиков)
+     */
     @Override
     public List<EpicTask> getAllEpics() {
-        return new ArrayList<>(epics.values());
+        return epicsSnapshot.get();
     }
 
+    /**
+     * @return неизменяемый список подзадач (один и тот же объект списка до изменения подзадач)
+     */
     @Override
     public List<SubTask> getAllSubs() {
-        return new ArrayList<>(subtasks.values());
+        return subsSnapshot.get();
     }
 
     @Override
@@ -108,9 +196,29 @@ public class InMemoryTaskManager implements TaskManager {
         return updateTaskCommon(epic, epics);
     }
 
+    /**
+     * обновление подзадачи
+     * новый экземпляр подзадачи заменяет предыдущий в эпике, в который был добавлен предыдущий,
+     * для учета статуса и времени обновленной подзадачи эпиком
+     *
+     * @param sub подзадача
+     * @return идентификатор обновленной подзадачи или -1
+     */
     @Override
     public int updateSub(SubTask sub) {
-        return updateTaskCommon(sub, subtasks);
+        SubTask old = sub == null ? null : subtasks.get(sub.getId());
+        int id = updateTaskCommon(sub, subtasks);
+        if (old != null && old != sub && subtasks.get(id) == sub) {
+            EpicTask epic = epics.get(old.getOverId());
+            if (epic != null && epic.hasSub(id)) {
+                epic.removeSubTask(old);
+                EpicTask newEpic = epics.get(sub.getOverId());
+                if (newEpic != null) {
+                    newEpic.addSubTask(sub);
+                }
+            }
+        }
+        return id;
     }
 
     @Override
@@ -118,7 +226,7 @@ public class InMemoryTaskManager implements TaskManager {
         for (Integer id : tasks.keySet()) {
             history.remove(id);
         }
-        prioritizedTasks.removeAll(tasks.values());
+        tasks.values().forEach(this::removePrioritized);
         tasks.clear();
     }
 
@@ -144,8 +252,8 @@ public class InMemoryTaskManager implements TaskManager {
             }
             history.remove(id);
         }
+        subtasks.values().forEach(this::removePrioritized);
         subtasks.clear();
-        prioritizedTasks.clear();
     }
 
     @Override
@@ -192,45 +300,18 @@ public class InMemoryTaskManager implements TaskManager {
         return null;
     }
 
+    /**
+     * статус эпика определяется по счетчикам статусов подзадач, которые ведет эпик - O(1)
+     *
+     * @param id идентификатор эпика
+     * @return статус эпика или N_A, если эпик не найден
+     * @see EpicTask#getSubsStatus()
+     */
     @Override
     public Status getEpicStatus(int id) {
-        if (epics.get(id) != null) {
-            List<SubTask> subsList = getSubsForEpicId(id);
-            if (subsList.isEmpty()) {
-                return Status.NEW;
-            } else {
-                // гипотеза 1 при проверке: все подзадачи со статусо NEW
-                boolean allSubsDone = true;
-                // гипотеза 2 при проверке: все подзадачи со статусо DONE
-                boolean allSubsNew = true;
-                for (SubTask subTask : subsList) {
-                    if (subTask != null) {
-                        switch (subTask.getStatus()) {
-                            case NEW:
-                                // Если одна подзадача имеет статус NEW -> гипотеза 2 (все задачи "новые") не верна
-                                allSubsDone = false;
-                                break;
-                            case IN_PROGRESS:
-                                // Если одна подзадача имеет статус IN_PROGRESS -> для всего эпика статус IN_PROGRESS
-                                return Status.IN_PROGRESS;
-                            case DONE:
-                                // Если одна подзадача имеет статус DONE -> гипотеза 1 (все задачи "завершены") не верна
-                                allSubsNew = false;
-                                break;
-                        }
-                    }
-                }
-                // если поддтвердилась гипотеза 1 -> статус эпика NEW
-                if (allSubsDone) {
-                    return Status.DONE;
-                }
-                // если поддтвердилась гипотеза 2 -> статус эпика DONE
-                if (allSubsNew) {
-                    return Status.NEW;
-                }
-            }
-            // В общем случае статус эпика IN_PROGRESS
-            return Status.IN_PROGRESS;
+        EpicTask epic = epics.get(id);
+        if (epic != null) {
+            return epic.getSubsStatus();
         }
         return Status.N_A;
     }
@@ -315,8 +396,214 @@ public class InMemoryTaskManager implements TaskManager {
         return epics;
     }
 
+    /**
+     * список приоритетов: задачи по времени старта, затем задачи без времени старта в порядке идентификатора
+     * (список строится при первом чтении после изменения)
+     *
+     * @return неизменяемый список приоритетов (один и тот же объект списка до изменения списка приоритетов)
+     */
     public List<Task> getPrioritizedTasks() {
-        return prioritizedTasks.stream().toList();
+        if (prioritizedSnapshotVersion != prioritizedVersion) {
+            List<Task> list = new ArrayList<>(prioritizedTasks.size() + unscheduledTasks.size());
+            list.addAll(prioritizedTasks);
+            list.addAll(unscheduledTasks.values());
+            prioritizedSnapshot = Collections.unmodifiableList(list);
+            prioritizedSnapshotVersion = prioritizedVersion;
+        }
+        return prioritizedSnapshot;
+    }
+
+    /**
+     * задачи с заданным статусом из индекса по статусам - O(результат)
+     */
+    @Override
+    public List<Task> getTasksByStatus(Status status) {
+        return tasks.withStatus(status);
+    }
+
+    /**
+     * подзадачи с заданным статусом из индекса по статусам - O(результат)
+     */
+    @Override
+    public List<SubTask> getSubsByStatus(Status status) {
+        return subtasks.withStatus(status);
+    }
+
+    /**
+     * подзадачи эпика с заданным статусом из списков подзадач по статусам, которые ведет эпик - O(результат)
+     *
+     * @see EpicTask#getSubsWithStatus(Status)
+     */
+    @Override
+    public List<SubTask> getSubsByStatus(int epicId, Status status) {
+        EpicTask epic = epics.get(epicId);
+        if (epic == null) {
+            return new ArrayList<>();
+        }
+        List<SubTask> subs = epic.getSubsWithStatus(status);
+        subs.removeIf(sub -> subtasks.get(sub.getId()) != sub);
+        return subs;
+    }
+
+    /**
+     * поток задач непосредственно из Мапы (без копирования в список)
+     */
+    @Override
+    public Stream<Task> streamTasks() {
+        return tasks.values().stream();
+    }
+
+    @Override
+    public Stream<EpicTask> streamEpics() {
+        return epics.values().stream();
+    }
+
+    @Override
+    public Stream<SubTask> streamSubs() {
+        return subtasks.values().stream();
+    }
+
+    /**
+     * страница подзадач эпика: идентификаторы выбираются из упорядоченного списка подзадач эпика
+     * (O(log k + limit), без построения списка всех подзадач)
+     */
+    @Override
+    public List<SubTask> getSubsPage(int epicId, int afterId, int limit) {
+        EpicTask epic = epics.get(epicId);
+        if (epic == null) {
+            return List.of();
+        }
+        List<SubTask> page = new ArrayList<>();
+        for (Integer subId : epic.getSubsAfter(afterId, limit)) {
+            SubTask sub = subtasks.get(subId);
+            if (sub != null) {
+                page.add(sub);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * страница списка приоритетов: задачи выбираются из дерева начиная с курсора, после конца дерева -
+     * из задач без времени старта начиная с идентификатора курсора (O(log n + limit), без копирования списка приоритетов)
+     */
+    @Override
+    public List<Task> getPrioritizedPage(LocalDateTime after, int afterId, int limit) {
+        Collection<Task> scheduled = prioritizedTasks;
+        Collection<Task> unscheduled = unscheduledTasks.values();
+        if (AbstractTask.DEFAULT_TIME.equals(after)) {
+            scheduled = List.of();
+            unscheduled = unscheduledTasks.tailMap(afterId, false).values();
+        } else if (after != null) {
+            scheduled = prioritizedTasks.tailSet(pageCursor(after, afterId), false);
+        }
+        return Stream.concat(scheduled.stream(), unscheduled.stream()).limit(limit).toList();
+    }
+
+    /**
+     * задачи, стартующие в промежутке: представление части дерева списка приоритетов (subSet)
+     * (O(log n + результат), без копирования списка приоритетов)
+     */
+    @Override
+    public List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return List.of();
+        }
+        return List.copyOf(prioritizedTasks.subSet(probeBefore(from), true, probeBefore(to), false));
+    }
+
+    /**
+     * задачи, выполняющиеся в заданный момент
+     * задачи списка приоритетов не пересекаются, поэтому выполняться может только ближайшая задача,
+     * стартующая не позже момента (floor) - O(log n)
+     * после загрузки пересекающихся задач просматриваются все более ранние задачи
+     */
+    @Override
+    public List<Task> getTasksActiveAt(LocalDateTime time) {
+        Collection<Task> candidates;
+        if (overlapsLoaded) {
+            candidates = prioritizedTasks.headSet(probeAfter(time), true);
+        } else {
+            Task floor = prioritizedTasks.floor(probeAfter(time));
+            candidates = floor == null ? List.of() : List.of(floor);
+        }
+        return candidates.stream()
+                .filter(task -> task.getEndTime().isAfter(time))
+                .toList();
+    }
+
+    /**
+     * ближайший свободный промежуток по индексу свободных промежутков - O(log n)
+     * (без просмотра списка приоритетов от заданного времени)
+     *
+     * @see GapIndex#find(LocalDateTime, Duration, LocalDateTime)
+     */
+    @Override
+    public LocalDateTime findFreeSlot(LocalDateTime after, Duration duration, LocalDateTime deadline) {
+        if (!gapsValid) {
+            rebuildGaps();
+        }
+        return gaps.find(after, duration, deadline);
+    }
+
+    /**
+     * массовая загрузка задач (восстановление из файла)
+     * в отличие от добавления по одной (каждое с проверкой пересечения по всему списку приоритетов):
+     * - задачи и подзадачи сортируются один раз по времени старта (O(n log n))
+     * - список приоритетов заполняется в порядке сортировки
+     * - пересечения проверяются одним проходом по отсортированным задачам (sweep line):
+     * задача пересекается с предыдущими, если стартует раньше наиболее позднего окончания предыдущих задач
+     * (промежутки задач [start, end), см. {@link #validateTimeFrame(AbstractTask)})
+     * задачи с пересечениями сохраняются в менеджере (данные файла не теряются) и возвращаются для проверки
+     * подзадачи привязываются к эпикам
+     *
+     * @param loadedTasks задачи
+     * @param loadedSubs подзадачи
+     * @param loadedEpics эпик-задачи
+     * @return задачи и подзадачи, пересекающиеся по времени с другими загруженными задачами
+     * @implNote предназначен для заполнения пустого менеджера
+     */
+    public List<Task> loadTasks(Collection<? extends Task> loadedTasks, Collection<? extends SubTask> loadedSubs,
+                                Collection<? extends EpicTask> loadedEpics) {
+        // свободные промежутки и сетка занятости перестраиваются один раз при первом использовании
+        gapsValid = false;
+        timeGridValid = false;
+        loadedTasks.forEach(t -> tasks.put(t.getId(), t));
+        loadedSubs.forEach(s -> subtasks.put(s.getId(), s));
+        loadedEpics.forEach(e -> epics.put(e.getId(), e));
+        for (SubTask sub : loadedSubs) {
+            EpicTask epic = epics.get(sub.getOverId());
+            if (epic != null) {
+                epic.addSubTask(sub);
+            }
+        }
+        Task[] sorted = new Task[loadedTasks.size() + loadedSubs.size()];
+        int i = 0;
+        for (Task task : loadedTasks) {
+            sorted[i++] = task;
+        }
+        for (SubTask sub : loadedSubs) {
+            sorted[i++] = sub;
+        }
+        Arrays.sort(sorted, START_TIME_ID_ORDER);
+        List<Task> overlapping = new ArrayList<>();
+        LocalDateTime latestEnd = null;
+        for (Task task : sorted) {
+            if (isUnscheduled(task)) {
+                addPrioritized(task);
+                continue;
+            }
+            if (latestEnd != null && task.getStartTime().isBefore(latestEnd)) {
+                overlapping.add(task);
+            }
+            if (latestEnd == null || task.getEndTime().isAfter(latestEnd)) {
+                latestEnd = task.getEndTime();
+            }
+            addPrioritized(task);
+        }
+        overlapping.forEach(task -> overlappingIds.add(task.getId()));
+        overlapsLoaded = !overlappingIds.isEmpty();
+        return overlapping;
     }
 
     /**
@@ -327,11 +614,11 @@ public class InMemoryTaskManager implements TaskManager {
      * {@link #addNewSub(SubTask)}
      *
      * @param item объект задачи заданного типа (Task, EpicTask, SubTask)
-     * @param map  соответствующий объект Map (HashMap), в котором должна храниться задача
-     * @param <T>  тип-параметр для получения нужной структуры данных Map (HashMap) па заправшиваемому типу задач
+     * @param map  соответствующий объект IntObjectMap, в котором должна храниться задача
+     * @param <T>  тип-параметр для получения нужной структуры данных IntObjectMap па заправшиваемому типу задач
      * @return идентификатор добавленной задачи/эпика/подзадачи
      */
-    private <T extends AbstractTask> int recordTaskCommon(T item, Map<Integer, T> map) {
+    private <T extends AbstractTask> int recordTaskCommon(T item, IntObjectMap<T> map) {
         int id = -1;
         if (validateTimeFrame(item)) {
             try {
@@ -344,7 +631,7 @@ public class InMemoryTaskManager implements TaskManager {
             }
             map.put(id, item);
             try {
-                prioritizedTasks.add((Task) item);
+                addPrioritized((Task) item);
             } catch (ClassCastException cce) {
                 // эпик
             }
@@ -361,11 +648,11 @@ public class InMemoryTaskManager implements TaskManager {
      * {@link #updateSub(SubTask)}
      *
      * @param item объект задачи заданного типа (Task, EpicTask, SubTask)
-     * @param map  соответствующий объект Map (HashMap), в котором должна храниться задача
-     * @param <T>  тип-параметр для получения нужной структуры данных Map (HashMap) па заправшиваемому типу задач
+     * @param map  соответствующий объект IntObjectMap, в котором должна храниться задача
+     * @param <T>  тип-параметр для получения нужной структуры данных IntObjectMap па заправшиваемому типу задач
      * @return идентификатор добавленной задачи/эпика/подзадачи
      */
-    private <T extends AbstractTask> int updateTaskCommon(T item, Map<Integer, T> map) {
+    private <T extends AbstractTask> int updateTaskCommon(T item, IntObjectMap<T> map) {
         int id = -1;
         if (validateTimeFrame(item)) {
             try {
@@ -374,9 +661,10 @@ public class InMemoryTaskManager implements TaskManager {
                 return -1;
             }
             if (map.containsKey(id)) {
-                map.put(id, item);
+                T old = map.put(id, item);
                 try {
-                    prioritizedTasks.add((Task) item);
+                    removePrioritized((Task) old);
+                    addPrioritized((Task) item);
                 } catch (ClassCastException cce) {
                     // эпик
                 }
@@ -387,6 +675,201 @@ public class InMemoryTaskManager implements TaskManager {
         return id;
     }
 
+    /**
+     * удаление задачи из списка приоритетов
+     * поиск в дереве ведется по времени старта и идентификатору; если время старта задачи было изменено
+     * после добавления, задача ищется просмотром списка
+     *
+     * @param task задача/подзадача
+     */
+    private void removePrioritized(Task task) {
+        if (task == null) {
+            return;
+        }
+        if (unscheduledTasks.get(task.getId()) == task) {
+            unscheduledTasks.remove(task.getId());
+            prioritizedVersion++;
+            return;
+        }
+        Task found = prioritizedTasks.floor(task);
+        if (found == task) {
+            if (gapsValid && !overlapsLoaded) {
+                // промежутки до и после задачи объединяются
+                LocalDateTime previousEnd = endBefore(task);
+                LocalDateTime nextStart = startAfter(task);
+                gaps.remove(previousEnd);
+                gaps.remove(task.getEndTime());
+                gaps.add(previousEnd, nextStart);
+            } else {
+                gapsValid = false;
+            }
+            prioritizedTasks.remove(task);
+            releaseTimeGrid(task);
+        } else {
+            prioritizedTasks.removeIf(t -> t == task);
+            gapsValid = false;
+            timeGridValid = false;
+        }
+        if (overlappingIds.remove(task.getId()) && overlappingIds.isEmpty()) {
+            // пересечений больше нет: промежутки и сетка перестраиваются при первом использовании
+            overlapsLoaded = false;
+            gapsValid = false;
+            timeGridValid = false;
+        }
+        prioritizedVersion++;
+    }
+
+    private void addPrioritized(Task task) {
+        if (isUnscheduled(task)) {
+            unscheduledTasks.put(task.getId(), task);
+            prioritizedVersion++;
+            return;
+        }
+        if (!prioritizedTasks.add(task)) {
+            return;
+        }
+        if (gapsValid && !overlapsLoaded) {
+            // промежуток, в который попала задача, делится на промежутки до и после задачи
+            LocalDateTime previousEnd = endBefore(task);
+            LocalDateTime nextStart = startAfter(task);
+            gaps.remove(previousEnd);
+            gaps.add(previousEnd, task.getStartTime());
+            gaps.add(task.getEndTime(), nextStart);
+        } else {
+            gapsValid = false;
+        }
+        if (timeGrid != null && timeGridValid) {
+            timeGrid.book(task.getStartTime(), task.getEndTime());
+        }
+        prioritizedVersion++;
+    }
+
+    /**
+     * освобождение слотов сетки занятости удаленной задачи
+     * слоты освобождаются целиком, поэтому оставшиеся задачи, пересекающиеся с этими слотами,
+     * отмечаются повторно - O(log n + k)
+     *
+     * @param task удаленная задача
+     */
+    private void releaseTimeGrid(Task task) {
+        if (timeGrid == null || !timeGridValid) {
+            return;
+        }
+        if (overlapsLoaded) {
+            // более ранняя задача может заканчиваться в освобождаемых слотах
+            timeGridValid = false;
+            return;
+        }
+        LocalDateTime windowStart = timeGrid.slotStart(task.getStartTime());
+        LocalDateTime windowEnd = timeGrid.slotEnd(task.getEndTime());
+        timeGrid.release(task.getStartTime(), task.getEndTime());
+        Task from = prioritizedTasks.floor(probeBefore(windowStart));
+        Collection<Task> tail = from == null ? prioritizedTasks : prioritizedTasks.tailSet(from, true);
+        for (Task other : tail) {
+            if (!other.getStartTime().isBefore(windowEnd)) {
+                break;
+            }
+            timeGrid.book(other.getStartTime(), other.getEndTime());
+        }
+    }
+
+    /**
+     * проверка задачи по сетке занятости
+     * обновляемая задача (идентификатор уже есть в менеджере) занимает слоты своей предыдущей версии,
+     * поэтому проверяется только по списку приоритетов
+     *
+     * @param item задача/подзадача
+     * @return результат проверки по сетке (UNKNOWN - требуется проверка по списку приоритетов)
+     */
+    private TimeSlotGrid.Occupancy checkTimeGrid(Task item) {
+        if (timeGrid == null || !timeGrid.covers(item.getStartTime(), item.getEndTime())
+                || tasks.containsKey(item.getId()) || subtasks.containsKey(item.getId())) {
+            return TimeSlotGrid.Occupancy.UNKNOWN;
+        }
+        if (!timeGridValid) {
+            timeGrid.clear();
+            for (Task task : prioritizedTasks) {
+                timeGrid.book(task.getStartTime(), task.getEndTime());
+            }
+            timeGridValid = true;
+        }
+        return timeGrid.check(item.getStartTime(), item.getEndTime());
+    }
+
+    /**
+     * окончание предыдущей задачи списка приоритетов (LocalDateTime.MIN, если задача первая)
+     */
+    private LocalDateTime endBefore(Task task) {
+        Task lower = prioritizedTasks.lower(task);
+        return lower == null ? LocalDateTime.MIN : lower.getEndTime();
+    }
+
+    /**
+     * старт следующей задачи списка приоритетов (LocalDateTime.MAX, если задача последняя)
+     */
+    private LocalDateTime startAfter(Task task) {
+        Task higher = prioritizedTasks.higher(task);
+        return higher == null ? LocalDateTime.MAX : higher.getStartTime();
+    }
+
+    /**
+     * построение свободных промежутков одним проходом по списку приоритетов:
+     * промежуток - от наиболее позднего окончания предыдущих задач до старта следующей задачи - O(n log n)
+     */
+    private void rebuildGaps() {
+        gaps.clear();
+        LocalDateTime latestEnd = LocalDateTime.MIN;
+        for (Task task : prioritizedTasks) {
+            gaps.add(latestEnd, task.getStartTime());
+            if (task.getEndTime().isAfter(latestEnd)) {
+                latestEnd = task.getEndTime();
+            }
+        }
+        gaps.add(latestEnd, LocalDateTime.MAX);
+        gapsValid = true;
+    }
+
+    /**
+     * задача без времени старта (время старта не задано - AbstractTask.DEFAULT_TIME)
+     */
+    private static boolean isUnscheduled(Task task) {
+        return AbstractTask.DEFAULT_TIME.equals(task.getStartTime());
+    }
+
+    /**
+     * задача-образец перед всеми задачами списка приоритетов с заданным временем старта
+     */
+    private static Task probeBefore(LocalDateTime startTime) {
+        Task probe = new Task(Integer.MIN_VALUE);
+        probe.setStartTime(startTime);
+        return probe;
+    }
+
+    /**
+     * задача-образец на месте курсора страницы (время старта, идентификатор) в списке приоритетов:
+     * задача нулевой длительности, если такая задача есть в списке, иначе - задача ненулевой длительности
+     * (при одинаковом времени старта задачи нулевой длительности идут раньше)
+     */
+    private Task pageCursor(LocalDateTime after, int afterId) {
+        Task cursor = new Task(afterId);
+        cursor.setStartTime(after);
+        if (!prioritizedTasks.contains(cursor)) {
+            cursor.setDuration(Duration.ofNanos(1));
+        }
+        return cursor;
+    }
+
+    /**
+     * задача-образец после всех задач списка приоритетов с заданным временем старта
+     * (ненулевой длительности - после задач нулевой длительности)
+     */
+    private static Task probeAfter(LocalDateTime startTime) {
+        Task probe = new Task(Integer.MAX_VALUE);
+        probe.setStartTime(startTime);
+        probe.setDuration(Duration.ofNanos(1));
+        return probe;
+    }
+
     /**
      * метод получения задачи из Мапы
      * используется для избежания дублирования кода в методах:
@@ -395,7 +878,7 @@ public class InMemoryTaskManager implements TaskManager {
      * {@link #getSubById(int)}
      *
      * @param id           идентификатор задачи, которую нужно получить
-     * @param map          соответствующий объект Map (HashMap), в котором должна храниться задача (см. @see)
+     * @param map          соответствующий объект IntObjectMap, в котором должна храниться задача (см. @see)
      * @param addToHistory параметр для определения, нужно ли помещать задачу в историю
      *                     задачи помещаются в историю только при вызовах методов:
      *                     {@link #getTaskById(int)}
@@ -404,13 +887,13 @@ public class InMemoryTaskManager implements TaskManager {
      *                     Данный метод вызываетя также в методе получения списка задач для "эпика":
      *                     {@link #getSubsForEpicId(int)}
      *                     при вызове этого методов задачи в историю не заносятся
-     * @param <T>          тип-параметр для получения нужной структуры данных Map (HashMap) па заправшиваемому типу задач
+     * @param <T>          тип-параметр для получения нужной структуры данных IntObjectMap па заправшиваемому типу задач
      * @return задача нужного типа (Task, Epic, SubTask)
      * @see tasks
      * @see #epics
      * @see #subtasks
      */
-    private <T extends AbstractTask> T getTaskCommon(int id, Map<Integer, T> map, boolean addToHistory) {
+    private <T extends AbstractTask> T getTaskCommon(int id, IntObjectMap<T> map, boolean addToHistory) {
         T item = map.get(id);
         if (item != null && addToHistory) {
             addToHistory(item);
@@ -426,13 +909,13 @@ public class InMemoryTaskManager implements TaskManager {
      * {@link #deleteSubById(int)}
      *
      * @param id  идентификатор задачи
-     * @param map соответствующий объект Map (HashMap), в котором должна храниться задача
-     * @param <T> тип-параметр для получения нужной структуры данных Map (HashMap) па заправшиваемому типу задач
+     * @param map соответствующий объект IntObjectMap, в котором должна храниться задача
+     * @param <T> тип-параметр для получения нужной структуры данных IntObjectMap па заправшиваемому типу задач
      */
-    private <T extends AbstractTask> void deleteTaskByIdCommon(int id, Map<Integer, T> map) {
+    private <T extends AbstractTask> void deleteTaskByIdCommon(int id, IntObjectMap<T> map) {
         history.remove(id);
         try{
-            prioritizedTasks.remove((Task) map.get(id));
+            removePrioritized((Task) map.get(id));
         } catch (ClassCastException cce) {
             // эпик
         }
@@ -453,8 +936,16 @@ public class InMemoryTaskManager implements TaskManager {
 
     /**
      * метод проверки пересечения временных промежутков задач/подзадач
-     * критерий проверки: разное время старта задач
-     * и окончание одной задачи не позже начала другой задачи
+     * промежутки задач полуоткрытые [start, end): окончание одной задачи не позже начала другой задачи;
+     * задача нулевой длительности [S, S) может совпадать со стартом или окончанием другой задачи
+     * (как и свободный промежуток в {@link #findFreeSlot(LocalDateTime, Duration, LocalDateTime)}),
+     * но не может находиться внутри нее
+     * задачи в списке приоритетов не пересекаются, поэтому достаточно проверить соседей по времени старта:
+     * ближайшую задачу, стартующую не позже (floor), и ближайшую задачу, стартующую позже (higher) - O(log n)
+     * задача с тем же идентификатором (предыдущая версия обновляемой задачи) не учитывается
+     * задача без времени старта ни с чем не пересекается
+     * если задана сетка занятости, новая задача в пределах горизонта сначала проверяется по слотам сетки,
+     * список приоритетов просматривается, только если заняты крайние слоты задачи
      * @param newItem добавляемая (обновляемая) задача
      * @return true/false: задача может быть добавлена или нет
      */
@@ -465,20 +956,111 @@ public class InMemoryTaskManager implements TaskManager {
             return true;
         if (prioritizedTasks.isEmpty())
             return true;
-        for(Task treeItem : prioritizedTasks) {
-            if (treeItem.getStartTime().isBefore(newItem.getStartTime())) {
-                if (treeItem.getEndTime().isBefore(newItem.getStartTime())
-                    || treeItem.getEndTime().equals(newItem.getStartTime())) {
-                    return true;
+        Task item = (Task) newItem;
+        if (isUnscheduled(item))
+            return true;
+        TimeSlotGrid.Occupancy occupancy = checkTimeGrid(item);
+        if (occupancy != TimeSlotGrid.Occupancy.UNKNOWN) {
+            return occupancy == TimeSlotGrid.Occupancy.FREE;
+        }
+        Task lower = prioritizedTasks.floor(item);
+        while (lower != null && lower.getId().equals(item.getId())) {
+            lower = prioritizedTasks.lower(lower);
+        }
+        if (lower != null && lower.getEndTime().isAfter(item.getStartTime())) {
+            return false;
+        }
+        if (overlapsLoaded && lower != null) {
+            // после загрузки задач с пересечениями более ранняя задача может заканчиваться позже соседней
+            for (Task earlier : prioritizedTasks.headSet(lower, false)) {
+                if (!earlier.getId().equals(item.getId()) && earlier.getEndTime().isAfter(item.getStartTime())) {
+                    return false;
                 }
             }
-            if (newItem.getStartTime().isBefore(treeItem.getStartTime())) {
-                if (newItem.getEndTime().isBefore(treeItem.getStartTime())
-                    || newItem.getEndTime().equals(treeItem.getStartTime())) {
-                    return true;
+        }
+        Task higher = prioritizedTasks.higher(item);
+        while (higher != null && higher.getId().equals(item.getId())) {
+            higher = prioritizedTasks.higher(higher);
+        }
+        return higher == null || !item.getEndTime().isAfter(higher.getStartTime());
+    }
+
+    /**
+     * кэшированный неизменяемый список значений Мапы
+     * список перестраивается, только если версия Мапы изменилась после построения списка
+     *
+     * @param <T> тип задач
+     */
+    private static final class Snapshot<T> {
+        private final IntObjectMap<? extends T> map;
+        private List<T> list = List.of();
+        private int version;
+
+        Snapshot(IntObjectMap<? extends T> map) {
+            this.map = map;
+            this.version = map.getVersion();
+        }
+
+        List<T> get() {
+            if (version != map.getVersion()) {
+                list = Collections.unmodifiableList(new ArrayList<>(map.values()));
+                version = map.getVersion();
+            }
+            return list;
+        }
+    }
+
+    /**
+     * Мапа задач с индексом по статусам: задачи с заданным статусом выбираются без просмотра всех задач
+     * индекс обновляется при добавлении, замене и удалении записей Мапы,
+     * а также при изменении статуса задачи, находящейся в Мапе (Мапа - слушатель статуса задачи)
+     * задачи без статуса (null) в индекс не включаются
+     *
+     * @param <T> тип задач
+     */
+    private static final class StatusIndexedMap<T extends Task> extends IntObjectMap<T> implements StatusListener {
+        private final Map<Status, IntObjectMap<T>> byStatus = new EnumMap<>(Status.class);
+
+        List<T> withStatus(Status status) {
+            IntObjectMap<T> bucket = status == null ? null : byStatus.get(status);
+            return bucket == null ? new ArrayList<>() : new ArrayList<>(bucket.values());
+        }
+
+        @Override
+        protected void entryChanged(int key, T previous, T current) {
+            if (previous != null) {
+                unindex(key, previous.getStatus());
+                if (previous != current) {
+                    previous.removeStatusListener(this);
                 }
             }
+            if (current != null) {
+                index(key, current);
+                current.addStatusListener(this);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void statusChanged(Task task, Status previous) {
+            int id = task.getId();
+            if (get(id) == task) {
+                unindex(id, previous);
+                index(id, (T) task);
+            }
+        }
+
+        private void index(int id, T task) {
+            if (task.getStatus() != null) {
+                byStatus.computeIfAbsent(task.getStatus(), status -> new IntObjectMap<>()).put(id, task);
+            }
+        }
+
+        private void unindex(int id, Status status) {
+            IntObjectMap<T> bucket = status == null ? null : byStatus.get(status);
+            if (bucket != null) {
+                bucket.remove(id);
+            }
         }
-        return false;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,915 @@
+package run;
+
+import run.util.IntObjectMap;
+import run.util.ManagerLoadException;
+import run.util.Managers;
+import run.util.SyncedFiles;
+import tasks.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * менеджер задач, основным хранилищем которого является отображенный в память (memory-mapped) файл
+ * записей фиксированной длины
+ * <p>
+ * открытие файла не требует разбора: файл только отображается в память, индекс id -> номер записи
+ * (и индекс эпик -> записи подзадач) строится при первом обращении по идентификатору,
+ * а объекты задач создаются по мере запросов
+ * (запрос задачи по id создает только эту задачу, запрос списков и изменения - все задачи,
+ * см. InMemoryTaskManager#loadTasks)
+ * каждое изменение сразу записывается в отображенный файл (write-through), запись на диск выполняет ОС,
+ * поэтому страницы файла остаются в кэше ОС между перезапусками
+ * порядок записи: строки в куче, поля записи, признак занятой записи, количество записей в заголовке -
+ * при прерванной записи новая запись не считается занятой; при открытии ссылки занятых записей на строки
+ * проверяются по размеру кучи
+ * <p>
+ * Формат файла записей:
+ * - заголовок {@link #HEADER_SIZE} байт: сигнатура, версия, количество занятых записей, максимальный id,
+ * поколение кучи строк
+ * - записи по {@link #RECORD_SIZE} байт:
+ * 'id' (int), 'type' (byte), 'status' (byte), признак занятой записи (byte), резерв (byte),
+ * 'start' - начало в секундах от эпохи UTC (long), 'duration' - длительность в секундах (long),
+ * 'epicId' (int, -1 - не подзадача), смещение и длина названия и описания в куче строк (4 x int, длина -1 - null)
+ * - строки UTF-8 хранятся в отдельном файле-куче (к имени добавляется суффикс {@link #HEAP_SUFFIX},
+ * после сжатия кучи - попеременно {@link #ALT_HEAP_SUFFIX} и {@link #HEAP_SUFFIX}), в который только дописываются;
+ * неизмененная строка обновляемой задачи не дописывается повторно, а строки удаленных и измененных задач
+ * освобождаются сжатием кучи (см. {@link #compactHeap()}); смещение строки в куче не превышает Integer.MAX_VALUE
+ * <p>
+ * время эпика определяется подзадачами и не сохраняется
+ * история просмотров хранится только в памяти (как в InMemoryTaskManager)
+ * @see InMemoryTaskManager
+ */
+public class MappedTaskManager extends InMemoryTaskManager implements AutoCloseable {
+    public static final String HEAP_SUFFIX = ".heap";
+    public static final String ALT_HEAP_SUFFIX = HEAP_SUFFIX + ".1";
+    static final int MAGIC = 0x544D4D53; // "TMMS"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 48;
+    private static final int INITIAL_RECORDS = 64;
+    /**
+     * куча строк меньшего размера не сжимается автоматически
+     */
+    static final long COMPACT_MIN_HEAP = 64 * 1024;
+    /**
+     * максимальный размер кучи строк (смещение строки хранится в поле int)
+     */
+    static final long MAX_HEAP_SIZE = Integer.MAX_VALUE;
+
+    private static final int HEADER_SLOTS = 8;
+    private static final int HEADER_MAX_ID = 12;
+    private static final int HEADER_HEAP_GENERATION = 16;
+
+    private static final int ID = 0;
+    private static final int TYPE = 4;
+    private static final int STATUS = 5;
+    private static final int LIVE = 6;
+    private static final int START = 8;
+    private static final int DURATION = 16;
+    private static final int EPIC_ID = 24;
+    private static final int NAME = 28;
+    private static final int DESCRIPTION = 36;
+
+    private final File file;
+    private FileChannel channel;
+    private FileChannel heapChannel;
+    private MappedByteBuffer records;
+    /**
+     * куча строк, отображенная при открытии (строки, дописанные позже, читаются из канала)
+     */
+    private MappedByteBuffer heapView;
+    private long heapSize;
+    /**
+     * байты кучи, занятые строками удаленных и измененных задач (с момента открытия или сжатия)
+     */
+    private long garbageSize;
+    private int slots;
+    private int maxId;
+    /**
+     * индекс id -> номер записи (строится при первом обращении)
+     */
+    private IntObjectMap<Integer> index;
+    /**
+     * индекс id эпика -> номера записей его подзадач (строится вместе с индексом id,
+     * нужен только до преобразования всех записей: каждое изменение сначала преобразует все записи,
+     * поэтому индекс не обновляется и после преобразования освобождается)
+     */
+    private IntObjectMap<int[]> epicSubSlots;
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    /**
+     * true - все записи файла преобразованы в объекты задач
+     */
+    private boolean loaded;
+
+    /**
+     * открытие (или создание) файла хранения задач
+     *
+     * @param file файл записей задач
+     * @throws ManagerLoadException ошибка открытия или неверный формат файла
+     */
+    public MappedTaskManager(File file) throws ManagerLoadException {
+        this(file, Managers.getDefaultHistory());
+    }
+
+    /**
+     * открытие (или создание) файла хранения задач с заданным менеджером истории
+     * (например, с ограничением количества задач - см. {@link Managers#getDefaultHistory(int)})
+     *
+     * @param file файл записей задач
+     * @param history менеджер истории
+     * @throws ManagerLoadException ошибка открытия или неверный формат файла
+     */
+    public MappedTaskManager(File file, HistoryManager history) throws ManagerLoadException {
+        super(history);
+        this.file = file;
+        try {
+            channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean created = channel.size() == 0;
+            mapRecords();
+            if (created) {
+                records.putInt(0, MAGIC);
+                records.putInt(4, VERSION);
+                records.putInt(HEADER_SLOTS, 0);
+                records.putInt(HEADER_MAX_ID, 0);
+                records.putInt(HEADER_HEAP_GENERATION, 0);
+            } else if (records.getInt(0) != MAGIC || records.getInt(4) != VERSION) {
+                channel.close();
+                throw new ManagerLoadException("Неверный заголовок файла хранения задач");
+            }
+            openHeap();
+            slots = records.getInt(HEADER_SLOTS);
+            maxId = records.getInt(HEADER_MAX_ID);
+            if (!created && !isValid()) {
+                channel.close();
+                heapChannel.close();
+                throw new ManagerLoadException("Файл хранения задач поврежден: ссылки записей не соответствуют файлу строк");
+            }
+            loaded = slots == 0;
+            setIdForNewTask(maxId + 1);
+        } catch (IllegalArgumentException iae) {
+            throw new ManagerLoadException("Ошибка открытия файла хранения. Необходима проверка имени файла");
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка открытия файла хранения задач.");
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * файл кучи строк текущего поколения
+     */
+    public File getHeapFile() {
+        return heapFile(records.getInt(HEADER_HEAP_GENERATION));
+    }
+
+    /**
+     * сжатие кучи строк: строки занятых записей копируются подряд в файл кучи следующего поколения,
+     * смещения записываются в копию файла записей, которая атомарно заменяет файл записей
+     * (см. {@link SyncedFiles#replace(Path, byte[])}); замена файла записей фиксирует переход на новую кучу,
+     * после чего файл предыдущей кучи удаляется
+     * при сбое до замены остаются прежние файлы записей и кучи, после замены - новые
+     * выполняется автоматически, когда освобожденные строки занимают больше половины кучи
+     * (не меньше {@link #COMPACT_MIN_HEAP} байт) или когда дописываемая строка не помещается в куче
+     */
+    public void compactHeap() {
+        int generation = records.getInt(HEADER_HEAP_GENERATION) + 1;
+        File previousHeap = getHeapFile();
+        byte[] image = new byte[offset(slots)];
+        records.get(0, image);
+        ByteBuffer copy = ByteBuffer.wrap(image);
+        try {
+            try (FileChannel target = FileChannel.open(heapFile(generation).toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long size = 0;
+                for (int i = 0; i < slots; i++) {
+                    int offset = offset(i);
+                    if (copy.get(offset + LIVE) == 0) {
+                        continue;
+                    }
+                    for (int field : new int[]{offset + NAME, offset + DESCRIPTION}) {
+                        byte[] bytes = readBytes(field);
+                        if (bytes != null) {
+                            copy.putInt(field, (int) size);
+                            size += writeFully(target, bytes, size);
+                        }
+                    }
+                }
+                target.force(true);
+            }
+            copy.putInt(HEADER_HEAP_GENERATION, generation);
+            SyncedFiles.replace(file.toPath(), image);
+            channel.close();
+            heapChannel.close();
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            mapRecords();
+            openHeap();
+            Files.deleteIfExists(previousHeap.toPath());
+        } catch (IOException e) {
+            throw new IllegalStateException("Ошибка сжатия файла строк", e);
+        }
+        garbageSize = 0;
+    }
+
+    /**
+     * запись изменений на диск и закрытие файлов
+     */
+    @Override
+    public void close() {
+        try {
+            records.force();
+            heapChannel.force(false);
+            channel.close();
+            heapChannel.close();
+        } catch (IOException ioe) {
+            System.out.println("Ошибка закрытия файла хранения задач");
+        }
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        ensureLoaded();
+        return super.getAllTasks();
+    }
+
+    @Override
+    public List<EpicTask> getAllEpics() {
+        ensureLoaded();
+        return super.getAllEpics();
+    }
+
+    @Override
+    public List<SubTask> getAllSubs() {
+        ensureLoaded();
+        return super.getAllSubs();
+    }
+
+    @Override
+    public Task getTaskById(int id) {
+        materialize(id);
+        return super.getTaskById(id);
+    }
+
+    @Override
+    public EpicTask getEpicById(int id) {
+        materialize(id);
+        return super.getEpicById(id);
+    }
+
+    @Override
+    public SubTask getSubById(int id) {
+        materialize(id);
+        return super.getSubById(id);
+    }
+
+    @Override
+    public int addNewTask(Task task) {
+        ensureLoaded();
+        return writeThrough(super.addNewTask(task), task);
+    }
+
+    @Override
+    public int addNewEpic(EpicTask epic) {
+        ensureLoaded();
+        return writeThrough(super.addNewEpic(epic), epic);
+    }
+
+    @Override
+    public int addNewSub(SubTask sub) {
+        ensureLoaded();
+        return writeThrough(super.addNewSub(sub), sub);
+    }
+
+    @Override
+    public int updateTask(Task task) {
+        ensureLoaded();
+        return writeThrough(super.updateTask(task), task);
+    }
+
+    @Override
+    public int updateEpic(EpicTask epic) {
+        ensureLoaded();
+        return writeThrough(super.updateEpic(epic), epic);
+    }
+
+    @Override
+    public int updateSub(SubTask sub) {
+        ensureLoaded();
+        return writeThrough(super.updateSub(sub), sub);
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        ensureLoaded();
+        List<Task> deleted = super.getAllTasks();
+        super.deleteAllTasks();
+        deleted.forEach(t -> free(t.getId()));
+    }
+
+    @Override
+    public void deleteAllEpics() {
+        ensureLoaded();
+        List<EpicTask> deleted = super.getAllEpics();
+        // подзадачи удаляются через переопределенный deleteSubById
+        super.deleteAllEpics();
+        deleted.forEach(e -> free(e.getId()));
+    }
+
+    @Override
+    public void deleteAllSubs() {
+        ensureLoaded();
+        List<SubTask> deleted = super.getAllSubs();
+        super.deleteAllSubs();
+        deleted.forEach(s -> free(s.getId()));
+    }
+
+    @Override
+    public void deleteTaskById(int id) {
+        ensureLoaded();
+        boolean exists = getTaskMap(TaskType.NORM).containsKey(id);
+        super.deleteTaskById(id);
+        if (exists) {
+            free(id);
+        }
+    }
+
+    @Override
+    public void deleteEpicById(int id) {
+        ensureLoaded();
+        EpicTask epic = (EpicTask) getTaskMap(TaskType.EPIC).get(id);
+        if (epic == null) {
+            return;
+        }
+        List<Integer> subsIds = epic.getSubs();
+        super.deleteEpicById(id);
+        subsIds.forEach(this::free);
+        free(id);
+    }
+
+    @Override
+    public void deleteSubById(int id) {
+        ensureLoaded();
+        boolean exists = getTaskMap(TaskType.SUBT).containsKey(id);
+        super.deleteSubById(id);
+        if (exists) {
+            free(id);
+        }
+    }
+
+    @Override
+    public List<SubTask> getSubsForEpicId(int id) {
+        materialize(id);
+        return super.getSubsForEpicId(id);
+    }
+
+    @Override
+    public Status getTaskStatus(int id) {
+        materialize(id);
+        return super.getTaskStatus(id);
+    }
+
+    @Override
+    public Status getEpicStatus(int id) {
+        materialize(id);
+        return super.getEpicStatus(id);
+    }
+
+    @Override
+    public Status getSubtaskStatus(int id) {
+        materialize(id);
+        return super.getSubtaskStatus(id);
+    }
+
+    @Override
+    public void clearSubsListOfEpic(int id) {
+        ensureLoaded();
+        EpicTask epic = (EpicTask) getTaskMap(TaskType.EPIC).get(id);
+        List<Integer> subsIds = epic == null ? List.of() : epic.getSubs();
+        super.clearSubsListOfEpic(id);
+        subsIds.forEach(this::free);
+    }
+
+    @Override
+    public LocalDateTime getTaskEndTime(int id) {
+        materialize(id);
+        return super.getTaskEndTime(id);
+    }
+
+    @Override
+    public LocalDateTime getSubEndTime(int id) {
+        materialize(id);
+        return super.getSubEndTime(id);
+    }
+
+    @Override
+    public LocalDateTime getEpicEndTime(int id) {
+        materialize(id);
+        return super.getEpicEndTime(id);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        ensureLoaded();
+        return super.getPrioritizedTasks();
+    }
+
+    @Override
+    public LocalDateTime findFreeSlot(LocalDateTime after, Duration duration, LocalDateTime deadline) {
+        ensureLoaded();
+        return super.findFreeSlot(after, duration, deadline);
+    }
+
+    @Override
+    public List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        ensureLoaded();
+        return super.getTasksStartingBetween(from, to);
+    }
+
+    @Override
+    public List<Task> getTasksActiveAt(LocalDateTime time) {
+        ensureLoaded();
+        return super.getTasksActiveAt(time);
+    }
+
+    @Override
+    public List<Task> getTasksByStatus(Status status) {
+        ensureLoaded();
+        return super.getTasksByStatus(status);
+    }
+
+    @Override
+    public List<SubTask> getSubsByStatus(Status status) {
+        ensureLoaded();
+        return super.getSubsByStatus(status);
+    }
+
+    @Override
+    public List<SubTask> getSubsByStatus(int epicId, Status status) {
+        materialize(epicId);
+        return super.getSubsByStatus(epicId, status);
+    }
+
+    @Override
+    public Stream<Task> streamTasks() {
+        ensureLoaded();
+        return super.streamTasks();
+    }
+
+    @Override
+    public Stream<EpicTask> streamEpics() {
+        ensureLoaded();
+        return super.streamEpics();
+    }
+
+    @Override
+    public Stream<SubTask> streamSubs() {
+        ensureLoaded();
+        return super.streamSubs();
+    }
+
+    @Override
+    public List<SubTask> getSubsPage(int epicId, int afterId, int limit) {
+        materialize(epicId);
+        return super.getSubsPage(epicId, afterId, limit);
+    }
+
+    @Override
+    public List<Task> getPrioritizedPage(LocalDateTime after, int afterId, int limit) {
+        ensureLoaded();
+        return super.getPrioritizedPage(after, afterId, limit);
+    }
+
+    @Override
+    public boolean validateTimeFrame(AbstractTask newItem) {
+        ensureLoaded();
+        return super.validateTimeFrame(newItem);
+    }
+
+    /**
+     * преобразование в объекты всех записей, еще не прочитанных из файла
+     */
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        epicSubSlots = null;
+        List<Task> loadedTasks = new ArrayList<>();
+        List<SubTask> loadedSubs = new ArrayList<>();
+        List<EpicTask> loadedEpics = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : index().entrySet()) {
+            AbstractTask task = materialized(entry.getKey());
+            if (task == null) {
+                task = readRecord(entry.getValue());
+            }
+            switch (task.getTaskType()) {
+                case NORM:
+                    loadedTasks.add((Task) task);
+                    break;
+                case SUBT:
+                    loadedSubs.add((SubTask) task);
+                    break;
+                case EPIC:
+                    loadedEpics.add((EpicTask) task);
+                    break;
+            }
+        }
+        // в т.ч. задачи, прочитанные ранее по запросу, попадают в список приоритетов
+        loadTasks(loadedTasks, loadedSubs, loadedEpics);
+    }
+
+    /**
+     * преобразование в объект одной записи (для эпика - вместе с подзадачами)
+     *
+     * @param id идентификатор задачи
+     */
+    private void materialize(int id) {
+        if (loaded || isMaterialized(id)) {
+            return;
+        }
+        Integer slot = index().get(id);
+        if (slot == null) {
+            return;
+        }
+        AbstractTask task = readRecord(slot);
+        put(task);
+        int[] subSlots = epicSubSlots.get(id);
+        if (task.getTaskType() == TaskType.EPIC && subSlots != null) {
+            // записи подзадач эпика берутся из индекса эпик -> записи подзадач (subSlots[0] - количество)
+            for (int i = 1; i <= subSlots[0]; i++) {
+                int subId = records.getInt(offset(subSlots[i]) + ID);
+                if (!isMaterialized(subId)) {
+                    put(readRecord(subSlots[i]));
+                }
+                ((EpicTask) task).addSubTask((SubTask) getTaskMap(TaskType.SUBT).get(subId));
+            }
+        }
+    }
+
+    private boolean isMaterialized(int id) {
+        return materialized(id) != null;
+    }
+
+    private AbstractTask materialized(int id) {
+        for (TaskType type : new TaskType[]{TaskType.NORM, TaskType.SUBT, TaskType.EPIC}) {
+            AbstractTask task = getTaskMap(type).get(id);
+            if (task != null) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private void put(AbstractTask task) {
+        switch (task.getTaskType()) {
+            case NORM:
+                map(TaskType.NORM).put(task.getId(), task);
+                break;
+            case SUBT:
+                map(TaskType.SUBT).put(task.getId(), task);
+                break;
+            case EPIC:
+                map(TaskType.EPIC).put(task.getId(), task);
+                break;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends AbstractTask> Map<Integer, T> map(TaskType type) {
+        return (Map<Integer, T>) super.getTaskMap(type);
+    }
+
+    /**
+     * индекс id -> номер записи, строится при первом обращении просмотром полей id занятых записей
+     * (до преобразования всех записей - вместе с индексом эпик -> записи подзадач по полю epicId)
+     */
+    private IntObjectMap<Integer> index() {
+        if (index == null) {
+            index = new IntObjectMap<>(slots);
+            if (!loaded) {
+                epicSubSlots = new IntObjectMap<>();
+            }
+            for (int i = 0; i < slots; i++) {
+                int offset = offset(i);
+                if (records.get(offset + LIVE) == 0) {
+                    freeSlots.add(i);
+                    continue;
+                }
+                index.put(records.getInt(offset + ID), Integer.valueOf(i));
+                int epicId = records.getInt(offset + EPIC_ID);
+                if (epicSubSlots != null && epicId != -1) {
+                    addSubSlot(epicId, i);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * добавление записи подзадачи в индекс эпик -> записи подзадач
+     * (массив записей эпика: [0] - количество, далее номера записей; при заполнении увеличивается вдвое)
+     */
+    private void addSubSlot(int epicId, int slot) {
+        int[] subSlots = epicSubSlots.get(epicId);
+        if (subSlots == null) {
+            subSlots = new int[4];
+            epicSubSlots.put(epicId, subSlots);
+        } else if (subSlots[0] == subSlots.length - 1) {
+            subSlots = Arrays.copyOf(subSlots, subSlots.length * 2);
+            epicSubSlots.put(epicId, subSlots);
+        }
+        subSlots[++subSlots[0]] = slot;
+    }
+
+    /**
+     * запись задачи в файл после успешной операции менеджера
+     *
+     * @param id результат операции менеджера (-1 - задача не добавлена/не обновлена)
+     * @param task задача
+     * @return id
+     */
+    private int writeThrough(int id, AbstractTask task) {
+        if (id == -1) {
+            return id;
+        }
+        Integer slot = index().get(id);
+        boolean existing = slot != null;
+        byte[] name = encode(task.getName());
+        byte[] description = encode(task.getDescription());
+        // неизмененная строка обновляемой задачи остается на прежнем месте кучи
+        boolean keepName = existing && isStored(offset(slot) + NAME, name);
+        boolean keepDescription = existing && isStored(offset(slot) + DESCRIPTION, description);
+        long appended = (keepName || name == null ? 0 : name.length)
+                + (keepDescription || description == null ? 0 : description.length);
+        if (heapSize + appended > MAX_HEAP_SIZE) {
+            compactHeap();
+            if (heapSize + appended > MAX_HEAP_SIZE) {
+                throw new IllegalStateException("Превышен размер файла строк (" + MAX_HEAP_SIZE + " байт)");
+            }
+        }
+        if (!existing) {
+            slot = freeSlots.isEmpty() ? allocate() : freeSlots.poll();
+        }
+        int offset = offset(slot);
+        // строки дописываются в кучу до изменения записи, ссылающейся на них
+        int namePosition = keepName ? 0 : appendString(name);
+        int descriptionPosition = keepDescription ? 0 : appendString(description);
+        boolean epic = task.getTaskType() == TaskType.EPIC;
+        records.putInt(offset + ID, id);
+        records.put(offset + TYPE, (byte) task.getTaskType().ordinal());
+        records.put(offset + STATUS, (byte) (epic ? Status.N_A : task.getStatus()).ordinal());
+        records.putLong(offset + START, epic ? 0 : task.getStartTime().toEpochSecond(ZoneOffset.UTC));
+        records.putLong(offset + DURATION, epic ? 0 : task.getDuration().getSeconds());
+        records.putInt(offset + EPIC_ID, task.getTaskType() == TaskType.SUBT ? ((SubTask) task).getOverId() : -1);
+        if (!keepName) {
+            garbageSize += existing ? stringLength(offset + NAME) : 0;
+            putString(offset + NAME, namePosition, name);
+        }
+        if (!keepDescription) {
+            garbageSize += existing ? stringLength(offset + DESCRIPTION) : 0;
+            putString(offset + DESCRIPTION, descriptionPosition, description);
+        }
+        // запись становится занятой только после записи ее полей, количество записей - после признака
+        records.put(offset + LIVE, (byte) 1);
+        if (slot >= records.getInt(HEADER_SLOTS)) {
+            records.putInt(HEADER_SLOTS, slot + 1);
+        }
+        if (!existing) {
+            index.put(id, slot);
+        }
+        if (id > maxId) {
+            maxId = id;
+            records.putInt(HEADER_MAX_ID, maxId);
+        }
+        compactIfSparse();
+        return id;
+    }
+
+    /**
+     * освобождение записи удаленной задачи (запись помечается свободной и используется повторно)
+     *
+     * @param id идентификатор удаленной задачи
+     */
+    private void free(int id) {
+        Integer slot = index().remove(id);
+        if (slot != null) {
+            int offset = offset(slot);
+            records.put(offset + LIVE, (byte) 0);
+            garbageSize += stringLength(offset + NAME) + stringLength(offset + DESCRIPTION);
+            freeSlots.add(slot);
+            compactIfSparse();
+        }
+    }
+
+    /**
+     * выделение новой записи в конце файла (при необходимости отображение файла увеличивается вдвое)
+     * запись учитывается в заголовке файла после записи в нее задачи
+     *
+     * @return номер записи
+     */
+    private int allocate() {
+        int slot = slots++;
+        long required = offset(slot) + (long) RECORD_SIZE;
+        if (required > records.capacity()) {
+            try {
+                records.force();
+                records = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        Math.max(required, 2L * records.capacity()));
+            } catch (IOException e) {
+                throw new IllegalStateException("Ошибка увеличения файла хранения задач", e);
+            }
+        }
+        // количество записей в заголовке увеличивается после записи задачи (см. writeThrough)
+        return slot;
+    }
+
+    private AbstractTask readRecord(int slot) {
+        int offset = offset(slot);
+        int id = records.getInt(offset + ID);
+        TaskType type = TaskType.values()[records.get(offset + TYPE)];
+        Status status = Status.values()[records.get(offset + STATUS)];
+        AbstractTask task;
+        switch (type) {
+            case SUBT:
+                task = new SubTask(id, records.getInt(offset + EPIC_ID));
+                break;
+            case EPIC:
+                task = new EpicTask(id);
+                break;
+            default:
+                task = new Task(id);
+        }
+        task.setNameForTest(readString(offset + NAME));
+        task.setDescriptionForTest(readString(offset + DESCRIPTION));
+        if (type != TaskType.EPIC) {
+            task.setStatus(status);
+            task.setStartTime(LocalDateTime.ofEpochSecond(records.getLong(offset + START), 0, ZoneOffset.UTC));
+            task.setDuration(Duration.ofSeconds(records.getLong(offset + DURATION)));
+        }
+        return task;
+    }
+
+    /**
+     * дописывание строки в кучу строк
+     * (размер кучи проверяется до изменения записи - см. {@link #writeThrough(int, AbstractTask)})
+     *
+     * @param bytes строка в UTF-8 (null - строка не задана, в кучу ничего не записывается)
+     * @return смещение строки в куче
+     */
+    private int appendString(byte[] bytes) {
+        if (bytes == null) {
+            return 0;
+        }
+        int position = (int) heapSize;
+        try {
+            writeFully(heapChannel, bytes, heapSize);
+        } catch (IOException e) {
+            throw new IllegalStateException("Ошибка записи в файл строк", e);
+        }
+        heapSize += bytes.length;
+        return position;
+    }
+
+    /**
+     * запись ссылки на строку в куче в запись задачи
+     *
+     * @param field смещение пары полей (смещение в куче, длина) в файле записей
+     * @param position смещение строки в куче
+     * @param bytes строка в UTF-8 (null - строка не задана)
+     */
+    private void putString(int field, int position, byte[] bytes) {
+        records.putInt(field, position);
+        records.putInt(field + 4, bytes == null ? -1 : bytes.length);
+    }
+
+    private String readString(int field) {
+        byte[] bytes = readBytes(field);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private byte[] readBytes(int field) {
+        int position = records.getInt(field);
+        int length = records.getInt(field + 4);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        if ((long) position + length <= heapView.capacity()) {
+            heapView.get(position, bytes);
+        } else {
+            try {
+                heapChannel.read(ByteBuffer.wrap(bytes), position);
+            } catch (IOException e) {
+                throw new IllegalStateException("Ошибка чтения файла строк", e);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * true - в куче по ссылке из поля записи уже хранится та же строка
+     */
+    private boolean isStored(int field, byte[] bytes) {
+        int length = records.getInt(field + 4);
+        if (bytes == null || length != bytes.length) {
+            return bytes == null && length < 0;
+        }
+        return Arrays.equals(bytes, readBytes(field));
+    }
+
+    /**
+     * проверка занятых записей при открытии: тип и статус в допустимых пределах,
+     * строки в пределах кучи (например, куча не была записана на диск полностью)
+     *
+     * @return true - ссылки всех занятых записей указывают внутрь кучи
+     */
+    private boolean isValid() {
+        if (slots < 0 || HEADER_SIZE + (long) slots * RECORD_SIZE > records.capacity()) {
+            return false;
+        }
+        for (int i = 0; i < slots; i++) {
+            int offset = offset(i);
+            if (records.get(offset + LIVE) == 0) {
+                continue;
+            }
+            if (records.get(offset + TYPE) < 0 || records.get(offset + TYPE) >= TaskType.values().length
+                    || records.get(offset + STATUS) < 0 || records.get(offset + STATUS) >= Status.values().length) {
+                return false;
+            }
+            for (int field : new int[]{offset + NAME, offset + DESCRIPTION}) {
+                int position = records.getInt(field);
+                int length = records.getInt(field + 4);
+                if (length >= 0 && (position < 0 || (long) position + length > heapSize)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private int stringLength(int field) {
+        return Math.max(records.getInt(field + 4), 0);
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int writeFully(FileChannel target, byte[] bytes, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            target.write(buffer, position + buffer.position());
+        }
+        return bytes.length;
+    }
+
+    /**
+     * автоматическое сжатие кучи, когда освобожденные строки занимают больше половины кучи
+     */
+    private void compactIfSparse() {
+        if (heapSize >= COMPACT_MIN_HEAP && garbageSize > heapSize / 2) {
+            compactHeap();
+        }
+    }
+
+    /**
+     * отображение файла записей (не меньше, чем на {@link #INITIAL_RECORDS} записей)
+     */
+    private void mapRecords() throws IOException {
+        long capacity = Math.max(channel.size(), HEADER_SIZE + (long) INITIAL_RECORDS * RECORD_SIZE);
+        records = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * открытие и отображение кучи строк поколения, указанного в заголовке файла записей
+     */
+    private void openHeap() throws IOException {
+        heapChannel = FileChannel.open(getHeapFile().toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        heapSize = heapChannel.size();
+        heapView = heapChannel.map(FileChannel.MapMode.READ_ONLY, 0, heapSize);
+    }
+
+    private File heapFile(int generation) {
+        return new File(file.getPath() + (generation % 2 == 0 ? HEAP_SUFFIX : ALT_HEAP_SUFFIX));
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+}
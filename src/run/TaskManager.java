@@ -2,8 +2,12 @@ package run;
 
 import tasks.*;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 /**
  * интерфейс управления задачами
@@ -240,4 +244,199 @@ public interface TaskManager {
      * @see SubTask;
      */
     List<Task> getPrioritizedTasks();
-}
\ No newline at end of file
+
+    /**
+     * задачи и подзадачи, стартующие в заданном промежутке времени (например, для вывода календаря на неделю)
+     *
+     * @param from начало промежутка (включительно)
+     * @param to окончание промежутка (не включительно)
+     * @return задачи в порядке времени старта
+     */
+    default List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        return getPrioritizedTasks().stream()
+                .filter(task -> !task.getStartTime().isBefore(from) && task.getStartTime().isBefore(to))
+                .toList();
+    }
+
+    /**
+     * задачи и подзадачи, выполняющиеся в заданный момент времени: старт не позже, окончание позже момента
+     * (следующие N задач после момента - см. {@link #getPrioritizedPage(LocalDateTime, int)})
+     *
+     * @param time момент времени
+     * @return задачи в порядке времени старта
+     */
+    default List<Task> getTasksActiveAt(LocalDateTime time) {
+        return getPrioritizedTasks().stream()
+                .filter(task -> !task.getStartTime().isAfter(time) && task.getEndTime().isAfter(time))
+                .toList();
+    }
+
+    /**
+     * поиск ближайшего свободного промежутка заданной длины в списке приоритетов (для автоматического планирования)
+     * промежуток не пересекается ни с одной задачей и подзадачей
+     *
+     * @param after время, не раньше которого должен начинаться промежуток
+     * @param duration длина промежутка
+     * @param deadline время, не позже которого должен заканчиваться промежуток (null - без ограничения)
+     * @return начало промежутка или null, если свободного промежутка нет
+     */
+    default LocalDateTime findFreeSlot(LocalDateTime after, Duration duration, LocalDateTime deadline) {
+        LocalDateTime candidate = after;
+        for (Task task : getPrioritizedTasks()) {
+            if (!task.getEndTime().isAfter(candidate)) {
+                continue;
+            }
+            if (!task.getStartTime().isBefore(candidate.plus(duration))) {
+                break;
+            }
+            candidate = task.getEndTime();
+        }
+        if (deadline != null && candidate.plus(duration).isAfter(deadline)) {
+            return null;
+        }
+        return candidate;
+    }
+
+    /**
+     * получение обычных задач с заданным статусом
+     *
+     * @param status статус
+     * @return список задач (реализация с индексом по статусам строит его без просмотра всех задач)
+     */
+    default List<Task> getTasksByStatus(Status status) {
+        return getAllTasks().stream()
+                .filter(task -> task.getStatus() == status)
+                .toList();
+    }
+
+    /**
+     * получение подзадач с заданным статусом
+     *
+     * @param status статус
+     * @return список подзадач
+     */
+    default List<SubTask> getSubsByStatus(Status status) {
+        return getAllSubs().stream()
+                .filter(sub -> sub.getStatus() == status)
+                .toList();
+    }
+
+    /**
+     * получение подзадач "эпика" с заданным статусом
+     *
+     * @param epicId идентификатор "эпика"
+     * @param status статус
+     * @return список подзадач (пустой, если "эпик" не найден)
+     */
+    default List<SubTask> getSubsByStatus(int epicId, Status status) {
+        return getSubsForEpicId(epicId).stream()
+                .filter(Objects::nonNull)
+                .filter(sub -> sub.getStatus() == status)
+                .toList();
+    }
+
+    /**
+     * поток обычных задач (для перебора без построения полного списка, если реализация это поддерживает)
+     * менеджер не должен изменяться до завершения работы с потоком
+     *
+     * @return поток задач
+     */
+    default Stream<Task> streamTasks() {
+        return getAllTasks().stream();
+    }
+
+    /**
+     * поток "эпик"-задач
+     * менеджер не должен изменяться до завершения работы с потоком
+     *
+     * @return поток эпиков
+     */
+    default Stream<EpicTask> streamEpics() {
+        return getAllEpics().stream();
+    }
+
+    /**
+     * поток подзадач
+     * менеджер не должен изменяться до завершения работы с потоком
+     *
+     * @return поток подзадач
+     */
+    default Stream<SubTask> streamSubs() {
+        return getAllSubs().stream();
+    }
+
+    /**
+     * страница подзадач "эпика" (постраничный вывод по идентификатору):
+     * подзадачи с идентификатором больше afterId в порядке возрастания идентификатора
+     *
+     * @param epicId идентификатор "эпика"
+     * @param afterId идентификатор последней подзадачи предыдущей страницы (Integer.MIN_VALUE - первая страница)
+     * @param limit максимальное количество подзадач на странице
+     * @return подзадачи страницы (пустой список - страниц больше нет)
+     */
+    default List<SubTask> getSubsPage(int epicId, int afterId, int limit) {
+        return getSubsForEpicId(epicId).stream()
+                .filter(Objects::nonNull)
+                .filter(sub -> sub.getId() > afterId)
+                .sorted(Comparator.comparing(SubTask::getId))
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * страница списка приоритетов (постраничный вывод по времени старта):
+     * задачи и подзадачи, стартующие позже заданного времени, затем задачи без времени старта
+     * (для обхода всего списка, включая задачи без времени старта, - см. {@link #getPrioritizedPage(LocalDateTime, int, int)})
+     *
+     * @param after время старта последней задачи предыдущей страницы (null - первая страница)
+     * @param limit максимальное количество задач на странице
+     * @return задачи страницы (пустой список - страниц больше нет)
+     */
+    default List<Task> getPrioritizedPage(LocalDateTime after, int limit) {
+        return getPrioritizedPage(after, Integer.MAX_VALUE, limit);
+    }
+
+    /**
+     * страница списка приоритетов по курсору - времени старта и идентификатору последней задачи предыдущей страницы:
+     * задачи с временем старта в порядке (старт, идентификатор; при одинаковом старте задачи нулевой длительности -
+     * раньше), затем задачи без времени старта (AbstractTask.DEFAULT_TIME) в порядке идентификатора
+     *
+     * @param after время старта последней задачи предыдущей страницы (null - первая страница)
+     * @param afterId идентификатор последней задачи предыдущей страницы
+     * @param limit максимальное количество задач на странице
+     * @return задачи страницы (пустой список - страниц больше нет)
+     */
+    default List<Task> getPrioritizedPage(LocalDateTime after, int afterId, int limit) {
+        List<Task> prioritized = getPrioritizedTasks();
+        boolean cursorZero = after != null && prioritized.stream().anyMatch(task -> task.getId() == afterId
+                && task.getStartTime().equals(after) && task.getDuration().isZero());
+        return prioritized.stream()
+                .filter(task -> after == null || isAfterCursor(task, after, afterId, cursorZero))
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * проверка положения задачи в списке приоритетов после курсора (время старта, идентификатор):
+     * задачи без времени старта идут после задач с временем старта,
+     * при одинаковом времени старта задачи нулевой длительности идут раньше
+     *
+     * @param cursorZero курсор - задача нулевой длительности
+     */
+    private static boolean isAfterCursor(Task task, LocalDateTime after, int afterId, boolean cursorZero) {
+        boolean unscheduled = AbstractTask.DEFAULT_TIME.equals(task.getStartTime());
+        boolean cursorUnscheduled = AbstractTask.DEFAULT_TIME.equals(after);
+        if (unscheduled != cursorUnscheduled) {
+            return unscheduled;
+        }
+        int byStart = task.getStartTime().compareTo(after);
+        if (byStart != 0) {
+            return byStart > 0;
+        }
+        boolean zero = task.getDuration().isZero();
+        if (!unscheduled && zero != cursorZero) {
+            return cursorZero;
+        }
+        return task.getId() > afterId;
+    }
+}
@@ -0,0 +1,276 @@
+package run.util;
+
+import tasks.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * класс статических методов записи и чтения снимка задач в компактном двоичном формате
+ * (альтернатива текстовому формату TaskSaver для больших файлов сохранения)
+ * <p>
+ * Формат снимка:
+ * - заголовок: сигнатура {@link BinarySnapshot#MAGIC} (4 байта) и версия формата (1 байт)
+ * - количество задач (varint)
+ * - задачи в любом порядке, каждая задача:
+ * 'type' - тип задачи (1 байт, порядковый номер TaskType)
+ * 'status' - статус задачи (1 байт, порядковый номер Status)
+ * 'id' - идентификатор (varint)
+ * 'epicId' - только для SubTask: идентификатор эпика (varint)
+ * 'name', 'description' - строки UTF-8 с префиксом длины (varint: 0 - null, иначе длина + 1)
+ * 'start', 'duration' - кроме EpicTask: начало в секундах от эпохи UTC и длительность в секундах
+ * (varint zigzag; доли секунды не сохраняются, время эпика определяется подзадачами)
+ * - количество задач в истории (varint) и идентификаторы задач истории (varint) в порядке TaskSaver
+ * <p>
+ * varint - целое без знака, по 7 бит в байте, старший бит - признак продолжения
+ * @see TaskSaver
+ * @see TaskLoader
+ */
+public class BinarySnapshot {
+    public static final byte[] MAGIC = {'T', 'M', 'B', 'S'};
+    public static final byte VERSION = 1;
+
+    private BinarySnapshot() {
+    }
+
+    /**
+     * проверка формата файла по сигнатуре
+     *
+     * @param file файл сохранения
+     * @return true - файл является двоичным снимком
+     */
+    public static boolean isBinary(File file) {
+        byte[] head = new byte[MAGIC.length];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return in.readNBytes(head, 0, head.length) == head.length && Arrays.equals(head, MAGIC);
+        } catch (IOException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * запись снимка задач и истории в файл
+     *
+     * @param file файл сохранения
+     * @param tasksAndSubs задачи и подзадачи
+     * @param epics эпик-задачи
+     * @param epicStatuses статусы эпиков, определенные непосредственно перед сохранением
+     * @param history история задач (последняя просмотренная - последняя в списке)
+     * @throws IOException ошибка записи
+     */
+    public static void write(File file, List<Task> tasksAndSubs, List<EpicTask> epics,
+                             Map<Integer, Status> epicStatuses, List<AbstractTask> history) throws IOException {
+        Output out = new Output(32 * (tasksAndSubs.size() + epics.size() + history.size()) + 16);
+        out.bytes(MAGIC);
+        out.put(VERSION);
+        out.varint(tasksAndSubs.size() + epics.size());
+        for (Task task : tasksAndSubs) {
+            out.put((byte) task.getTaskType().ordinal());
+            out.put((byte) task.getStatus().ordinal());
+            out.varint(task.getId());
+            if (task.getTaskType() == TaskType.SUBT) {
+                out.varint(((SubTask) task).getOverId());
+            }
+            out.string(task.getName());
+            out.string(task.getDescription());
+            out.varlong(task.getStartTime().toEpochSecond(ZoneOffset.UTC));
+            out.varlong(task.getDuration().getSeconds());
+        }
+        for (EpicTask epic : epics) {
+            out.put((byte) TaskType.EPIC.ordinal());
+            out.put((byte) epicStatuses.get(epic.getId()).ordinal());
+            out.varint(epic.getId());
+            out.string(epic.getName());
+            out.string(epic.getDescription());
+        }
+        out.varint(history.size());
+        for (AbstractTask task : history) {
+            out.varint(task.getId());
+        }
+        SyncedFiles.replace(file.toPath(), out.toByteArray());
+    }
+
+    /**
+     * чтение снимка
+     *
+     * @param file файл сохранения
+     * @param items HashMap для восстановленных задач всех типов
+     * @param historyIds список для идентификаторов задач в истории (в порядке сохранения)
+     * @return максимальный идентификатор среди восстановленных задач
+     * @throws ManagerLoadException ошибки чтения или формата файла
+     */
+    public static int read(File file, Map<Integer, AbstractTask> items, List<Integer> historyIds)
+            throws ManagerLoadException {
+        ByteBuffer in;
+        try {
+            in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        } catch (IllegalArgumentException iae) {
+            throw new ManagerLoadException("Ошибка загрузки back-файла. Необходима проверка имени файла");
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка чтения содержимого back-файла.");
+        }
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            in.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new ManagerLoadException("Неверный заголовок back-файла");
+            }
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new ManagerLoadException("Неподдерживаемая версия back-файла: " + version);
+            }
+            int maxId = 0;
+            int count = varint(in);
+            for (int i = 0; i < count; i++) {
+                AbstractTask task = readTask(in);
+                items.put(task.getId(), task);
+                maxId = Math.max(maxId, task.getId());
+            }
+            int historySize = varint(in);
+            for (int i = 0; i < historySize; i++) {
+                historyIds.add(varint(in));
+            }
+            return maxId;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new ManagerLoadException("Ошибка формата back-файла: файл поврежден");
+        }
+    }
+
+    private static AbstractTask readTask(ByteBuffer in) throws ManagerLoadException {
+        TaskType type = valueOf(TaskType.values(), in.get());
+        Status status = valueOf(Status.values(), in.get());
+        int id = varint(in);
+        AbstractTask task;
+        switch (type) {
+            case NORM:
+                task = new Task(id);
+                ((Task) task).setStatus(status);
+                break;
+            case SUBT:
+                task = new SubTask(id, varint(in));
+                ((SubTask) task).setStatus(status);
+                break;
+            case EPIC:
+                task = new EpicTask(id);
+                break;
+            default:
+                throw new ManagerLoadException("Ошибка восстановления задачи id:" + id);
+        }
+        task.setNameForTest(string(in));
+        task.setDescriptionForTest(string(in));
+        if (type != TaskType.EPIC) {
+            task.setStartTime(LocalDateTime.ofEpochSecond(varlong(in), 0, ZoneOffset.UTC));
+            task.setDuration(Duration.ofSeconds(varlong(in)));
+        }
+        return task;
+    }
+
+    private static <E extends Enum<E>> E valueOf(E[] values, byte ordinal) throws ManagerLoadException {
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new ManagerLoadException("Ошибка восстановления типа или статуса задачи");
+        }
+        return values[ordinal];
+    }
+
+    private static int varint(ByteBuffer in) {
+        return (int) readUnsigned(in);
+    }
+
+    private static long varlong(ByteBuffer in) {
+        long zigzag = readUnsigned(in);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private static long readUnsigned(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0 && shift < 64);
+        return value;
+    }
+
+    private static String string(ByteBuffer in) {
+        int length = varint(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    /**
+     * расширяемый буфер записи
+     */
+    private static class Output {
+        private byte[] buffer;
+        private int size;
+
+        Output(int capacity) {
+            buffer = new byte[capacity];
+        }
+
+        void put(byte b) {
+            ensure(1);
+            buffer[size++] = b;
+        }
+
+        void bytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void varint(int value) {
+            unsigned(value & 0xFFFFFFFFL);
+        }
+
+        void varlong(long value) {
+            unsigned((value << 1) ^ (value >> 63));
+        }
+
+        void unsigned(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void string(String value) {
+            if (value == null) {
+                varint(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length + 1);
+            bytes(bytes);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,430 @@
+package run.util;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * общий для сохранения и восстановления кодек полей CSV (RFC-4180)
+ * <p>
+ * запись: поле заключается в кавычки, если содержит разделитель, кавычку или перевод строки;
+ * кавычки внутри поля удваиваются
+ * чтение: однопроходный разбор строки без String.split() (без регулярных выражений и массива подстрок);
+ * числа, перечисления, дата и длительность разбираются непосредственно из диапазона символов строки
+ * @see TaskSaver
+ * @see TaskLoader
+ */
+public final class CsvCodec {
+    public static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+    private static final char ENDLINE = '\n';
+
+    private CsvCodec() {
+    }
+
+    /**
+     * добавление поля в строку CSV с экранированием по RFC-4180
+     *
+     * @param out строка для записи
+     * @param value значение поля (null записывается как пустое поле)
+     * @return out
+     */
+    public static StringBuilder appendField(StringBuilder out, String value) {
+        if (value == null) {
+            return out;
+        }
+        if (!needsQuotes(value)) {
+            return out.append(value);
+        }
+        out.append(QUOTE);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == QUOTE) {
+                out.append(QUOTE);
+            }
+            out.append(c);
+        }
+        return out.append(QUOTE);
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == SEPARATOR || c == QUOTE || c == ENDLINE || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * проверка незавершенной записи: в строке нечетное количество кавычек,
+     * т.е. поле в кавычках содержит перевод строки и продолжается на следующей строке
+     *
+     * @param line строка файла
+     * @return true - запись продолжается на следующей строке
+     */
+    public static boolean isOpen(CharSequence line) {
+        boolean open = false;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == QUOTE) {
+                open = !open;
+            }
+        }
+        return open;
+    }
+
+    /**
+     * объединение строк файла в записи CSV (запись может занимать несколько строк)
+     *
+     * @param lines строки файла
+     * @return записи
+     */
+    public static List<String> joinRecords(List<String> lines) {
+        List<String> records = new ArrayList<>(lines.size());
+        StringBuilder open = null;
+        for (String line : lines) {
+            if (open != null) {
+                open.append(ENDLINE).append(line);
+                if (isOpen(open)) {
+                    continue;
+                }
+                records.add(open.toString());
+                open = null;
+            } else if (isOpen(line)) {
+                open = new StringBuilder(line);
+            } else {
+                records.add(line);
+            }
+        }
+        if (open != null) {
+            records.add(open.toString());
+        }
+        return records;
+    }
+
+    /**
+     * поиск конца записи, начинающейся с заданной позиции (перевод строки вне кавычек)
+     *
+     * @param text текст
+     * @param from начало записи
+     * @return индекс перевода строки, завершающего запись, или длина текста
+     */
+    public static int recordEnd(CharSequence text, int from) {
+        boolean quoted = false;
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == QUOTE) {
+                quoted = !quoted;
+            } else if (c == ENDLINE && !quoted) {
+                return i;
+            }
+        }
+        return text.length();
+    }
+
+    /**
+     * курсор по полям одной записи CSV
+     * один экземпляр переиспользуется для разбора множества записей (см. {@link Cursor#reset})
+     */
+    public static final class Cursor {
+        private CharSequence text;
+        private int end;
+        /**
+         * начало следующего поля (end + 1 - полей больше нет)
+         */
+        private int next;
+        private int fieldStart;
+        private int fieldEnd;
+        private boolean quoted;
+
+        /**
+         * установка курсора на запись
+         *
+         * @param text текст, содержащий запись
+         * @param from начало записи
+         * @param to конец записи (не включительно)
+         * @return this
+         */
+        public Cursor reset(CharSequence text, int from, int to) {
+            this.text = text;
+            this.end = to;
+            this.next = from;
+            this.fieldStart = from;
+            this.fieldEnd = from;
+            return this;
+        }
+
+        public Cursor reset(CharSequence text) {
+            return reset(text, 0, text.length());
+        }
+
+        /**
+         * переход к следующему полю
+         *
+         * @return false - полей в записи больше нет
+         */
+        public boolean next() {
+            if (next > end) {
+                return false;
+            }
+            int i = next;
+            quoted = i < end && text.charAt(i) == QUOTE;
+            if (quoted) {
+                i++;
+                fieldStart = i;
+                while (i < end) {
+                    if (text.charAt(i) == QUOTE) {
+                        if (i + 1 < end && text.charAt(i + 1) == QUOTE) {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                fieldEnd = i;
+                // после закрывающей кавычки ожидается разделитель
+                while (i < end && text.charAt(i) != SEPARATOR) {
+                    i++;
+                }
+            } else {
+                fieldStart = i;
+                while (i < end && text.charAt(i) != SEPARATOR) {
+                    i++;
+                }
+                fieldEnd = i;
+            }
+            next = i + 1;
+            return true;
+        }
+
+        /**
+         * @return true - текущее поле пустое
+         */
+        public boolean isEmpty() {
+            return fieldStart == fieldEnd;
+        }
+
+        /**
+         * @return false - в записи остались поля
+         */
+        public boolean atEnd() {
+            return next > end;
+        }
+
+        /**
+         * значение текущего поля как строки (единственный метод, создающий объект String)
+         *
+         * @return значение поля без кавычек экранирования
+         */
+        public String stringValue() {
+            if (!quoted) {
+                return text.subSequence(fieldStart, fieldEnd).toString();
+            }
+            StringBuilder value = new StringBuilder(fieldEnd - fieldStart);
+            for (int i = fieldStart; i < fieldEnd; i++) {
+                char c = text.charAt(i);
+                value.append(c);
+                if (c == QUOTE) {
+                    i++;
+                }
+            }
+            return value.toString();
+        }
+
+        /**
+         * разбор целого числа непосредственно из символов поля
+         *
+         * @return значение поля
+         * @throws NumberFormatException поле не является целым числом
+         */
+        public int intValue() throws NumberFormatException {
+            int from = skipSpaces(fieldStart, fieldEnd);
+            int to = trimSpaces(from, fieldEnd);
+            return parseInt(text, from, to);
+        }
+
+        /**
+         * разбор значения перечисления непосредственно из символов поля (без учета регистра и пробелов)
+         *
+         * @param values значения перечисления (E.values())
+         * @param <E> тип перечисления
+         * @return значение перечисления
+         * @throws IllegalArgumentException поле не совпадает ни с одним значением
+         */
+        public <E extends Enum<E>> E enumValue(E[] values) throws IllegalArgumentException {
+            int from = skipSpaces(fieldStart, fieldEnd);
+            int to = trimSpaces(from, fieldEnd);
+            for (E value : values) {
+                String name = value.name();
+                if (name.length() == to - from && regionMatches(name, from)) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Неизвестное значение: " + text.subSequence(from, to));
+        }
+
+        /**
+         * разбор даты и времени в формате LocalDateTime.toString()
+         * стандартный формат разбирается из символов поля, остальные форматы - через LocalDateTime.parse()
+         *
+         * @return значение поля
+         * @throws DateTimeParseException ошибка формата
+         */
+        public LocalDateTime dateTimeValue() throws DateTimeParseException {
+            int from = fieldStart;
+            int length = fieldEnd - from;
+            if ((length == 16 || length == 19) && isDateTimePattern(from, length)) {
+                int second = length == 19 ? digits(from + 17, 2) : 0;
+                return LocalDateTime.of(digits(from, 4), digits(from + 5, 2), digits(from + 8, 2),
+                        digits(from + 11, 2), digits(from + 14, 2), second);
+            }
+            return LocalDateTime.parse(text.subSequence(fieldStart, fieldEnd));
+        }
+
+        /**
+         * разбор длительности в формате Duration.toString() (PTnHnMnS)
+         * целые часы/минуты/секунды разбираются из символов поля, остальные форматы - через Duration.parse()
+         *
+         * @return значение поля
+         * @throws DateTimeParseException ошибка формата
+         */
+        public Duration durationValue() throws DateTimeParseException {
+            long seconds = 0;
+            int i = fieldStart + 2;
+            boolean simple = fieldEnd - fieldStart > 2
+                    && text.charAt(fieldStart) == 'P' && text.charAt(fieldStart + 1) == 'T';
+            while (simple && i < fieldEnd) {
+                int numberStart = i;
+                if (text.charAt(i) == '-') {
+                    i++;
+                }
+                while (i < fieldEnd && Character.isDigit(text.charAt(i))) {
+                    i++;
+                }
+                if (i == fieldEnd || i == numberStart || i - numberStart > 9) {
+                    simple = false;
+                    break;
+                }
+                long value = parseInt(text, numberStart, i);
+                switch (text.charAt(i)) {
+                    case 'H':
+                        seconds += value * 3600;
+                        break;
+                    case 'M':
+                        seconds += value * 60;
+                        break;
+                    case 'S':
+                        seconds += value;
+                        break;
+                    default:
+                        simple = false;
+                }
+                i++;
+            }
+            if (simple) {
+                return Duration.ofSeconds(seconds);
+            }
+            return Duration.parse(text.subSequence(fieldStart, fieldEnd));
+        }
+
+        /**
+         * текст записи (для сообщений об ошибках)
+         */
+        public String recordText(int from) {
+            return text.subSequence(from, end).toString();
+        }
+
+        private boolean isDateTimePattern(int from, int length) {
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(from + i);
+                boolean expected;
+                switch (i) {
+                    case 4:
+                    case 7:
+                        expected = c == '-';
+                        break;
+                    case 10:
+                        expected = c == 'T';
+                        break;
+                    case 13:
+                    case 16:
+                        expected = c == ':';
+                        break;
+                    default:
+                        expected = c >= '0' && c <= '9';
+                }
+                if (!expected) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int digits(int from, int count) {
+            int value = 0;
+            for (int i = from; i < from + count; i++) {
+                value = value * 10 + (text.charAt(i) - '0');
+            }
+            return value;
+        }
+
+        private boolean regionMatches(String name, int from) {
+            for (int i = 0; i < name.length(); i++) {
+                if (Character.toUpperCase(text.charAt(from + i)) != name.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int skipSpaces(int from, int to) {
+            while (from < to && text.charAt(from) == ' ') {
+                from++;
+            }
+            return from;
+        }
+
+        private int trimSpaces(int from, int to) {
+            while (to > from && text.charAt(to - 1) == ' ') {
+                to--;
+            }
+            return to;
+        }
+    }
+
+    /**
+     * разбор целого числа из диапазона символов
+     *
+     * @throws NumberFormatException диапазон не является целым числом
+     */
+    static int parseInt(CharSequence text, int from, int to) throws NumberFormatException {
+        if (from >= to) {
+            throw new NumberFormatException("Пустое значение");
+        }
+        boolean negative = text.charAt(from) == '-';
+        int i = negative ? from + 1 : from;
+        if (i == to) {
+            throw new NumberFormatException(text.subSequence(from, to).toString());
+        }
+        long value = 0;
+        for (; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException(text.subSequence(from, to).toString());
+            }
+            value = value * 10 + (c - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException(text.subSequence(from, to).toString());
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException(text.subSequence(from, to).toString());
+        }
+        return (int) value;
+    }
+}
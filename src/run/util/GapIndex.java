@@ -0,0 +1,211 @@
+package run.util;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+/**
+ * индекс свободных промежутков расписания для поиска ближайшего промежутка заданной длины
+ * <p>
+ * промежутки [start, end) не пересекаются и хранятся в декартовом дереве (treap) по времени начала;
+ * узел хранит наибольшую длину промежутка в своем поддереве, поэтому поддеревья без промежутка нужной длины
+ * пропускаются целиком
+ * - добавление, удаление промежутка: O(log n) (в среднем)
+ * - поиск ближайшего промежутка не короче заданной длины: O(log n) (в среднем)
+ * неограниченные промежутки (до первой и после последней задачи) задаются границами
+ * LocalDateTime.MIN и LocalDateTime.MAX
+ */
+public class GapIndex {
+    private final Random random = new Random(21);
+    private Node root;
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    /**
+     * добавление свободного промежутка (пустой промежуток не добавляется)
+     *
+     * @param start начало промежутка
+     * @param end окончание промежутка (не включительно)
+     */
+    public void add(LocalDateTime start, LocalDateTime end) {
+        if (!start.isBefore(end)) {
+            return;
+        }
+        Node[] parts = split(root, start);
+        root = merge(merge(parts[0], new Node(start, end, random.nextInt())), parts[1]);
+        size++;
+    }
+
+    /**
+     * удаление свободного промежутка
+     *
+     * @param start начало промежутка
+     * @return true - промежуток был в индексе
+     */
+    public boolean remove(LocalDateTime start) {
+        int before = size;
+        root = remove(root, start);
+        return size != before;
+    }
+
+    /**
+     * ближайшее время, начиная с которого свободен промежуток заданной длины
+     *
+     * @param after время, не раньше которого должен начинаться промежуток
+     * @param duration длина промежутка
+     * @param deadline время, не позже которого должен заканчиваться промежуток (null - без ограничения)
+     * @return начало найденного промежутка или null, если промежуток не найден
+     */
+    public LocalDateTime find(LocalDateTime after, Duration duration, LocalDateTime deadline) {
+        LocalDateTime found = null;
+        Node floor = floor(after);
+        // промежуток [start, end) вмещает [after, after + duration), в т.ч. промежуток нулевой длины в точке end
+        if (floor != null && Duration.between(after, floor.end).compareTo(duration) >= 0) {
+            found = after;
+        } else {
+            Node next = firstAfter(root, after, duration);
+            if (next != null) {
+                found = next.start;
+            }
+        }
+        if (found == null || (deadline != null && found.plus(duration).isAfter(deadline))) {
+            return null;
+        }
+        return found;
+    }
+
+    /**
+     * промежуток с наибольшим началом, не превышающим заданное время
+     */
+    private Node floor(LocalDateTime time) {
+        Node node = root;
+        Node floor = null;
+        while (node != null) {
+            if (node.start.isAfter(time)) {
+                node = node.left;
+            } else {
+                floor = node;
+                node = node.right;
+            }
+        }
+        return floor;
+    }
+
+    /**
+     * первый (по времени начала) промежуток, начинающийся позже заданного времени и не короче заданной длины
+     */
+    private static Node firstAfter(Node node, LocalDateTime after, Duration duration) {
+        if (node == null || node.maxLength.compareTo(duration) < 0) {
+            return null;
+        }
+        if (!node.start.isAfter(after)) {
+            return firstAfter(node.right, after, duration);
+        }
+        Node found = firstAfter(node.left, after, duration);
+        if (found != null) {
+            return found;
+        }
+        if (node.length.compareTo(duration) >= 0) {
+            return node;
+        }
+        return firstAfter(node.right, after, duration);
+    }
+
+    private Node remove(Node node, LocalDateTime start) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = start.compareTo(node.start);
+        if (cmp == 0) {
+            size--;
+            return merge(node.left, node.right);
+        }
+        if (cmp < 0) {
+            node.left = remove(node.left, start);
+        } else {
+            node.right = remove(node.right, start);
+        }
+        node.update();
+        return node;
+    }
+
+    /**
+     * разделение дерева: промежутки, начинающиеся раньше заданного времени, и остальные
+     */
+    private static Node[] split(Node node, LocalDateTime start) {
+        if (node == null) {
+            return new Node[]{null, null};
+        }
+        if (node.start.isBefore(start)) {
+            Node[] parts = split(node.right, start);
+            node.right = parts[0];
+            node.update();
+            parts[0] = node;
+            return parts;
+        }
+        Node[] parts = split(node.left, start);
+        node.left = parts[1];
+        node.update();
+        parts[1] = node;
+        return parts;
+    }
+
+    /**
+     * объединение деревьев (все промежутки левого дерева начинаются раньше промежутков правого)
+     */
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static final class Node {
+        final LocalDateTime start;
+        final LocalDateTime end;
+        final Duration length;
+        final int priority;
+        /**
+         * наибольшая длина промежутка в поддереве
+         */
+        Duration maxLength;
+        Node left;
+        Node right;
+
+        Node(LocalDateTime start, LocalDateTime end, int priority) {
+            this.start = start;
+            this.end = end;
+            this.length = Duration.between(start, end);
+            this.priority = priority;
+            this.maxLength = length;
+        }
+
+        void update() {
+            maxLength = length;
+            if (left != null && left.maxLength.compareTo(maxLength) > 0) {
+                maxLength = left.maxLength;
+            }
+            if (right != null && right.maxLength.compareTo(maxLength) > 0) {
+                maxLength = right.maxLength;
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package run.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * вспомогательный класс групповой записи (group commit)
+ * <p>
+ * операции только отмечают наличие несохраненных изменений, а запись выполняется фоновым потоком:
+ * все изменения, накопленные за окно windowMillis (или до достижения maxOps операций),
+ * записываются одним вызовом flushAction
+ * <p>
+ * режимы работы вызывающей стороны:
+ * - "выстрелил и забыл": результат {@link GroupCommitter#submit()} не используется
+ * - ожидание записи: ожидание CompletableFuture, возвращаемого {@link GroupCommitter#submit()} или
+ * {@link GroupCommitter#flush()}
+ * @see run.FileBackedTasksManager#enableGroupCommit(long, int)
+ */
+public class GroupCommitter implements AutoCloseable {
+    private final Runnable flushAction;
+    private final long windowMillis;
+    private final int maxOps;
+    private final ScheduledExecutorService executor;
+    /**
+     * завершается после записи, которая включит все операции, зарегистрированные к текущему моменту
+     */
+    private CompletableFuture<Void> nextFlush = new CompletableFuture<>();
+    /**
+     * последняя начатая запись
+     */
+    private CompletableFuture<Void> inFlight = CompletableFuture.completedFuture(null);
+    private ScheduledFuture<?> scheduled;
+    private int pendingOps;
+
+    /**
+     * @param flushAction действие записи накопленных изменений (выполняется в фоновом потоке)
+     * @param windowMillis окно накопления изменений, мс
+     * @param maxOps количество операций, при достижении которого запись выполняется без ожидания окна
+     */
+    public GroupCommitter(Runnable flushAction, long windowMillis, int maxOps) {
+        this.flushAction = flushAction;
+        this.windowMillis = windowMillis;
+        this.maxOps = maxOps;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "group-commit");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * регистрация операции с несохраненными изменениями
+     *
+     * @return CompletableFuture, завершаемый после записи изменений этой операции
+     */
+    public synchronized CompletableFuture<Void> submit() {
+        pendingOps++;
+        if (pendingOps >= maxOps) {
+            schedule(0);
+        } else if (scheduled == null) {
+            schedule(windowMillis);
+        }
+        return nextFlush;
+    }
+
+    /**
+     * запись накопленных изменений без ожидания окна
+     *
+     * @return CompletableFuture, завершаемый после записи всех зарегистрированных операций
+     */
+    public synchronized CompletableFuture<Void> flush() {
+        if (pendingOps == 0) {
+            return inFlight;
+        }
+        schedule(0);
+        return nextFlush;
+    }
+
+    /**
+     * запись накопленных изменений и остановка фонового потока
+     */
+    @Override
+    public void close() {
+        try {
+            flush().join();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * планирование записи
+     * если запись уже запланирована с большей задержкой - она переносится
+     *
+     * @param delayMillis задержка, мс
+     */
+    private void schedule(long delayMillis) {
+        if (scheduled != null) {
+            // запись уже выполняется (и заберет текущие операции) или запланирована без задержки
+            if (delayMillis > 0 || !scheduled.cancel(false)) {
+                return;
+            }
+        }
+        scheduled = executor.schedule(this::runFlush, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * выполнение записи в фоновом потоке
+     * операции, зарегистрированные во время записи, попадают в следующую запись
+     */
+    private void runFlush() {
+        CompletableFuture<Void> done;
+        synchronized (this) {
+            done = nextFlush;
+            nextFlush = new CompletableFuture<>();
+            inFlight = done;
+            pendingOps = 0;
+            scheduled = null;
+        }
+        try {
+            flushAction.run();
+            done.complete(null);
+        } catch (RuntimeException e) {
+            done.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package run.util;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+/**
+ * выдача идентификаторов новых задач блоками
+ * <p>
+ * поток получает (арендует) блок из {@link #getBlockSize()} идентификаторов, сдвигая общую верхнюю границу
+ * атомарной операцией, и выдает идентификаторы блока без обращения к общему счетчику
+ * - в одном потоке идентификаторы выдаются подряд
+ * - при работе нескольких потоков идентификаторы уникальны, но не образуют непрерывную последовательность
+ * - о каждой новой верхней границе сообщается слушателю (например, для сохранения в файл: после перезапуска
+ * выдача продолжается с сохраненной границы, идентификаторы арендованных блоков повторно не выдаются)
+ */
+public class IdAllocator {
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+    /**
+     * верхняя граница арендованных идентификаторов и номер сброса счетчика (изменяются вместе одной операцией CAS:
+     * блок всегда арендуется с границы того сброса, номер которого ему присвоен)
+     */
+    private final AtomicReference<State> state;
+    private final int blockSize;
+    private final IntConsumer leaseListener;
+    private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+    public IdAllocator() {
+        this(0, DEFAULT_BLOCK_SIZE, null);
+    }
+
+    /**
+     * @param initialValue первый выдаваемый идентификатор
+     * @param blockSize размер арендуемого блока
+     * @param leaseListener слушатель новой верхней границы арендованных идентификаторов (может быть null)
+     */
+    public IdAllocator(int initialValue, int blockSize, IntConsumer leaseListener) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Размер блока идентификаторов должен быть положительным");
+        }
+        this.state = new AtomicReference<>(new State(initialValue, 0));
+        this.blockSize = blockSize;
+        this.leaseListener = leaseListener;
+    }
+
+    /**
+     * получение нового идентификатора
+     *
+     * @return идентификатор, ранее не выданный ни одному потоку
+     */
+    public int nextId() {
+        Block block = blocks.get();
+        if (block.next == block.end || block.generation != state.get().generation) {
+            State leased;
+            State current;
+            do {
+                current = state.get();
+                leased = new State(current.highWaterMark + blockSize, current.generation);
+            } while (!state.compareAndSet(current, leased));
+            block.next = current.highWaterMark;
+            block.end = leased.highWaterMark;
+            block.generation = leased.generation;
+            if (leaseListener != null) {
+                leaseListener.accept(block.end);
+            }
+        }
+        return block.next++;
+    }
+
+    /**
+     * сброс счетчика: следующий идентификатор в любом потоке выдается начиная с заданного значения
+     * (блоки, арендованные ранее, больше не используются)
+     *
+     * @param initialValue первый выдаваемый идентификатор
+     */
+    public void reset(int initialValue) {
+        State current;
+        do {
+            current = state.get();
+        } while (!state.compareAndSet(current, new State(initialValue, current.generation + 1)));
+    }
+
+    /**
+     * @return первый идентификатор, не входящий ни в один арендованный блок
+     */
+    public int getHighWaterMark() {
+        return state.get().highWaterMark;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * неизменяемое состояние счетчика
+     */
+    private static final class State {
+        /**
+         * первый идентификатор, не входящий ни в один арендованный блок
+         */
+        final int highWaterMark;
+        /**
+         * номер сброса счетчика: блоки, арендованные до сброса, не используются
+         * @see #reset(int)
+         */
+        final int generation;
+
+        State(int highWaterMark, int generation) {
+            this.highWaterMark = highWaterMark;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * блок идентификаторов, арендованный потоком
+     */
+    private static class Block {
+        int next;
+        int end;
+        int generation = -1;
+    }
+}
@@ -0,0 +1,483 @@
+package run.util;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Map с ключами int на основе открытой адресации (линейное пробирование)
+ * для хранения задач по идентификатору
+ * <p>
+ * в отличие от HashMap ключи хранятся в массиве int без упаковки в Integer,
+ * значения - в массиве Object, объект узла на каждую запись не создается
+ * - хеш ключа: h ^ (h >>> 16), как в HashMap, поэтому небольшие идентификаторы перебираются по возрастанию
+ * - удаленная запись помечается (tombstone), метки вычищаются при перестроении таблицы
+ * или сразу, если за удаленной записью нет занятых ячеек
+ * - поиск ключа ограничен наибольшим расстоянием записи от ячейки по хешу ее ключа
+ * - значения null не допускаются
+ * методы Map с ключом Integer делегируют методам с ключом int: {@link #get(int)}, {@link #put(int, Object)},
+ * {@link #remove(int)}, {@link #containsKey(int)}
+ * о каждом добавлении, замене и удалении записи (в т.ч. через представления) сообщается
+ * методу {@link #entryChanged(int, Object, Object)} (для ведения производных индексов в наследниках)
+ *
+ * @param <V> тип значений
+ */
+public class IntObjectMap<V> extends AbstractMap<Integer, V> {
+    private static final Object REMOVED = new Object();
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private int[] keys;
+    /**
+     * значения: null - свободная ячейка, REMOVED - удаленная запись
+     */
+    private Object[] values;
+    private int size;
+    /**
+     * количество занятых ячеек (записи и метки удаления)
+     */
+    private int used;
+    private int threshold;
+    /**
+     * наибольшее расстояние записи от ячейки по хешу ее ключа: поиск ключа ограничен этим расстоянием
+     * (отсутствующий ключ не ищется до конца непрерывной последовательности занятых ячеек,
+     * которую образуют, например, идентификаторы подряд)
+     */
+    private int maxDistance;
+    private int modCount;
+    /**
+     * версия содержимого: увеличивается при любом изменении (в т.ч. замене значения)
+     * @see #getVersion()
+     */
+    private int version;
+
+    public IntObjectMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize ожидаемое количество записей (таблица не перестраивается до его достижения)
+     */
+    public IntObjectMap(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * версия содержимого для проверки изменения Map (например, перед использованием кэшированной копии значений)
+     *
+     * @return значение, изменяющееся при каждом добавлении, замене или удалении записи
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int i = indexOf(key);
+        return i < 0 ? null : (V) values[i];
+    }
+
+    /**
+     * добавление (замена) значения
+     *
+     * @param key ключ
+     * @param value значение (не null)
+     * @return предыдущее значение или null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        Objects.requireNonNull(value, "IntObjectMap не хранит значения null");
+        int mask = keys.length - 1;
+        int home = hash(key) & mask;
+        int i = home;
+        int free = -1;
+        for (int distance = 0; distance <= maxDistance; distance++) {
+            Object current = values[i];
+            if (current == null) {
+                break;
+            }
+            if (current == REMOVED) {
+                if (free < 0) {
+                    free = i;
+                }
+            } else if (keys[i] == key) {
+                values[i] = value;
+                version++;
+                entryChanged(key, (V) current, value);
+                return (V) current;
+            }
+            i = (i + 1) & mask;
+        }
+        if (free < 0) {
+            while (values[i] != null && values[i] != REMOVED) {
+                i = (i + 1) & mask;
+            }
+            free = i;
+        }
+        if (values[free] == null) {
+            used++;
+        }
+        maxDistance = Math.max(maxDistance, (free - home) & mask);
+        keys[free] = key;
+        values[free] = value;
+        size++;
+        modCount++;
+        version++;
+        if (used > threshold) {
+            rehash(size > threshold / 2 ? keys.length << 1 : keys.length);
+        }
+        entryChanged(key, null, value);
+        return null;
+    }
+
+    public V remove(int key) {
+        int i = indexOf(key);
+        return i < 0 ? null : removeAt(i);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Integer && containsKey(((Integer) key).intValue());
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Integer ? get(((Integer) key).intValue()) : null;
+    }
+
+    @Override
+    public V put(Integer key, V value) {
+        return put(key.intValue(), value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key instanceof Integer ? remove(((Integer) key).intValue()) : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void clear() {
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value != null && value != REMOVED) {
+                entryChanged(keys[i], (V) value, null);
+            }
+        }
+        Arrays.fill(values, null);
+        size = 0;
+        used = 0;
+        maxDistance = 0;
+        modCount++;
+        version++;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super Integer, ? super V> action) {
+        int expectedModCount = modCount;
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value != null && value != REMOVED) {
+                action.accept(keys[i], (V) value);
+            }
+        }
+        if (expectedModCount != modCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Integer, V>> iterator() {
+                return new SlotIterator<>() {
+                    @Override
+                    Entry<Integer, V> element(int slot) {
+                        return new SlotEntry(slot);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void clear() {
+                IntObjectMap.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public Set<Integer> keySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new SlotIterator<>() {
+                    @Override
+                    Integer element(int slot) {
+                        return keys[slot];
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return containsKey(key);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void clear() {
+                IntObjectMap.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Iterator<V> iterator() {
+                return new SlotIterator<>() {
+                    @Override
+                    V element(int slot) {
+                        return (V) values[slot];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void clear() {
+                IntObjectMap.this.clear();
+            }
+        };
+    }
+
+    /**
+     * вызывается после добавления, замены или удаления записи
+     * (реализация по умолчанию ничего не делает; переопределяющий метод не должен изменять Мапу)
+     *
+     * @param key ключ
+     * @param previous предыдущее значение (null - запись добавлена)
+     * @param current новое значение (null - запись удалена)
+     */
+    protected void entryChanged(int key, V previous, V current) {
+    }
+
+    private static int hash(int key) {
+        return key ^ (key >>> 16);
+    }
+
+    private int indexOf(int key) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        for (int distance = 0; distance <= maxDistance; distance++) {
+            Object current = values[i];
+            if (current == null) {
+                return -1;
+            }
+            if (current != REMOVED && keys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * удаление записи из ячейки
+     * если следующая ячейка свободна, ячейка (и предшествующие ей метки удаления) освобождаются,
+     * иначе ячейка помечается как удаленная
+     *
+     * @param slot ячейка
+     * @return удаленное значение
+     */
+    @SuppressWarnings("unchecked")
+    private V removeAt(int slot) {
+        int mask = keys.length - 1;
+        V old = (V) values[slot];
+        if (values[(slot + 1) & mask] == null) {
+            values[slot] = null;
+            used--;
+            int i = (slot - 1) & mask;
+            while (values[i] == REMOVED) {
+                values[i] = null;
+                used--;
+                i = (i - 1) & mask;
+            }
+        } else {
+            values[slot] = REMOVED;
+        }
+        size--;
+        modCount++;
+        version++;
+        entryChanged(keys[slot], old, null);
+        return old;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        threshold = Math.min((int) (capacity * LOAD_FACTOR), capacity - 1);
+    }
+
+    /**
+     * перестроение таблицы (с удалением меток удаления)
+     *
+     * @param capacity новый размер таблицы (степень 2)
+     */
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(Math.min(capacity, MAX_CAPACITY));
+        int mask = keys.length - 1;
+        maxDistance = 0;
+        for (int j = 0; j < oldValues.length; j++) {
+            Object value = oldValues[j];
+            if (value != null && value != REMOVED) {
+                int home = hash(oldKeys[j]) & mask;
+                int i = home;
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                maxDistance = Math.max(maxDistance, (i - home) & mask);
+                keys[i] = oldKeys[j];
+                values[i] = value;
+            }
+        }
+        used = size;
+        modCount++;
+    }
+
+    /**
+     * итератор по занятым ячейкам таблицы
+     *
+     * @param <T> тип элемента (запись, ключ, значение)
+     */
+    private abstract class SlotIterator<T> implements Iterator<T> {
+        private int next = advance(0);
+        private int current = -1;
+        private int expectedModCount = modCount;
+
+        abstract T element(int slot);
+
+        @Override
+        public boolean hasNext() {
+            return next < values.length;
+        }
+
+        @Override
+        public T next() {
+            if (expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            current = next;
+            next = advance(next + 1);
+            return element(current);
+        }
+
+        @Override
+        public void remove() {
+            if (current < 0) {
+                throw new IllegalStateException();
+            }
+            if (expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeAt(current);
+            current = -1;
+            expectedModCount = modCount;
+        }
+
+        private int advance(int from) {
+            while (from < values.length && (values[from] == null || values[from] == REMOVED)) {
+                from++;
+            }
+            return from;
+        }
+    }
+
+    /**
+     * запись, связанная с ячейкой таблицы (setValue изменяет значение в таблице)
+     */
+    private final class SlotEntry implements Entry<Integer, V> {
+        private final int slot;
+        private final int key;
+
+        SlotEntry(int slot) {
+            this.slot = slot;
+            this.key = keys[slot];
+        }
+
+        @Override
+        public Integer getKey() {
+            return key;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V getValue() {
+            return (V) values[slot];
+        }
+
+        @Override
+        public V setValue(V value) {
+            Objects.requireNonNull(value, "IntObjectMap не хранит значения null");
+            V old = getValue();
+            values[slot] = value;
+            version++;
+            entryChanged(key, old, value);
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key ^ getValue().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+}
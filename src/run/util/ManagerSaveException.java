@@ -0,0 +1,16 @@
+package run.util;
+
+/**
+ * собственное исключение для единообразия обработки
+ * <p>
+ * выбрасывается при ошибке записи задач в файл сохранения, журнал или файл границы идентификаторов
+ * (изменения, которые не удалось записать, записываются при следующей операции)
+ *
+ * @see run.FileBackedTasksManager
+ */
+public class ManagerSaveException extends RuntimeException {
+
+    public ManagerSaveException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
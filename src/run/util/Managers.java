@@ -13,6 +13,11 @@ import java.io.File;
  * @see TaskSaver;
  */
 public class Managers {
+    /**
+     * наибольшее количество задач в истории стандартного менеджера истории
+     * @see #setDefaultHistoryCapacity(int)
+     */
+    private static volatile int defaultHistoryCapacity = Integer.MAX_VALUE;
 
     /**
      * получение менеджера задач (хранение задач только в оператвной памяти)
@@ -24,6 +29,27 @@ public class Managers {
         return new InMemoryTaskManager(getDefaultHistory());
     }
 
+    /**
+     * получение менеджера задач для одновременной работы из нескольких потоков
+     * (хранение задач только в оператвной памяти, история просмотра - ConcurrentHistoryManager)
+     *
+     * @return объект менеджера
+     * @see ConcurrentTaskManager
+     */
+    public static ConcurrentTaskManager getConcurrent() {
+        return new ConcurrentTaskManager(new ConcurrentHistoryManager(defaultHistoryCapacity));
+    }
+
+    /**
+     * получение менеджера задач с хранением полей задач по столбцам (для аналитики по большому количеству задач)
+     *
+     * @return объект менеджера
+     * @see ColumnarTaskManager
+     */
+    public static ColumnarTaskManager getColumnar() {
+        return new ColumnarTaskManager(getDefaultHistory());
+    }
+
     /**
      * получение менеджера задач (сохранение задач и истории задач в csv-файл)
      *
@@ -41,13 +67,72 @@ public class Managers {
         return null;
     }
 
+    /**
+     * получение менеджера задач с параллельной загрузкой задач из csv-файла
+     * (для больших файлов сохранения)
+     *
+     * @param file объект CSV-файла восстановления
+     * @return объект менеджера
+     * @see ParallelTaskLoader
+     */
+    public static FileBackedTasksManager loadFromFileParallel(File file) {
+        try {
+            return new FileBackedTasksManager(ParallelTaskLoader.load(file), false);
+        } catch (ManagerLoadException mle) {
+            System.out.println(mle.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * получение менеджера задач с хранением задач в отображенном в память файле
+     * (файл создается, если его нет)
+     *
+     * @param file файл записей задач
+     * @return объект менеджера
+     * @see MappedTaskManager
+     */
+    public static MappedTaskManager loadMapped(File file) {
+        try {
+            return new MappedTaskManager(file);
+        } catch (ManagerLoadException mle) {
+            System.out.println(mle.getMessage());
+        }
+        return null;
+    }
+
     /**
      * метод создания стандартного менеджера истории
+     * (с ограничением количества задач, если оно задано - см. {@link #setDefaultHistoryCapacity(int)})
      *
      * @return объект менеджера истории InMemoryHistoryManager
      */
     public static HistoryManager getDefaultHistory() {
-        return new InMemoryHistoryManager();
+        return new InMemoryHistoryManager(defaultHistoryCapacity);
+    }
+
+    /**
+     * установка ограничения количества задач в истории для менеджеров, создаваемых после вызова
+     * (в т.ч. менеджеров с сохранением в файл и в отображенный в память файл)
+     *
+     * @param capacity наибольшее количество задач в истории (Integer.MAX_VALUE - без ограничения)
+     */
+    public static void setDefaultHistoryCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Размер истории должен быть положительным");
+        }
+        defaultHistoryCapacity = capacity;
+    }
+
+    /**
+     * метод создания менеджера истории с ограничением количества задач
+     * (при переполнении из истории удаляется задача, просмотренная раньше остальных)
+     *
+     * @param capacity наибольшее количество задач в истории
+     * @return объект менеджера истории InMemoryHistoryManager
+     */
+    public static HistoryManager getDefaultHistory(int capacity) {
+        return new InMemoryHistoryManager(capacity);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,271 @@
+package run.util;
+
+import tasks.AbstractTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * вспомогательный класс параллельной загрузки задач из csv-файла
+ * <p>
+ * файл отображается в память (memory-mapped), раздел задач делится на части по границам записей,
+ * части разбираются параллельно в ForkJoinPool в отдельные HashMap, которые затем объединяются
+ * результат - экземпляр TaskLoader, аналогичный последовательной загрузке
+ * @see TaskLoader
+ * @see TaskSaver - описание формата файла
+ */
+public class ParallelTaskLoader {
+    private static final byte ENDLINE = '\n';
+    private static final byte QUOTE = '"';
+    /**
+     * количество частей раздела задач на один поток пула (для выравнивания нагрузки)
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+    /**
+     * минимальный размер части, байт: небольшие файлы не делятся
+     */
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+    private ParallelTaskLoader() {
+    }
+
+    /**
+     * параллельная загрузка в общем пуле ForkJoinPool
+     *
+     * @param file csv-файл восстановления
+     * @return экземпляр TaskLoader с восстановленными задачами и историей
+     * @throws ManagerLoadException ошибки чтения или формата файла
+     */
+    public static TaskLoader load(File file) throws ManagerLoadException {
+        return load(file, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * параллельная загрузка в заданном пуле
+     * файлы больше 2 ГБ не отображаются в память целиком и загружаются последовательно
+     * двоичный снимок (см. BinarySnapshot) не требует разбора строк и также загружается последовательно
+     *
+     * @param file csv-файл восстановления
+     * @param pool пул потоков для разбора частей файла
+     * @return экземпляр TaskLoader с восстановленными задачами и историей
+     * @throws ManagerLoadException ошибки чтения или формата файла
+     */
+    public static TaskLoader load(File file, ForkJoinPool pool) throws ManagerLoadException {
+        if (BinarySnapshot.isBinary(file)) {
+            return new TaskLoader(file);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return new TaskLoader(file);
+            }
+            if (size == 0) {
+                throw new ManagerLoadException("Ошибка загрузки back-файла. Файл пуст");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int headerEnd = indexOf(buffer, 0, (int) size);
+            if (!withoutCarriageReturn(decode(buffer, 0, headerEnd)).equals(TaskSaver.HEADER)) {
+                throw new ManagerLoadException("Неверный заголовок back-файла");
+            }
+            int tasksStart = Math.min(headerEnd + 1, (int) size);
+            int historyStart = findHistoryStart(buffer, tasksStart);
+            int tasksEnd = historyStart < 0 ? (int) size : historyStart - 1;
+
+            List<ChunkParser> parsers = new ArrayList<>();
+            int[] bounds = split(buffer, tasksStart, tasksEnd, pool.getParallelism() * CHUNKS_PER_THREAD);
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                parsers.add(new ChunkParser(buffer, bounds[i], bounds[i + 1]));
+            }
+            pool.invoke(new RecursiveTask<Void>() {
+                @Override
+                protected Void compute() {
+                    ForkJoinTask.invokeAll(parsers);
+                    return null;
+                }
+            });
+
+            Map<Integer, AbstractTask> items = new HashMap<>();
+            int maxId = 0;
+            // номер записи в части дополняется количеством записей предыдущих частей,
+            // сообщения о пропущенных записях выводятся в порядке файла (как при последовательной загрузке)
+            long recordsBefore = 0;
+            for (ChunkParser parser : parsers) {
+                Chunk chunk = parser.join();
+                items.putAll(chunk.items);
+                maxId = Math.max(maxId, chunk.maxId);
+                for (int i = 0; i < chunk.errors.size(); i++) {
+                    TaskLoader.reportSkipped(chunk.errors.get(i), recordsBefore + chunk.errorRecords.get(i));
+                }
+                recordsBefore += chunk.records;
+            }
+            List<Integer> historyIds = historyStart < 0
+                    ? new ArrayList<>()
+                    : TaskLoader.historyFromString(decode(buffer, historyStart, (int) size).trim());
+            return new TaskLoader(file, items, maxId, historyIds);
+        } catch (IllegalArgumentException iae) {
+            throw new ManagerLoadException("Ошибка загрузки back-файла. Необходима проверка имени файла");
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка чтения содержимого back-файла.");
+        }
+    }
+
+    /**
+     * поиск начала строки истории
+     * строка истории - последняя строка файла после пустой строки, содержит только идентификаторы и разделители,
+     * поэтому поиск ведется с конца файла и не требует просмотра раздела задач
+     * строки могут заканчиваться как "\n", так и "\r\n" (разделитель - "\n\n" или "\r\n\r\n")
+     *
+     * @param buffer содержимое файла
+     * @param tasksStart начало раздела задач
+     * @return индекс начала строки истории или -1, если пустой строки (и истории) в файле нет
+     */
+    private static int findHistoryStart(ByteBuffer buffer, int tasksStart) {
+        int end = buffer.limit();
+        for (int i = end - 1; i >= tasksStart; i--) {
+            byte b = buffer.get(i);
+            if (b == ENDLINE) {
+                int previous = i - 1;
+                if (previous >= tasksStart && buffer.get(previous) == '\r') {
+                    previous--;
+                }
+                if (previous < tasksStart || buffer.get(previous) == ENDLINE) {
+                    // пустая строка-разделитель
+                    return i + 1;
+                }
+                if (i != end - 1) {
+                    return -1;
+                }
+                // перевод строки в конце строки истории
+            } else if (!(b == ',' || b == '-' || b == '\r' || (b >= '0' && b <= '9'))) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static String withoutCarriageReturn(String line) {
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    /**
+     * деление раздела задач на части по границам записей
+     * граница части - перевод строки вне кавычек: четность количества кавычек отслеживается при просмотре раздела,
+     * поэтому запись с переводом строки в поле в кавычках не разделяется между частями
+     *
+     * @param buffer содержимое файла
+     * @param from начало раздела задач
+     * @param to конец раздела задач (не включительно)
+     * @param chunks желаемое количество частей
+     * @return границы частей: bounds[i] - начало i-й части, bounds[i + 1] - ее конец
+     */
+    private static int[] split(ByteBuffer buffer, int from, int to, int chunks) {
+        int length = to - from;
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, length / Math.max(1, chunks));
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(from);
+        boolean quoted = false;
+        int boundary = from + chunkSize;
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b == QUOTE) {
+                quoted = !quoted;
+            } else if (b == ENDLINE && !quoted && i >= boundary && i + 1 < to) {
+                bounds.add(i + 1);
+                boundary = i + 1 + chunkSize;
+            }
+        }
+        bounds.add(to);
+        return bounds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * поиск перевода строки
+     *
+     * @return индекс перевода строки или to, если перевода строки в диапазоне нет
+     */
+    private static int indexOf(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == ENDLINE) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private static String decode(ByteBuffer buffer, int from, int to) {
+        return StandardCharsets.UTF_8.decode(buffer.slice(from, to - from)).toString();
+    }
+
+    /**
+     * результат разбора части файла
+     */
+    private static class Chunk {
+        final Map<Integer, AbstractTask> items = new HashMap<>();
+        int maxId;
+        /**
+         * количество записей в части
+         */
+        int records;
+        /**
+         * ошибки формата и номера записей с ошибками в части (с 1)
+         */
+        final List<ManagerLoadException> errors = new ArrayList<>();
+        final List<Integer> errorRecords = new ArrayList<>();
+    }
+
+    /**
+     * задача ForkJoinPool: разбор части раздела задач в отдельную HashMap
+     * строки с ошибками формата пропускаются (как и при последовательной загрузке),
+     * ошибки собираются в результат части и выводятся после объединения частей
+     */
+    @SuppressWarnings("serial") // задача не сериализуется, ForkJoinTask реализует Serializable
+    private static class ChunkParser extends RecursiveTask<Chunk> {
+        private final ByteBuffer buffer;
+        private final int from;
+        private final int to;
+
+        ChunkParser(ByteBuffer buffer, int from, int to) {
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Chunk compute() {
+            Chunk chunk = new Chunk();
+            String text = decode(buffer, from, to);
+            CsvCodec.Cursor cursor = new CsvCodec.Cursor();
+            int recordStart = 0;
+            while (recordStart < text.length()) {
+                int recordEnd = CsvCodec.recordEnd(text, recordStart);
+                // перевод строки "\r\n": символ '\r' не входит в последнее поле записи
+                int fieldsEnd = recordEnd > recordStart && text.charAt(recordEnd - 1) == '\r'
+                        ? recordEnd - 1 : recordEnd;
+                if (fieldsEnd > recordStart) {
+                    chunk.records++;
+                    try {
+                        // recordStart - начало записи в тексте части (для текста записи в сообщении об ошибке)
+                        AbstractTask abs = TaskLoader.fromRecord(cursor.reset(text, recordStart, fieldsEnd),
+                                recordStart);
+                        chunk.items.put(abs.getId(), abs);
+                        chunk.maxId = Math.max(chunk.maxId, abs.getId());
+                    } catch (ManagerLoadException mle) {
+                        chunk.errors.add(mle);
+                        chunk.errorRecords.add(chunk.records);
+                    }
+                }
+                recordStart = recordEnd + 1;
+            }
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package run.util;
+
+/**
+ * формат снимка (back-файла) менеджера задач
+ *
+ * @see TaskSaver - текстовый формат CSV
+ * @see BinarySnapshot - компактный двоичный формат
+ */
+public enum SnapshotFormat {
+    CSV,
+    BINARY
+}
@@ -0,0 +1,72 @@
+package run.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * вспомогательный класс записи в файл с принудительным сбросом на диск (FileChannel.force):
+ * после возврата из метода записанные данные не теряются при сбое системы
+ * снимки перезаписываются атомарно (см. {@link #replace(Path, byte[])})
+ */
+public class SyncedFiles {
+    /**
+     * суффикс временного файла атомарной замены
+     */
+    public static final String TEMP_SUFFIX = ".tmp";
+
+    private SyncedFiles() {
+    }
+
+    /**
+     * перезапись файла
+     *
+     * @param path файл
+     * @param data записываемые данные
+     * @throws IOException ошибка записи
+     */
+    public static void write(Path path, byte[] data) throws IOException {
+        write(path, data, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * атомарная замена файла: данные записываются во временный файл рядом с заменяемым
+     * (суффикс {@link #TEMP_SUFFIX}), который после сброса на диск переименовывается в заменяемый файл
+     * при сбое во время записи заменяемый файл остается в прежнем состоянии
+     *
+     * @param path файл
+     * @param data записываемые данные
+     * @throws IOException ошибка записи
+     */
+    public static void replace(Path path, byte[] data) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
+        write(temp, data);
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * дописывание данных в конец файла
+     *
+     * @param path файл
+     * @param data записываемые данные
+     * @throws IOException ошибка записи
+     */
+    public static void append(Path path, byte[] data) throws IOException {
+        write(path, data, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static void write(Path path, byte[] data, OpenOption... options) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package run.util;
+
+import tasks.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * журнал изменений (append-only) для менеджера с сохранением в файл
+ * <p>
+ * вместо полной перезаписи back-файла после каждой операции в журнал дописывается компактная запись
+ * об изменении. Журнал хранится рядом с CSV-файлом (к имени добавляется суффикс {@link TaskJournal#SUFFIX})
+ * и периодически сворачивается (compaction) в обычный снимок формата TaskSaver
+ * @see TaskSaver
+ * @see run.FileBackedTasksManager
+ * <p>
+ * Формат записи: одна запись - одна строка (кроме полей в кавычках с переводами строк), поля через
+ * разделители-запятые
+ * 'PUT,[строка задачи в формате TaskSaver]' - задача добавлена/обновлена
+ * 'DEL,[id]' - задача удалена
+ * 'VIEW,[id]' - задача просмотрена (добавлена в историю)
+ * <p>
+ * просмотры в режиме полной перезаписи снимка пишутся в отдельный журнал просмотров
+ * (суффикс {@link TaskJournal#HISTORY_SUFFIX}), который очищается при каждой записи снимка
+ * @see TaskLoader#replayJournal(List)
+ */
+public class TaskJournal {
+    public static final String SUFFIX = ".journal";
+    /**
+     * суффикс журнала просмотров (только записи VIEW)
+     */
+    public static final String HISTORY_SUFFIX = ".history";
+    public static final String PUT = "PUT";
+    public static final String DEL = "DEL";
+    public static final String VIEW = "VIEW";
+    private static final char SEPARATOR = ',';
+    private static final char ENDLINE = '\n';
+
+    private final File file;
+    /**
+     * количество записей в журнале с момента последнего сворачивания
+     */
+    private int size;
+
+    /**
+     * конструктор журнала для заданного back-файла
+     * @param backFile файл сохранения задач (снимок)
+     */
+    public TaskJournal(File backFile) {
+        this(backFile, SUFFIX);
+    }
+
+    /**
+     * конструктор журнала с заданным суффиксом имени файла
+     * @param backFile файл сохранения задач (снимок)
+     * @param suffix суффикс, добавляемый к имени файла сохранения
+     */
+    public TaskJournal(File backFile, String suffix) {
+        this.file = new File(backFile.getPath() + suffix);
+    }
+
+    /**
+     * запись о добавлении/обновлении задачи или подзадачи
+     *
+     * @param task задача (подзадача)
+     * @return строка записи журнала
+     */
+    public static String put(Task task) {
+        return PUT + SEPARATOR + TaskSaver.taskToString(task);
+    }
+
+    /**
+     * запись о добавлении/обновлении эпик-задачи
+     *
+     * @param epic эпик
+     * @param status статус эпика, определенный в момент записи
+     * @return строка записи журнала
+     */
+    public static String put(EpicTask epic, Status status) {
+        return PUT + SEPARATOR + TaskSaver.epicTaskToString(epic, status.toString());
+    }
+
+    /**
+     * запись об удалении задачи любого типа
+     *
+     * @param id идентификатор задачи
+     * @return строка записи журнала
+     */
+    public static String delete(int id) {
+        return DEL + SEPARATOR + id + ENDLINE;
+    }
+
+    /**
+     * запись о просмотре задачи
+     *
+     * @param id идентификатор задачи
+     * @return строка записи журнала
+     */
+    public static String view(int id) {
+        return VIEW + SEPARATOR + id + ENDLINE;
+    }
+
+    /**
+     * дописывание записей в конец журнала (записи сбрасываются на диск до возврата из метода)
+     * стоимость записи пропорциональна размеру изменения, а не количеству задач в менеджере
+     *
+     * @param records записи журнала
+     * @throws ManagerSaveException ошибка записи в журнал
+     */
+    public void append(List<String> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        StringBuilder data = new StringBuilder();
+        for (String record : records) {
+            data.append(record);
+        }
+        try {
+            SyncedFiles.append(file.toPath(), data.toString().getBytes(StandardCharsets.UTF_8));
+            size += records.size();
+        } catch (IOException ioe) {
+            throw new ManagerSaveException("Ошибка записи в журнал", ioe);
+        }
+    }
+
+    /**
+     * очистка журнала (после сворачивания в снимок)
+     */
+    public void clear() {
+        try {
+            Files.deleteIfExists(file.toPath());
+            size = 0;
+        } catch (IOException ioe) {
+            System.out.println("Ошибка очистки журнала");
+        }
+    }
+
+    /**
+     * чтение записей журнала для восстановления
+     *
+     * @return список записей (пустой, если журнала нет)
+     * @throws ManagerLoadException ошибка чтения журнала
+     */
+    public List<String> read() throws ManagerLoadException {
+        if (!file.exists()) {
+            return new ArrayList<>();
+        }
+        try {
+            List<String> records = CsvCodec.joinRecords(Files.readAllLines(file.toPath()));
+            size = records.size();
+            return records;
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка чтения журнала back-файла.");
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public File getFile() {
+        return file;
+    }
+}
@@ -2,9 +2,12 @@ package run.util;
 
 import tasks.*;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
 /**
@@ -26,18 +29,35 @@ import java.util.*;
  */
 public class TaskLoader {
 
+    /**
+     * количество строк, через которое сообщается о ходе загрузки
+     */
+    private static final int PROGRESS_STEP = 10_000;
+
     private final File file;
 
     /**
      * последний id сохраненной задачи для восстановления в менеджере
      */
     private int maxId;
-    private final List<AbstractTask> history;
+    private List<AbstractTask> history;
+    /**
+     * идентификаторы задач в истории (в порядке сохранения: последняя просмотренная - первая)
+     */
+    private final List<Integer> historyIds = new ArrayList<>();
 
     /**
      * общая HashMap для сохранения экземпляров задач всех типов
      */
     private final HashMap<Integer, AbstractTask> idMapAbstract = new HashMap<>();
+    /**
+     * курсор разбора записей (переиспользуется для всех строк файла)
+     */
+    private final CsvCodec.Cursor cursor = new CsvCodec.Cursor();
+    /**
+     * формат файла сохранения (определяется по содержимому файла)
+     */
+    private SnapshotFormat format = SnapshotFormat.CSV;
 
 
     /**
@@ -45,9 +65,21 @@ public class TaskLoader {
      * @param file файл сохранения задач и истории
      */
     public TaskLoader(File file) {
+        this(file, null);
+    }
+
+    /**
+     * конструктор с отслеживанием хода загрузки
+     * файл читается построчно, задачи создаются по мере чтения (файл целиком в памяти не хранится)
+     *
+     * @param file файл сохранения задач и истории
+     * @param progress получатель сведений о ходе загрузки (может быть null)
+     * @see LoadProgress
+     */
+    public TaskLoader(File file, LoadProgress progress) {
         this.file = file;
         // параллельно заполняется idMapAbstract
-        this.history = addItemAndRestoreHistory(TaskLoader.getRawData(file));
+        this.history = readFile(file, progress);
     }
 
     /**
@@ -59,6 +91,24 @@ public class TaskLoader {
         this.history = addItemAndRestoreHistory(lines);
     }
 
+    /**
+     * конструктор из предварительно восстановленных задач
+     * (используется при параллельной загрузке)
+     *
+     * @param file файл сохранения задач и истории
+     * @param items восстановленные задачи всех типов
+     * @param maxId максимальный идентификатор среди восстановленных задач
+     * @param historyIds идентификаторы задач в истории в порядке сохранения
+     * @see ParallelTaskLoader
+     */
+    TaskLoader(File file, Map<Integer, AbstractTask> items, int maxId, List<Integer> historyIds) {
+        this.file = file;
+        this.idMapAbstract.putAll(items);
+        this.maxId = maxId;
+        this.historyIds.addAll(historyIds);
+        this.history = restoreHistory(this.historyIds);
+    }
+
     /**
      * метод получения массива (String[]) строк из файла
      *
@@ -82,6 +132,76 @@ public class TaskLoader {
         return lines;
     }
 
+    /**
+     * построчное чтение файла сохранения с восстановлением задач и истории
+     * задачи создаются по мере чтения строк, глубина стека не зависит от размера файла
+     * двоичный снимок (см. BinarySnapshot) определяется по сигнатуре и читается целиком
+     *
+     * @param file csv-файл восстановления
+     * @param progress получатель сведений о ходе загрузки (может быть null)
+     * @return история задач в виде списка List<AbstractTask> (объекты задач)
+     * @throws ManagerLoadException - ошибки чтения или формата файла
+     */
+    private List<AbstractTask> readFile(File file, LoadProgress progress) throws ManagerLoadException {
+        if (BinarySnapshot.isBinary(file)) {
+            format = SnapshotFormat.BINARY;
+            maxId = BinarySnapshot.read(file, idMapAbstract, historyIds);
+            if (progress != null) {
+                progress.onProgress(file.length(), file.length());
+            }
+            return restoreHistory(historyIds);
+        }
+        try (CountingInputStream in = new CountingInputStream(Files.newInputStream(file.toPath()));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            long totalBytes = Files.size(file.toPath());
+            String line = reader.readLine();
+            if (line == null) {
+                throw new ManagerLoadException("Ошибка загрузки back-файла. Файл пуст");
+            }
+            if (!line.equals(TaskSaver.HEADER)) {
+                throw new ManagerLoadException("Неверный заголовок back-файла");
+            }
+            long lineCount = 0;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                addItem(completeRecord(reader, line), ++lineCount);
+                if (progress != null && lineCount % PROGRESS_STEP == 0) {
+                    progress.onProgress(in.getCount(), totalBytes);
+                }
+            }
+            if (line != null) {
+                restoreHistoryLine(reader.readLine());
+            }
+            if (progress != null) {
+                progress.onProgress(totalBytes, totalBytes);
+            }
+        } catch (IllegalArgumentException iae) {
+            throw new ManagerLoadException("Ошибка загрузки back-файла. Необходима проверка имени файла");
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка чтения содержимого back-файла.");
+        }
+        return restoreHistory(historyIds);
+    }
+
+    /**
+     * дочитывание записи, поле которой в кавычках содержит перевод строки
+     *
+     * @param reader поток чтения файла
+     * @param line первая строка записи
+     * @return запись целиком
+     * @throws IOException ошибка чтения
+     */
+    private static String completeRecord(BufferedReader reader, String line) throws IOException {
+        if (!CsvCodec.isOpen(line)) {
+            return line;
+        }
+        StringBuilder record = new StringBuilder(line);
+        String next;
+        while (CsvCodec.isOpen(record) && (next = reader.readLine()) != null) {
+            record.append('\n').append(next);
+        }
+        return record.toString();
+    }
+
     /**
      * Метод-оболочка восстановления задач из массива строк, полученных в методе
      * {@link TaskLoader#getRawData(File file)}
@@ -99,7 +219,7 @@ public class TaskLoader {
         if (!lines.get(FIRST_ROW_INDEX).equals(TaskSaver.HEADER)) {
             throw new ManagerLoadException("Неверный заголовок back-файла");
         }
-        return iterateLines(lines, FIRST_ROW_INDEX + 1);
+        return iterateLines(CsvCodec.joinRecords(lines), FIRST_ROW_INDEX + 1);
     }
 
     public List<AbstractTask> getHistory() {
@@ -110,6 +230,13 @@ public class TaskLoader {
         return file;
     }
 
+    /**
+     * @return формат загруженного файла сохранения
+     */
+    public SnapshotFormat getFormat() {
+        return format;
+    }
+
     /**
      * восстановление HashMap хранения <b>обычных задач</b>
      *
@@ -171,7 +298,10 @@ public class TaskLoader {
      */
     public void attachSubs(Map<Integer, SubTask> idMapSubs, Map<Integer, EpicTask> idMapEpics) {
         for (SubTask sub : idMapSubs.values()) {
-            idMapEpics.get(sub.getOverId()).addSubTask(sub);
+            EpicTask epic = idMapEpics.get(sub.getOverId());
+            if (epic != null) {
+                epic.addSubTask(sub);
+            }
         }
 
     }
@@ -181,12 +311,12 @@ public class TaskLoader {
      * {@link TaskLoader#getRawData(File file)}
      *
      * @param lines         массив строк содержимого файла
-     * @param index         индекс обработываемого элемента массива lines
+     * @param index         индекс первого обрабатываемого элемента массива lines
      *                      чтобы не было "магического числа"
      * @return история задач в виде списка List<AbstractTask> (объекты задач)
      * <p>
      * Общий алгоритм:
-     * - метод рекурсивно проходит по массиву строк, полученных из файла сохранения
+     * - метод в цикле проходит по массиву строк, полученных из файла сохранения
      * - если переданный массив строк пустой возвращается пустой список
      * - если элемент массива с текущим индексом - пустая строка, метод прошелся по всем сохраненным
      * задачам.
@@ -200,64 +330,151 @@ public class TaskLoader {
         if (lines.isEmpty() || lines.size() == 1) {
             return new ArrayList<>();
         }
-        if (index == lines.size()) {
-            return new ArrayList<>();
-        }
-        if (lines.get(index).equals("")) {
-            try {
-                String historyLine = lines.get(index + 1);
-                List<Integer> ids = historyFromString(historyLine);
-                return restoreHistory(ids);
-            } catch (IndexOutOfBoundsException e) {
-                return new ArrayList<>();
-            }
-        } else {
-            String rawData = lines.get(index);
-            try {
-                AbstractTask abs = fromString(rawData);
-                int id = abs.getId();
-                idMapAbstract.put(id, abs);
-                maxId = updateMaxId(id);
-            } catch (ManagerLoadException mle) {
-                System.out.println(mle.getMessage());
-                // пропустить строку
+        for (int i = index; i < lines.size(); i++) {
+            if (lines.get(i).equals("")) {
+                restoreHistoryLine(i + 1 < lines.size() ? lines.get(i + 1) : null);
+                return restoreHistory(historyIds);
             }
-            return iterateLines(lines, index + 1);
+            addItem(lines.get(i), i - index + 1);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * восстановление задачи из строки и ее сохранение в общей HashMap
+     * строки с ошибками формата пропускаются
+     *
+     * @param rawData строка с данными задачи
+     * @param record номер записи в разделе задач (с 1, для сообщения об ошибке)
+     */
+    private void addItem(String rawData, long record) {
+        try {
+            AbstractTask abs = fromRecord(cursor.reset(rawData), 0);
+            int id = abs.getId();
+            idMapAbstract.put(id, abs);
+            maxId = updateMaxId(id);
+        } catch (ManagerLoadException mle) {
+            reportSkipped(mle, record);
+            // пропустить строку
+        }
+    }
+
+    /**
+     * сообщение о пропущенной записи с ошибкой формата
+     * (общее для последовательной и параллельной загрузки - см. ParallelTaskLoader)
+     *
+     * @param mle ошибка восстановления задачи из записи
+     * @param record номер записи в разделе задач (с 1)
+     */
+    static void reportSkipped(ManagerLoadException mle, long record) {
+        System.out.println(mle.getMessage() + " (запись " + record + " пропущена)");
+    }
+
+    /**
+     * восстановление списка идентификаторов истории из строки истории
+     *
+     * @param historyLine строка истории (null - история не сохранена)
+     */
+    private void restoreHistoryLine(String historyLine) {
+        historyIds.clear();
+        if (historyLine != null) {
+            historyIds.addAll(historyFromString(historyLine));
         }
     }
 
     /**
      * метод преобразования тектовых данных в объект класса AbstractTask
      * для предварительного сохранения
-     * этап 1: преобразование строки в массив строк по количесству сохраненных параметров и приведение параметров к
-     * необходимому типу данных
-     * этап 2: создание объекта задач из сохраненных параметров
      *
      * @param value строка для обработки
      * @return объект список задачи
      * @throws ManagerLoadException - в случае невозможности преобразования данных из строки к заданному типу
      *                              - в случае возможного неправильного формата данных (количество полей к обработке)
+     * @see TaskLoader#fromRecord(CsvCodec.Cursor, int)
+     */
+    static AbstractTask fromString(String value) throws ManagerLoadException {
+        return fromRecord(new CsvCodec.Cursor().reset(value), 0);
+    }
+
+    /**
+     * метод преобразования записи CSV в объект класса AbstractTask
+     * этап 1: однопроходный разбор полей записи с приведением параметров к необходимому типу данных
+     * непосредственно из символов записи (без промежуточных строк для id, типа, статуса и времени)
+     * этап 2: создание объекта задач из сохраненных параметров
+     *
+     * @param cursor курсор, установленный на запись
+     * @param from начало записи в тексте курсора (для сообщений об ошибках)
+     * @return объект задачи
+     * @throws ManagerLoadException - в случае невозможности преобразования данных из строки к заданному типу
+     *                              - в случае возможного неправильного формата данных (количество полей к обработке)
+     * @see CsvCodec.Cursor
      * @see TaskLoader#fromParameters(int, TaskType, String, Status, String, int)
      */
-    private AbstractTask fromString(String value) throws ManagerLoadException {
-        String[] savedData = value.split(",");
-        if (!(savedData.length == 7 || savedData.length == 8)) {
-            throw new ManagerLoadException("Ошибка формата сохраненной задачи:[" + value + ']');
-        }
+    static AbstractTask fromRecord(CsvCodec.Cursor cursor, int from) throws ManagerLoadException {
+        final int fieldsCount = 7;
+        int fields = 0;
         try {
-            int id = Integer.parseInt(savedData[0]);
-            TaskType type = TaskType.valueOf(savedData[1].toUpperCase().trim());
-            String name = savedData[2];
-            Status status = Status.valueOf(savedData[3].toUpperCase().trim());
-            String description = savedData[4];
-            int epicId = (savedData.length == 8) ? Integer.parseInt(savedData[7]) : -1;
+            int id = 0;
+            TaskType type = null;
+            String name = null;
+            Status status = null;
+            String description = null;
+            LocalDateTime start = null;
+            Duration duration = null;
+            int epicId = -1;
+            while (cursor.next()) {
+                switch (fields++) {
+                    case 0:
+                        id = cursor.intValue();
+                        break;
+                    case 1:
+                        type = cursor.enumValue(TaskType.values());
+                        break;
+                    case 2:
+                        name = cursor.stringValue();
+                        break;
+                    case 3:
+                        status = cursor.enumValue(Status.values());
+                        break;
+                    case 4:
+                        description = cursor.stringValue();
+                        break;
+                    case 5:
+                        start = cursor.isEmpty() ? null : cursor.dateTimeValue();
+                        break;
+                    case 6:
+                        duration = cursor.isEmpty() ? null : cursor.durationValue();
+                        break;
+                    case 7:
+                        epicId = cursor.intValue();
+                        break;
+                    default:
+                        throw new ManagerLoadException("Ошибка формата сохраненной задачи:["
+                                + cursor.recordText(from) + ']');
+                }
+            }
+            if (fields < fieldsCount) {
+                throw new ManagerLoadException("Ошибка формата сохраненной задачи:[" + cursor.recordText(from) + ']');
+            }
             AbstractTask abs = fromParameters(id, type, name, status, description, epicId);
             if (abs == null) {
-                throw new ManagerLoadException("Ошибка восстановления задачи из параметров: " + Arrays.toString(savedData));
+                throw new ManagerLoadException("Ошибка восстановления задачи из параметров: "
+                        + cursor.recordText(from));
+            }
+            // время эпика определяется подзадачами
+            if (type != TaskType.EPIC) {
+                if (start != null) {
+                    abs.setStartTime(start);
+                }
+                if (duration != null) {
+                    abs.setDuration(duration);
+                }
             }
             return abs;
         } catch (NumberFormatException nfe) {
-            throw new ManagerLoadException("Ошибка восстановления id:" + savedData[0]);
+            throw new ManagerLoadException("Ошибка восстановления id:" + cursor.recordText(from));
+        } catch (DateTimeParseException dtpe) {
+            throw new ManagerLoadException("Ошибка восстановления времени задачи:" + cursor.recordText(from));
         } catch (IllegalArgumentException iae) {
             throw new ManagerLoadException("Ошибка восстановления id или статуса");
         }
@@ -274,7 +491,7 @@ public class TaskLoader {
      * @param epicId      - в случае SubTask - идентификатор Эпик-задачи, к которой относится подзадача
      * @return - объект задачи как переменная типа AbstractTask (приведение в последующих методах)
      */
-    private AbstractTask fromParameters(int id, TaskType type, String name,
+    private static AbstractTask fromParameters(int id, TaskType type, String name,
                                         Status status, String description, int epicId) {
         switch (type) {
             case NORM:
@@ -297,19 +514,21 @@ public class TaskLoader {
      * @param row строка с данными
      * @return список идентификаторов задач в том же порядке, в котором они сохранены в файле
      */
-    private List<Integer> historyFromString(String row) {
+    static List<Integer> historyFromString(String row) {
         List<Integer> ids = new ArrayList<>();
-        String[] stringIds = row.split(",");
-        if (stringIds.length == 0) {
-            return ids;
-        }
-        for (String id : stringIds) {
+        int start = 0;
+        while (start <= row.length()) {
+            int end = row.indexOf(CsvCodec.SEPARATOR, start);
+            if (end < 0) {
+                end = row.length();
+            }
             try {
-                ids.add(Integer.parseInt(id));
+                ids.add(CsvCodec.parseInt(row, start, end));
             } catch (NumberFormatException nfe) {
                 // пропустить добавление элемента
                 // ?? лучше загрузить частично, чем ничего не восстановить?
             }
+            start = end + 1;
         }
         return ids;
     }
@@ -328,11 +547,71 @@ public class TaskLoader {
     private List<AbstractTask> restoreHistory(List<Integer> ids) {
         List<AbstractTask> history = new ArrayList<>();
         for (Integer id : ids) {
-            history.add(idMapAbstract.get(id));
+            AbstractTask task = idMapAbstract.get(id);
+            if (task != null) {
+                history.add(task);
+            }
         }
         return history;
     }
 
+    /**
+     * применение записей журнала изменений к восстановленным из снимка задачам и истории
+     * записи применяются в порядке их следования в журнале
+     *
+     * @param records записи журнала
+     * @see TaskJournal - описание формата записей
+     * @implNote ошибочные записи пропускаются (по аналогии с ошибочными строками снимка)
+     * история на время применения хранится в LinkedHashSet от ранее просмотренной задачи к последней
+     * (повторный просмотр и удаление - O(1), как в InMemoryHistoryManager)
+     */
+    public void replayJournal(List<String> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        Set<Integer> views = new LinkedHashSet<>();
+        for (int i = historyIds.size() - 1; i >= 0; i--) {
+            views.add(historyIds.get(i));
+        }
+        for (String record : records) {
+            int separator = record.indexOf(',');
+            if (separator < 0) {
+                continue;
+            }
+            String op = record.substring(0, separator);
+            String payload = record.substring(separator + 1);
+            try {
+                switch (op) {
+                    case TaskJournal.PUT:
+                        AbstractTask abs = fromString(payload);
+                        idMapAbstract.put(abs.getId(), abs);
+                        maxId = updateMaxId(abs.getId());
+                        break;
+                    case TaskJournal.DEL:
+                        int deletedId = Integer.parseInt(payload);
+                        idMapAbstract.remove(deletedId);
+                        views.remove(deletedId);
+                        break;
+                    case TaskJournal.VIEW:
+                        int viewedId = Integer.parseInt(payload);
+                        views.remove(viewedId);
+                        views.add(viewedId);
+                        break;
+                }
+            } catch (NumberFormatException nfe) {
+                System.out.println("Ошибка формата записи журнала:[" + record + ']');
+            } catch (ManagerLoadException mle) {
+                System.out.println(mle.getMessage());
+            }
+        }
+        // история сохраняется в обратном порядке: последняя просмотренная задача - первая
+        List<Integer> replayed = new ArrayList<>(views);
+        Collections.reverse(replayed);
+        historyIds.clear();
+        historyIds.addAll(replayed);
+        history = restoreHistory(historyIds);
+    }
+
     /**
      * вспомогательный метод преобразования объектов задач к нужному типу
      *
@@ -369,7 +648,7 @@ public class TaskLoader {
      * @param <T>         кдасс задачи
      * @return обновленный объект задачи с сохраненным названием/описанием
      */
-    private <T extends AbstractTask> T setNameAndDescr(T item, String name, String description) {
+    private static <T extends AbstractTask> T setNameAndDescr(T item, String name, String description) {
         item.setNameForTest(name);
         item.setDescriptionForTest(description);
         return item;
@@ -378,4 +657,48 @@ public class TaskLoader {
     public int getMaxId() {
         return maxId;
     }
+
+    /**
+     * получатель сведений о ходе загрузки из файла
+     */
+    public interface LoadProgress {
+        /**
+         * @param bytesRead количество прочитанных байт
+         * @param totalBytes размер файла
+         */
+        void onProgress(long bytesRead, long totalBytes);
+    }
+
+    /**
+     * поток чтения с подсчетом прочитанных байт (для отчета о ходе загрузки)
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
 }
@@ -29,6 +29,9 @@ import java.util.List;
  * <p>
  * последующие строки после заголовка: текстовое представление задачи по указанному выше формату
  * поля задач сохранены через разделители-запятые
+ * название и описание, содержащие запятые, кавычки или переводы строк, заключаются в кавычки (RFC-4180),
+ * кавычки внутри поля удваиваются
+ * @see CsvCodec
  * после последней сохраненной задачи сохраняется пустая строка
  * последняя строка в файле: список через разделители идентификаторов задач ,находящихся в истории в прямом порядке
  */
@@ -48,18 +51,30 @@ public class TaskSaver {
      * @see SubTask
      */
     public static String taskToString(Task task) {
-        StringBuilder save = new StringBuilder();
+        return appendTask(new StringBuilder(), task).toString();
+    }
+
+    /**
+     * метод добавления строкового представления задачи (подзадачи) в общую строку сохранения
+     * (без создания промежуточной строки на каждую задачу)
+     *
+     * @param save строка сохранения
+     * @param task экземпляр задачи(/подзадачи)
+     * @return save
+     * @see TaskSaver#taskToString(Task)
+     */
+    public static StringBuilder appendTask(StringBuilder save, Task task) {
         save.append(task.getId()).append(SEPARATOR);
         save.append(task.getTaskType().toString()).append(SEPARATOR);
-        save.append(task.getName()).append(SEPARATOR);
+        CsvCodec.appendField(save, task.getName()).append(SEPARATOR);
         save.append(task.getStatus().toString()).append(SEPARATOR);
-        save.append(task.getDescription()).append(SEPARATOR);
+        CsvCodec.appendField(save, task.getDescription()).append(SEPARATOR);
         save.append(task.getStartTime()).append(SEPARATOR);
         save.append(task.getDuration());
         if (task.getTaskType() == TaskType.SUBT) {
             save.append(SEPARATOR).append(((SubTask) task).getOverId());
         }
-        return save.append(ENDLINE).toString();
+        return save.append(ENDLINE);
     }
 
     /**
@@ -73,15 +88,26 @@ public class TaskSaver {
      * @see EpicTask
      */
     public static String epicTaskToString(EpicTask epic, String status) {
-        StringBuilder save = new StringBuilder();
+        return appendEpicTask(new StringBuilder(), epic, status).toString();
+    }
+
+    /**
+     * метод добавления строкового представления Эпик-задачи в общую строку сохранения
+     *
+     * @param save   строка сохранения
+     * @param epic   экземпляр эпика
+     * @param status статус эпика, определенный непосредственно перед сохранением
+     * @return save
+     * @see TaskSaver#epicTaskToString(EpicTask, String)
+     */
+    public static StringBuilder appendEpicTask(StringBuilder save, EpicTask epic, String status) {
         save.append(epic.getId()).append(SEPARATOR);
         save.append(epic.getTaskType().toString()).append(SEPARATOR);
-        save.append(epic.getName()).append(SEPARATOR);
+        CsvCodec.appendField(save, epic.getName()).append(SEPARATOR);
         save.append(status).append(SEPARATOR);
-        save.append(epic.getDescription()).append(SEPARATOR);
+        CsvCodec.appendField(save, epic.getDescription()).append(SEPARATOR);
         save.append(epic.getStartTime()).append(SEPARATOR);
-        save.append(epic.getDuration()).append(ENDLINE);
-        return save.toString();
+        return save.append(epic.getDuration()).append(ENDLINE);
     }
 
     /**
@@ -0,0 +1,186 @@
+package run.util;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.BitSet;
+
+/**
+ * сетка занятости времени: горизонт планирования делится на слоты одинаковой длины (например, по 15 минут),
+ * занятость слотов хранится в битовом множестве (слот занят, если с ним пересекается хотя бы одна задача)
+ * <p>
+ * проверка промежутка - проверка диапазона битов по словам (long), без обращения к дереву задач:
+ * - все слоты промежутка свободны: промежуток свободен ({@link Occupancy#FREE})
+ * - занят слот, целиком входящий в промежуток: промежуток пересекается с задачей ({@link Occupancy#BUSY})
+ * - заняты только крайние, частично входящие в промежуток слоты: требуется точная проверка ({@link Occupancy#UNKNOWN})
+ * промежутки за пределами горизонта не проверяются (см. {@link #covers(LocalDateTime, LocalDateTime)})
+ * задача нулевой длительности [S, S) отмечается отдельно (может совпадать со стартом другой задачи,
+ * поэтому занятый ею слот не означает пересечения - только требует точной проверки)
+ */
+public class TimeSlotGrid {
+    private final LocalDateTime origin;
+    private final LocalDateTime horizon;
+    private final long originSecond;
+    private final long slotNanos;
+    private final int slots;
+    private final BitSet busy;
+    /**
+     * слоты, в которые попадают старты задач нулевой длительности
+     */
+    private final BitSet points;
+
+    /**
+     * результат проверки промежутка по сетке
+     */
+    public enum Occupancy {
+        FREE,
+        BUSY,
+        UNKNOWN
+    }
+
+    /**
+     * @param origin начало горизонта планирования
+     * @param slotLength длина слота
+     * @param slots количество слотов (горизонт - origin + slotLength * slots)
+     */
+    public TimeSlotGrid(LocalDateTime origin, Duration slotLength, int slots) {
+        if (slotLength.isNegative() || slotLength.isZero() || slots < 1) {
+            throw new IllegalArgumentException("Длина слота и количество слотов должны быть положительными");
+        }
+        this.origin = origin;
+        this.originSecond = origin.toEpochSecond(ZoneOffset.UTC);
+        this.slotNanos = slotLength.toNanos();
+        this.slots = slots;
+        this.horizon = origin.plus(slotLength.multipliedBy(slots));
+        this.busy = new BitSet(slots);
+        this.points = new BitSet(slots);
+    }
+
+    public LocalDateTime getOrigin() {
+        return origin;
+    }
+
+    public LocalDateTime getHorizon() {
+        return horizon;
+    }
+
+    /**
+     * @return true - промежуток целиком входит в горизонт планирования
+     */
+    public boolean covers(LocalDateTime start, LocalDateTime end) {
+        return !start.isBefore(origin) && !end.isAfter(horizon) && start.isBefore(horizon);
+    }
+
+    /**
+     * отметка слотов, пересекающихся с задачей (часть задачи за пределами горизонта не учитывается)
+     * задача нулевой длительности отмечается в слоте, в который попадает ее старт
+     *
+     * @param start старт задачи
+     * @param end окончание задачи
+     */
+    public void book(LocalDateTime start, LocalDateTime end) {
+        int from = firstSlot(start);
+        int to = lastSlot(start, end);
+        if (from <= to) {
+            (end.isAfter(start) ? busy : points).set(from, to + 1);
+        }
+    }
+
+    /**
+     * освобождение слотов, пересекающихся с задачей
+     * слоты освобождаются целиком: задачи, занимающие те же слоты, нужно отметить повторно
+     * (см. {@link #slotStart(LocalDateTime)}, {@link #slotEnd(LocalDateTime)})
+     *
+     * @param start старт задачи
+     * @param end окончание задачи
+     */
+    public void release(LocalDateTime start, LocalDateTime end) {
+        int from = firstSlot(start);
+        int to = lastSlot(start, end);
+        if (from <= to) {
+            busy.clear(from, to + 1);
+            points.clear(from, to + 1);
+        }
+    }
+
+    public void clear() {
+        busy.clear();
+        points.clear();
+    }
+
+    /**
+     * проверка промежутка по сетке (промежуток должен входить в горизонт)
+     *
+     * @param start начало промежутка
+     * @param end окончание промежутка
+     * @return FREE, BUSY или UNKNOWN (см. описание класса)
+     */
+    public Occupancy check(LocalDateTime start, LocalDateTime end) {
+        long startOffset = offset(start);
+        long endOffset = offset(end);
+        int from = (int) (startOffset / slotNanos);
+        int to = endOffset > startOffset ? (int) ((endOffset - 1) / slotNanos) : from;
+        int firstBusy = busy.nextSetBit(from);
+        int firstPoint = points.nextSetBit(from);
+        if ((firstBusy < 0 || firstBusy > to) && (firstPoint < 0 || firstPoint > to)) {
+            return Occupancy.FREE;
+        }
+        // слоты, целиком входящие в промежуток
+        int inner = (int) ((startOffset + slotNanos - 1) / slotNanos);
+        int innerEnd = (int) (endOffset / slotNanos);
+        int innerBusy = busy.nextSetBit(inner);
+        if (inner < innerEnd && innerBusy >= 0 && innerBusy < innerEnd) {
+            return Occupancy.BUSY;
+        }
+        return Occupancy.UNKNOWN;
+    }
+
+    /**
+     * начало слота, в который попадает заданное время (не раньше начала горизонта)
+     */
+    public LocalDateTime slotStart(LocalDateTime time) {
+        return origin.plusNanos(firstSlot(time) * slotNanos);
+    }
+
+    /**
+     * окончание слота, в который попадает заданное время (не позже окончания горизонта)
+     */
+    public LocalDateTime slotEnd(LocalDateTime time) {
+        return origin.plusNanos((firstSlot(time) + 1L) * slotNanos);
+    }
+
+    private int firstSlot(LocalDateTime start) {
+        if (!start.isAfter(origin)) {
+            return 0;
+        }
+        if (!start.isBefore(horizon)) {
+            return slots - 1;
+        }
+        return (int) (offset(start) / slotNanos);
+    }
+
+    /**
+     * последний слот задачи (окончание не включается; для задачи нулевой длительности - слот старта)
+     * -1, если задача за пределами горизонта
+     */
+    private int lastSlot(LocalDateTime start, LocalDateTime end) {
+        if (!start.isBefore(horizon) || end.isBefore(origin) || (end.equals(origin) && end.isAfter(start))) {
+            return -1;
+        }
+        if (!end.isAfter(start)) {
+            return firstSlot(start);
+        }
+        if (end.isAfter(horizon)) {
+            return slots - 1;
+        }
+        return (int) ((offset(end) - 1) / slotNanos);
+    }
+
+    /**
+     * смещение от начала горизонта в наносекундах (без создания объекта Duration)
+     */
+    private long offset(LocalDateTime time) {
+        return (time.toEpochSecond(ZoneOffset.UTC) - originSecond) * 1_000_000_000L
+                + time.getNano() - origin.getNano();
+    }
+}
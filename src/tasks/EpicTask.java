@@ -9,9 +9,41 @@ import java.util.*;
  * Наследуется напрямую от ItemToDo, т.к. отличается от обычной задачи @see {@link SubTask}:
  * не хранит статус;
  * хранит список подзадач.
+ * подзадачи хранятся в упорядоченных по идентификатору массивах (идентификаторы - int[] без упаковки),
+ * добавление в конец (подзадачи с возрастающими id) - O(1), вставка и удаление - O(k)
+ * ведет счетчики подзадач по статусам (подзадача сообщает эпику об изменении своего статуса),
+ * поэтому статус эпика определяется без просмотра подзадач
+ * ведет самый ранний старт и самое позднее окончание подзадач с количеством подзадач с таким стартом/окончанием:
+ * подзадачи просматриваются, только когда удалена последняя подзадача с крайним стартом или окончанием
+ * @see #getSubsStatus()
  */
 public class EpicTask extends AbstractTask {
-    private final TreeSet<Integer> subsIds = new TreeSet<>();
+    private static final int[] NO_IDS = new int[0];
+    private static final SubTask[] NO_SUBS = new SubTask[0];
+
+    /**
+     * идентификаторы подзадач по возрастанию (занято subsCount элементов)
+     */
+    private transient int[] subsIds = NO_IDS;
+    /**
+     * подзадачи в порядке subsIds (для учета изменения статуса и замены подзадачи при обновлении)
+     */
+    private transient SubTask[] subs = NO_SUBS;
+    private transient int subsCount;
+    /**
+     * количество подзадач по статусам (индекс - Status.ordinal())
+     */
+    private final transient int[] statusCounts = new int[Status.values().length];
+    /**
+     * самый ранний старт подзадач и количество подзадач с этим стартом
+     */
+    private transient LocalDateTime earliestStart = DEFAULT_TIME;
+    private transient int earliestStartCount;
+    /**
+     * окончание эпика (самое позднее окончание подзадач) и количество подзадач с этим окончанием
+     */
+    private transient LocalDateTime endTime = DEFAULT_TIME;
+    private transient int endTimeCount;
 
     public EpicTask(int taskId) {
         super(taskId);
@@ -31,27 +63,63 @@ public class EpicTask extends AbstractTask {
         setStatus(Status.N_A); //статус "заглушка"
     }
 
+    /**
+     * добавление подзадач
+     * подзадача, уже добавленная в эпик, повторно не добавляется;
+     * другой экземпляр подзадачи с тем же идентификатором (обновленная подзадача) заменяет предыдущий
+     *
+     * @param subs подзадачи
+     */
     public void addSubTask(SubTask... subs) {
         for(SubTask sub : subs) {
-            if (sub.getOverId() == getId() && subsIds.add(sub.getId())) {
-                plusDuration(sub.getDuration());
-                updateStartTime(sub.getStartTime(), sub.getDuration(), true);
+            if (sub.getOverId() != getId()) {
+                continue;
+            }
+            int index = indexOf(sub.getId());
+            if (index >= 0 && this.subs[index] == sub) {
+                continue;
             }
+            if (index >= 0) {
+                removeSubTask(this.subs[index]);
+                index = indexOf(sub.getId());
+            }
+            insertAt(-index - 1, sub);
+            countStatus(sub.getStatus(), 1);
+            sub.addEpic(this);
+            plusDuration(sub.getDuration());
+            addToTimeline(sub.getStartTime(), sub.getEndTime());
         }
     }
 
     public void removeSubTask(SubTask... subs) {
         for(SubTask sub : subs) {
             if (sub.getOverId() == getId()) {
-                subsIds.remove(sub.getId());
-                minusDuration(sub.getDuration());
-                updateStartTime(sub.getStartTime(), sub.getDuration(), false);
+                int index = indexOf(sub.getId());
+                if (index < 0) {
+                    continue;
+                }
+                SubTask removed = this.subs[index];
+                removeAt(index);
+                countStatus(removed.getStatus(), -1);
+                removed.removeEpic(this);
+                minusDuration(removed.getDuration());
+                removeFromTimeline(removed.getStartTime(), removed.getEndTime());
             }
         }
     }
 
     public void clearSubTasks() {
-        subsIds.clear();
+        for (int i = 0; i < subsCount; i++) {
+            subs[i].removeEpic(this);
+        }
+        subsIds = NO_IDS;
+        subs = NO_SUBS;
+        subsCount = 0;
+        Arrays.fill(statusCounts, 0);
+        earliestStart = DEFAULT_TIME;
+        earliestStartCount = 0;
+        endTime = DEFAULT_TIME;
+        endTimeCount = 0;
         setDuration(Duration.ZERO);
         setStartTime(EpicTask.DEFAULT_TIME);
     }
@@ -63,14 +131,14 @@ public class EpicTask extends AbstractTask {
 
     @Override
     public void setStartTime(LocalDateTime startTime) {
-        if (!subsIds.isEmpty()) {
+        if (subsCount != 0) {
             super.setStartTime(startTime);
         }
     }
 
     @Override
     public void setDuration(Duration duration) {
-        if (!subsIds.isEmpty()) {
+        if (subsCount != 0) {
             super.setDuration(duration);
         } else {
             super.setDuration(Duration.ZERO);
@@ -78,21 +146,128 @@ public class EpicTask extends AbstractTask {
     }
     @Override
     public LocalDateTime getStartTime() {
-        if (!subsIds.isEmpty()) {
+        if (subsCount != 0) {
             return super.getStartTime();
         }
         return EpicTask.DEFAULT_TIME;
     }
 
+    /**
+     * окончание эпика - самое позднее окончание подзадач - O(1)
+     *
+     * @return окончание эпика или DEFAULT_TIME, если подзадач нет
+     */
+    @Override
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
     @Override
     public String toString() {
         return super.toString()
                 + " "
-                + (subsIds.isEmpty() ? "[NoSubs]" : Arrays.toString(subsIds.toArray(new Integer[]{})));
+                + (subsCount == 0 ? "[NoSubs]" : getSubs().toString());
     }
 
     public ArrayList<Integer> getSubs() {
-        return new ArrayList<>(subsIds);
+        ArrayList<Integer> ids = new ArrayList<>(subsCount);
+        for (int i = 0; i < subsCount; i++) {
+            ids.add(subsIds[i]);
+        }
+        return ids;
+    }
+
+    /**
+     * идентификаторы подзадач после заданного (для постраничного вывода) - O(log k + limit)
+     *
+     * @param afterId идентификатор, после которого выбираются подзадачи
+     * @param limit максимальное количество идентификаторов
+     * @return идентификаторы подзадач по возрастанию
+     */
+    public List<Integer> getSubsAfter(int afterId, int limit) {
+        int index = indexOf(afterId);
+        int from = index >= 0 ? index + 1 : -index - 1;
+        int to = (int) Math.min(subsCount, (long) from + Math.max(limit, 0));
+        List<Integer> page = new ArrayList<>(Math.max(to - from, 0));
+        for (int i = from; i < to; i++) {
+            page.add(subsIds[i]);
+        }
+        return page;
+    }
+
+    public boolean hasSub(int subId) {
+        return indexOf(subId) >= 0;
+    }
+
+    /**
+     * статус эпика по статусам подзадач - O(1)
+     * - нет подзадач или все подзадачи со статусом NEW: NEW
+     * - все подзадачи со статусом DONE: DONE
+     * - в остальных случаях: IN_PROGRESS
+     *
+     * @return статус эпика
+     */
+    public Status getSubsStatus() {
+        if (subsCount == 0) {
+            return Status.NEW;
+        }
+        if (statusCount(Status.IN_PROGRESS) != 0) {
+            return Status.IN_PROGRESS;
+        }
+        if (statusCount(Status.NEW) == 0) {
+            return Status.DONE;
+        }
+        if (statusCount(Status.DONE) == 0) {
+            return Status.NEW;
+        }
+        return Status.IN_PROGRESS;
+    }
+
+    /**
+     * подзадачи эпика с заданным статусом - O(k) (без просмотра, если подзадач с этим статусом нет)
+     *
+     * @param status статус
+     * @return подзадачи по возрастанию идентификатора
+     */
+    public List<SubTask> getSubsWithStatus(Status status) {
+        List<SubTask> result = new ArrayList<>(statusCount(status));
+        for (int i = 0; i < subsCount && result.size() < statusCount(status); i++) {
+            if (subs[i].getStatus() == status) {
+                result.add(subs[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * учет изменения статуса подзадачи (вызывается подзадачей)
+     *
+     * @param sub подзадача
+     * @param previous предыдущий статус подзадачи
+     */
+    void subStatusChanged(SubTask sub, Status previous) {
+        if (contains(sub)) {
+            countStatus(previous, -1);
+            countStatus(sub.getStatus(), 1);
+        }
+    }
+
+    /**
+     * учет изменения времени старта или длительности подзадачи (вызывается подзадачей)
+     *
+     * @param sub подзадача
+     * @param previousStart предыдущий старт подзадачи
+     * @param previousDuration предыдущая длительность подзадачи
+     */
+    void subTimeChanged(SubTask sub, LocalDateTime previousStart, Duration previousDuration) {
+        if (contains(sub)) {
+            minusDuration(previousDuration);
+            plusDuration(sub.getDuration());
+            // при пересчете по подзадачам новое время подзадачи уже учтено
+            if (!removeFromTimeline(previousStart, previousStart.plus(previousDuration))) {
+                addToTimeline(sub.getStartTime(), sub.getEndTime());
+            }
+        }
     }
 
     /**
@@ -112,30 +287,98 @@ public class EpicTask extends AbstractTask {
     }
 
     /**
-     * обновление старта при добавлении/удалении подзадачи
+     * учет старта и окончания добавленной подзадачи - O(1)
      *
-     * @param subStartTime старт подзадачи
-     * @param subDuration длительность подзадачи
-     * @param addSub добавление подзадачи к эпику/удаление подзадачи из эпика
-     */
-    private void updateStartTime(LocalDateTime subStartTime, Duration subDuration, boolean addSub) {
-        if (addSub) {
-            // подзадача была только что добавлена
-            if (subsIds.size() == 1) {
-                setStartTime(subStartTime);
-                return;
-            }
-            if (getStartTime().isAfter(subStartTime)) {
-                setStartTime(subStartTime);
-            }
-        } else {
-            if (subsIds.isEmpty()) {
-                setStartTime(EpicTask.DEFAULT_TIME);
-                return;
+     * @param subStart старт подзадачи
+     * @param subEnd окончание подзадачи
+     */
+    private void addToTimeline(LocalDateTime subStart, LocalDateTime subEnd) {
+        if (earliestStartCount == 0 || subStart.isBefore(earliestStart)) {
+            earliestStart = subStart;
+            earliestStartCount = 1;
+        } else if (subStart.equals(earliestStart)) {
+            earliestStartCount++;
+        }
+        if (endTimeCount == 0 || subEnd.isAfter(endTime)) {
+            endTime = subEnd;
+            endTimeCount = 1;
+        } else if (subEnd.equals(endTime)) {
+            endTimeCount++;
+        }
+        super.setStartTime(earliestStart);
+    }
+
+    /**
+     * учет старта и окончания удаленной (или измененной) подзадачи - O(1),
+     * O(k), если удалена последняя подзадача с самым ранним стартом или самым поздним окончанием
+     *
+     * @param subStart старт подзадачи
+     * @param subEnd окончание подзадачи
+     * @return true, если старт и окончание эпика пересчитаны по текущему времени подзадач
+     */
+    private boolean removeFromTimeline(LocalDateTime subStart, LocalDateTime subEnd) {
+        boolean recount = (subStart.equals(earliestStart) && --earliestStartCount == 0)
+                | (subEnd.equals(endTime) && --endTimeCount == 0);
+        if (recount) {
+            earliestStartCount = 0;
+            endTimeCount = 0;
+            for (int i = 0; i < subsCount; i++) {
+                addToTimeline(subs[i].getStartTime(), subs[i].getEndTime());
             }
-            if (getStartTime().isEqual(subStartTime)) {
-                setStartTime(getStartTime().plus(subDuration));
+            if (subsCount == 0) {
+                earliestStart = DEFAULT_TIME;
+                endTime = DEFAULT_TIME;
+                super.setStartTime(DEFAULT_TIME);
             }
         }
+        return recount;
+    }
+
+    private int statusCount(Status status) {
+        return status == null ? 0 : statusCounts[status.ordinal()];
+    }
+
+    private void countStatus(Status status, int delta) {
+        if (status != null) {
+            statusCounts[status.ordinal()] += delta;
+        }
+    }
+
+    /**
+     * позиция подзадачи в subsIds - O(log k)
+     *
+     * @param subId идентификатор подзадачи
+     * @return позиция или (-(позиция вставки) - 1), если подзадачи нет
+     */
+    private int indexOf(int subId) {
+        return Arrays.binarySearch(subsIds, 0, subsCount, subId);
+    }
+
+    /**
+     * экземпляр подзадачи добавлен в эпик (а не только подзадача с тем же идентификатором)
+     */
+    private boolean contains(SubTask sub) {
+        int index = indexOf(sub.getId());
+        return index >= 0 && subs[index] == sub;
+    }
+
+    private void insertAt(int index, SubTask sub) {
+        if (subsCount == subsIds.length) {
+            int capacity = Math.max(4, subsCount + (subsCount >> 1));
+            subsIds = Arrays.copyOf(subsIds, capacity);
+            subs = Arrays.copyOf(subs, capacity);
+        }
+        System.arraycopy(subsIds, index, subsIds, index + 1, subsCount - index);
+        System.arraycopy(subs, index, subs, index + 1, subsCount - index);
+        subsIds[index] = sub.getId();
+        subs[index] = sub;
+        subsCount++;
+    }
+
+    private void removeAt(int index) {
+        subsCount--;
+        System.arraycopy(subsIds, index + 1, subsIds, index, subsCount - index);
+        System.arraycopy(subs, index + 1, subs, index, subsCount - index);
+        subs[subsCount] = null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,18 @@
+package tasks;
+
+/**
+ * слушатель изменения статуса задачи
+ * (например, индекс задач по статусам в менеджере задач, в который добавлена задача)
+ *
+ * @see Task#addStatusListener(StatusListener)
+ */
+public interface StatusListener {
+
+    /**
+     * вызывается после изменения статуса задачи
+     *
+     * @param task задача (текущий статус - task.getStatus())
+     * @param previous предыдущий статус
+     */
+    void statusChanged(Task task, Status previous);
+}
@@ -2,14 +2,25 @@ package tasks;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 
 /**
  * наследуется от класса Task
  * имеет дополнительное поле идентификатор эпик-задача, к которой принаджелиж экз. подзадачи
  * Имеет Status
+ * при изменении статуса и времени сообщает о них эпикам, в которые добавлена
+ * (один экземпляр подзадачи может быть добавлен в эпики нескольких менеджеров задач)
  */
 public class SubTask extends Task {
     private final int overId;
+    private static final EpicTask[] NO_EPICS = new EpicTask[0];
+
+    /**
+     * эпики, в которые добавлена подзадача (получают сведения об изменении статуса и времени подзадачи)
+     * список копируется при изменении (как слушатели статуса), уведомление выполняется без блокировки
+     * (null - подзадача не добавлена в эпики; поле не инициализировано и при вызове сеттеров из конструктора)
+     */
+    private transient volatile EpicTask[] epics;
 
     public SubTask(int thisId, int overId) {
         super(thisId);
@@ -28,6 +39,76 @@ public class SubTask extends Task {
         return overId;
     }
 
+    @Override
+    public void setStatus(Status status) {
+        Status previous = getStatus();
+        super.setStatus(status);
+        EpicTask[] current = epics;
+        if (current != null && previous != null) {
+            for (EpicTask epic : current) {
+                epic.subStatusChanged(this, previous);
+            }
+        }
+    }
+
+    @Override
+    public void setStartTime(LocalDateTime startTime) {
+        LocalDateTime previous = getStartTime();
+        super.setStartTime(startTime);
+        EpicTask[] current = epics;
+        if (current != null) {
+            for (EpicTask epic : current) {
+                epic.subTimeChanged(this, previous, getDuration());
+            }
+        }
+    }
+
+    @Override
+    public void setDuration(Duration duration) {
+        Duration previous = getDuration();
+        super.setDuration(duration);
+        EpicTask[] current = epics;
+        if (current != null) {
+            for (EpicTask epic : current) {
+                epic.subTimeChanged(this, getStartTime(), previous);
+            }
+        }
+    }
+
+    /**
+     * добавляет эпик, получающий сведения об изменениях подзадачи (повторное добавление игнорируется)
+     */
+    synchronized void addEpic(EpicTask epic) {
+        EpicTask[] current = epics == null ? NO_EPICS : epics;
+        for (EpicTask existing : current) {
+            if (existing == epic) {
+                return;
+            }
+        }
+        EpicTask[] added = Arrays.copyOf(current, current.length + 1);
+        added[current.length] = epic;
+        epics = added;
+    }
+
+    /**
+     * удаляет эпик из получателей сведений об изменениях, остальные эпики сохраняются
+     */
+    synchronized void removeEpic(EpicTask epic) {
+        EpicTask[] current = epics;
+        if (current == null) {
+            return;
+        }
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == epic) {
+                EpicTask[] removed = new EpicTask[current.length - 1];
+                System.arraycopy(current, 0, removed, 0, i);
+                System.arraycopy(current, i + 1, removed, i, current.length - i - 1);
+                epics = removed.length == 0 ? null : removed;
+                return;
+            }
+        }
+    }
+
     @Override
     public String toString() {
         return super.toString()
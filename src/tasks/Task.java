@@ -2,12 +2,22 @@ package tasks;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 
 /**
  * Обычная задача наследуется от класса AbstractTask
  * имеет Status
+ * при изменении статуса сообщает о нем слушателям (см. StatusListener)
  */
 public class Task extends AbstractTask {
+    private static final StatusListener[] NO_LISTENERS = new StatusListener[0];
+
+    /**
+     * слушатели изменения статуса (индексы менеджеров задач, в которые добавлена задача)
+     * задача может находиться в нескольких менеджерах, поэтому слушателей может быть несколько;
+     * массив заменяется целиком при добавлении и удалении слушателя
+     */
+    private transient volatile StatusListener[] statusListeners;
 
     public Task(int taskId) {
         super(taskId);
@@ -34,6 +44,47 @@ public class Task extends AbstractTask {
     }
 
     public void setStatus(Status status) {
+        Status previous = this.status;
         this.status = status;
+        StatusListener[] listeners = statusListeners;
+        if (listeners != null && previous != status) {
+            for (StatusListener listener : listeners) {
+                listener.statusChanged(this, previous);
+            }
+        }
+    }
+
+    /**
+     * добавляет слушателя изменения статуса (повторное добавление того же слушателя игнорируется)
+     */
+    public synchronized void addStatusListener(StatusListener listener) {
+        StatusListener[] listeners = statusListeners == null ? NO_LISTENERS : statusListeners;
+        for (StatusListener existing : listeners) {
+            if (existing == listener) {
+                return;
+            }
+        }
+        StatusListener[] added = Arrays.copyOf(listeners, listeners.length + 1);
+        added[listeners.length] = listener;
+        statusListeners = added;
+    }
+
+    /**
+     * удаляет слушателя изменения статуса, остальные слушатели сохраняются
+     */
+    public synchronized void removeStatusListener(StatusListener listener) {
+        StatusListener[] listeners = statusListeners;
+        if (listeners == null) {
+            return;
+        }
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                StatusListener[] removed = new StatusListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, removed, 0, i);
+                System.arraycopy(listeners, i + 1, removed, i, listeners.length - i - 1);
+                statusListeners = removed.length == 0 ? null : removed;
+                return;
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,428 @@
+package test;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import run.ColumnarTaskManager;
+import run.InMemoryTaskManager;
+import run.util.Managers;
+import tasks.EpicTask;
+import tasks.Status;
+import tasks.SubTask;
+import tasks.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * тесты колоночного менеджера задач
+ * (контрактные тесты TaskManagerTest, хранение копий задач, аналитические запросы
+ * в сравнении с менеджером, хранящим объекты)
+ *
+ * @see ColumnarTaskManager
+ */
+class ColumnarTaskManagerTest extends TaskManagerTest<ColumnarTaskManager> {
+
+    @BeforeEach
+    void eachSetUp() {
+        manager = Managers.getColumnar();
+        makeItems();
+    }
+    @Test
+    void testGetNewTaskId() {
+        assertNewTaskId();
+    }
+
+    @Test
+    void testGetAllTasksNotEmpty() {
+        manager.addNewTask(task4);
+        manager.addNewTask(task6);
+        Task[] expected = {task4, task6};
+        assertGetAllTasks(expected);
+    }
+
+    @Test
+    void testGetAllTasksWhenEmpty() {
+        Task[] expected = {};
+        assertGetAllTasks(expected);
+    }
+
+
+    @Test
+    void testGetAllEpics() {
+        manager.addNewSub(sub1);
+        manager.addNewSub(sub2);
+        manager.addNewSub(sub5);
+        manager.addNewEpic(epic7);
+        manager.addNewEpic(epic3);
+        EpicTask[] expected = {epic3, epic7};
+        assertGetAllEpics(expected);
+    }
+
+    @Test
+    void testGetAllEpicsEmpty() {
+        EpicTask[] expected = {};
+        assertGetAllEpics(expected);
+    }
+
+    @Test
+    void testGetAllSubsNotEmpty() {
+        manager.addNewSub(sub1);
+        manager.addNewSub(sub2);
+        manager.addNewSub(sub5);
+        SubTask[] expected = {sub1, sub2, sub5};
+        assertGetAllSubs(expected);
+    }
+
+    @Test
+    void testGetAllSubsEmpty() {
+        SubTask[] expected = {};
+        assertGetAllSubs(expected);
+    }
+
+    @Test
+    void testGetTaskById() {
+        manager.addNewTask(task4);
+        manager.addNewTask(task6);
+        assertGetTaskById(task4, 4);
+        assertGetTaskById(task6, 6);
+    }
+
+    @Test
+    void testGetNotExistentTaskById() {
+        assertGetTaskById(null, 8);
+    }
+
+    @Test
+    void testGetEpicById() {
+        manager.addNewEpic(epic7);
+        manager.addNewEpic(epic3);
+        assertGetEpicById(epic7, 7);
+        assertGetEpicById(epic3, 3);
+    }
+
+    @Test
+    void testGetNotExistentEpicById() {
+        assertGetEpicById(null, 8);
+    }
+
+    @Test
+    void testGetSubById() {
+        manager.addNewSub(sub1);
+        manager.addNewSub(sub2);
+        manager.addNewSub(sub5);
+        assertGetSubById(sub1, 1);
+        assertGetSubById(sub2, 2);
+        assertGetSubById(sub5, 5);
+    }
+
+    @Test
+    void testGetNotExistentSubById() {
+        assertGetSubById(null, 8);
+    }
+
+    @Test
+    void testAddNewTask() {
+        assertAddNewTask(task4, 4);
+        assertAddNewTask(task6, 6);
+        assertAddNewTask(null, 8);
+    }
+
+    @Test
+    void testAddNewEpic() {
+        assertAddNewEpic(epic7, 7);
+        assertAddNewEpic(null, 8);
+    }
+
+    @Test
+    void testAddNewSub() {
+        assertAddNewSub(sub1, 1);
+        assertAddNewSub(sub5, 5);
+        assertAddNewSub(null, 8);
+    }
+
+    @Test
+    void testUpdateTask() {
+        manager.addNewTask(task4);
+        Task newTask4 = new Task(4, "name new4", "descr new4",
+                Duration.of(15, ChronoUnit.MINUTES),
+                LocalDateTime.of(2022, Month.DECEMBER, 3, 17, 0, 0));
+
+        assertUpdateTask(newTask4, 4);
+        assertUpdateNotExistentTask(new Task(99));
+        assertUpdateNotExistentTask(new Task(-1));
+    }
+
+    @Test
+    void testUpdateEpic() {
+        manager.addNewEpic(epic7);
+        EpicTask newEpic7 = new EpicTask(7, "name new7", "descr new7");
+
+        assertUpdateEpic(newEpic7, 7);
+        assertUpdateNotExistentEpic(new EpicTask(99));
+        assertUpdateNotExistentEpic(new EpicTask(-1));
+    }
+
+    @Test
+    void testUpdateSub() {
+        manager.addNewSub(sub1);
+        SubTask newSub1 = new SubTask(1, 9, "name new1", "descr new1",
+                              Duration.of(25, ChronoUnit.MINUTES),
+                              LocalDateTime.of(2022, Month.DECEMBER, 3, 19, 42, 0));
+
+        assertUpdateSub(newSub1, 1);
+        assertUpdateNotExistentSubTask(new SubTask(99, -1));
+        assertUpdateNotExistentSubTask(new SubTask(-1, -1));
+    }
+
+
+    @Test
+    void testDeleteAllTasks() {
+        assertDeleteAllTasks(task4, task6);
+    }
+
+    @Test
+    void testDeleteAllEpicsWithSubs() {
+        manager.addNewSub(sub1);
+        manager.addNewSub(sub2);
+
+        assertDeleteAllEpics(epic3, epic7);
+    }
+
+    @Test
+    void testDeleteAllSubsAssociated() {
+        manager.addNewEpic(epic3);
+
+        assertDeleteAllSubs(sub1, sub2, sub5);
+        assertTrue(manager.getEpicById(3).getSubs().isEmpty());
+    }
+
+    @Test
+    void testDeleteAllSubsNotAssociated() {
+    assertDeleteAllSubs(sub9, sub8);
+    }
+
+    @Test
+    void testDeleteTaskById() {
+        assertDeleteTaskById(task4, 4);
+    }
+
+    @Test
+    void testDeleteEpicByIdNoSubs() {
+        assertDeleteEpicById(epic7, 7);
+    }
+
+    @Test
+    void testDeleteEpicByIdWithSubs() {
+        manager.addNewSub(sub1);
+        manager.addNewSub(sub2);
+        manager.addNewSub(sub5);
+
+        assertDeleteEpicById(epic3, 3);
+        assertFalse(manager.getAllSubs().contains(sub1));
+        assertFalse(manager.getAllSubs().contains(sub2));
+        assertFalse(manager.getAllSubs().contains(sub5));
+    }
+
+    @Test
+    void testDeleteSubByIdNotAssociated() {
+        assertDeleteSubById(sub9,9);
+    }
+
+    @Test
+    void testDeleteSubByIdAssociated() {
+        manager.addNewEpic(epic3);
+        manager.addNewSub(sub2);
+        manager.addNewSub(sub5);
+
+        assertDeleteSubById(sub1,1);
+        assertFalse(manager.getEpicById(3).getSubs().contains(1));
+        assertTrue(manager.getEpicById(3).getSubs().contains(2));
+        assertTrue(manager.getEpicById(3).getSubs().contains(5));
+        assertDeleteSubById(sub2,2);
+        assertFalse(manager.getEpicById(3).getSubs().contains(2));
+        assertTrue(manager.getEpicById(3).getSubs().contains(5));
+        assertDeleteSubById(sub5,5);
+        assertFalse(manager.getEpicById(3).getSubs().contains(5));
+    }
+
+    @Test
+    void testGetSubsForEpicId() {
+        assertGetSubsForEpicId(epic3, 3, new int[]{1, 2, 5} ,new SubTask[]{sub1, sub2, sub5});
+
+        epic3.addSubTask(sub8);
+
+        assertGetSubsForEpicId(epic3, 3, new int[]{1, 2, 5, 8}, new SubTask[]{sub8});
+    }
+
+    @Test
+    void testClearSubsListOfEpic() {
+        assertClearSubsListOfEpic(epic7, 7, 0, new SubTask[]{});
+        Arrays.stream(new SubTask[]{sub1, sub2, sub5, sub8}).forEach(s -> manager.addNewSub(s));
+        assertClearSubsListOfEpic(epic3, 3, 4, new SubTask[]{});
+        assertTrue(manager.getAllSubs().isEmpty(), "подзадачи эпика не удалены");
+    }
+
+    @Test
+    void testGetPrioritizedTasks() {
+        task4.setStartTime(LocalDateTime.of(2000, 1, 1, 0,0,0));
+        task6.setStartTime(LocalDateTime.of(1999, 1, 1, 0,0,0));
+        sub1.setStartTime(LocalDateTime.of(2001, 1, 1, 0,0,0));
+        sub2.setStartTime(LocalDateTime.of(2010, 1, 1, 0,0,0));
+        sub5.setStartTime(LocalDateTime.of(2002, 1, 1, 0,0,0));
+
+        assertGetPrioritizedTasks(new Task[]{task4, task6},
+                                  new SubTask[]{sub5, sub1, sub2}, new int[]{6,4,1,5,2});
+    }
+
+    /**
+     * тест проверки пересечений по соседним задачам:
+     * пересечение с предыдущей и последующей задачей, совпадающий старт, задачи "встык"
+     */
+    @Test
+    void testValidateTimeFrameNeighbours() {
+        assertValidateTimeFrameNeighbours(manager::validateTimeFrame);
+    }
+
+    /**
+     * тест задач нулевой длительности на старте другой задачи: промежутки [start, end)
+     * в поиске свободного промежутка и проверке пересечений
+     */
+    @Test
+    void testZeroDurationAtSharedStart() {
+        assertZeroDurationAtSharedStart(manager::validateTimeFrame);
+    }
+
+
+    @Test
+    void testStreamsAndPages() {
+        assertStreamsAndPages();
+    }
+
+    @Test
+    void testPrioritizedPagesWithUnscheduled() {
+        assertPrioritizedPagesWithUnscheduled();
+    }
+
+
+    @Test
+    void testTimeRangeQueries() {
+        assertTimeRangeQueries();
+    }
+
+    @Test
+    void testFindFreeSlot() {
+        assertFindFreeSlot();
+    }
+
+    /**
+     * тест хранения копий: изменение полученного или добавленного объекта не изменяет менеджер,
+     * изменения передаются методами update...
+     */
+    @Test
+    void testStoresCopies() {
+        manager.addNewTask(task4);
+        manager.addNewSub(sub1);
+        task4.setStatus(Status.DONE);
+        manager.getSubById(1).setStatus(Status.DONE);
+
+        assertEquals(Status.NEW, manager.getTaskStatus(4));
+        assertEquals(Status.NEW, manager.getSubtaskStatus(1));
+        assertNotSame(manager.getTaskById(4), manager.getTaskById(4));
+
+        Task updated = manager.getTaskById(4);
+        updated.setStatus(Status.DONE);
+        assertEquals(4, manager.updateTask(updated));
+        assertEquals(Status.DONE, manager.getTaskStatus(4));
+        assertEquals(task4.getName(), manager.getTaskById(4).getName());
+        assertEquals(task4.getStartTime(), manager.getTaskById(4).getStartTime());
+        assertEquals(task4.getDuration(), manager.getTaskById(4).getDuration());
+    }
+
+    /**
+     * тест статуса эпика после обновления и удаления подзадач:
+     * обновленная подзадача заменяет предыдущую в эпике
+     */
+    @Test
+    void testEpicStatusAfterUpdateSub() {
+        assertEpicStatusAfterUpdateSub();
+    }
+
+    /**
+     * тест замены строк при удалении: на место удаленной задачи переносится последняя,
+     * имена и описания остальных задач не изменяются
+     */
+    @Test
+    void testDeleteMovesLastRow() {
+        List<Task> expected = new ArrayList<>();
+        for (int id = 0; id < 100; id++) {
+            Task task = makeTask(id, id * 10L, 5);
+            manager.addNewTask(task);
+            if (id % 3 != 0) {
+                expected.add(task);
+            }
+        }
+        for (int id = 0; id < 100; id += 3) {
+            manager.deleteTaskById(id);
+        }
+        List<Task> actual = manager.getAllTasks();
+        actual.sort(Comparator.comparingInt(Task::getId));
+        assertEquals(expected, actual);
+        assertEquals(expected, manager.getPrioritizedTasks());
+        for (Task task : actual) {
+            assertEquals("descr " + task.getId(), task.getDescription());
+        }
+    }
+
+    /**
+     * тест аналитических запросов: результат совпадает с подсчетом по объектам задач
+     * менеджера InMemoryTaskManager; время подсчетов выводится в консоль
+     */
+    @Test
+    void testAnalyticsSameAsObjects() {
+        InMemoryTaskManager objects = new InMemoryTaskManager(Managers.getDefaultHistory());
+        Random random = new Random(24);
+        final int count = 200_000;
+        for (int id = 0; id < count; id++) {
+            Task task = makeTask(id, id * 60L + random.nextInt(30), random.nextInt(31));
+            task.setStatus(Status.values()[random.nextInt(Status.values().length)]);
+            assertEquals(objects.addNewTask(task), manager.addNewTask(task));
+        }
+        LocalDateTime from = LocalDateTime.of(2000, 1, 1, 0, 0, 0);
+        final int days = count / 24 + 1;
+
+        long begin = System.nanoTime();
+        Map<Status, Integer> expectedCounts = new EnumMap<>(Status.class);
+        for (Status status : Status.values()) {
+            expectedCounts.put(status, 0);
+        }
+        long[] expectedBusy = new long[days];
+        for (Task task : objects.getAllTasks()) {
+            expectedCounts.merge(task.getStatus(), 1, Integer::sum);
+            int day = (int) Duration.between(from, task.getStartTime()).toDays();
+            LocalDateTime dayEnd = from.plusDays(day + 1);
+            LocalDateTime end = task.getEndTime();
+            expectedBusy[day] += Duration.between(task.getStartTime(), end.isAfter(dayEnd) ? dayEnd : end)
+                    .getSeconds();
+            if (end.isAfter(dayEnd)) {
+                expectedBusy[day + 1] += Duration.between(dayEnd, end).getSeconds();
+            }
+        }
+        long objectNanos = System.nanoTime() - begin;
+
+        begin = System.nanoTime();
+        Map<Status, Integer> counts = manager.getStatusCounts();
+        long[] busy = manager.getUtilization(from, Duration.ofDays(1), days);
+        long columnNanos = System.nanoTime() - begin;
+        System.out.printf("статусы и загрузка по дням (%d задач): объекты %.1f мс, столбцы %.1f мс%n",
+                count, objectNanos / 1e6, columnNanos / 1e6);
+
+        assertEquals(expectedCounts, counts);
+        assertArrayEquals(expectedBusy, busy);
+        assertEquals(1, manager.getMaxConcurrency());
+    }
+}
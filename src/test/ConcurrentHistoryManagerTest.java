@@ -0,0 +1,88 @@
+package test;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import run.ConcurrentHistoryManager;
+import tasks.AbstractTask;
+import tasks.Task;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * тесты истории просмотра для одновременного использования из нескольких потоков
+ * (тесты HistoryManagerTest выполняются для ConcurrentHistoryManager)
+ *
+ * @see ConcurrentHistoryManager
+ */
+class ConcurrentHistoryManagerTest extends HistoryManagerTest {
+
+    @BeforeEach
+    void eachSetUp() {
+        historyManager = new ConcurrentHistoryManager();
+    }
+
+    /**
+     * тест истории с ограничением количества задач:
+     * возвращаются последние просмотренные задачи, удаление задачи не возвращает вытесненные задачи
+     */
+    @Test
+    void boundedEvictsLeastRecent() {
+        ConcurrentHistoryManager bounded = new ConcurrentHistoryManager(4);
+        for (int i = 1; i <= 5; i++) {
+            bounded.add(new Task(i));
+        }
+        assertArrayEquals(new int[]{5, 4, 3, 2}, ids(bounded.getHistory()));
+
+        bounded.add(new Task(2));
+        bounded.remove(5);
+        assertArrayEquals(new int[]{2, 4, 3}, ids(bounded.getHistory()), "вернулась вытесненная задача");
+
+        for (int i = 10; i < 100; i++) {
+            bounded.add(new Task(i));
+        }
+        assertArrayEquals(new int[]{99, 98, 97, 96}, ids(bounded.getHistory()));
+    }
+
+    /**
+     * тест одновременных просмотров: каждая задача присутствует в истории один раз,
+     * задачи, просмотренные одним потоком, упорядочены по времени просмотра
+     */
+    @Test
+    void concurrentViews() throws InterruptedException {
+        ConcurrentHistoryManager shared = new ConcurrentHistoryManager();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int base = t * 1_000;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    shared.add(new Task(base + i % 1_000));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        List<AbstractTask> history = shared.getHistory();
+        Set<Integer> unique = new HashSet<>();
+        history.forEach(task -> unique.add(task.getId()));
+
+        assertEquals(4_000, history.size());
+        assertEquals(4_000, unique.size());
+        int previous = Integer.MAX_VALUE;
+        for (AbstractTask task : history) {
+            if (task.getId() < 1_000) {
+                assertTrue(task.getId() < previous, "нарушен порядок просмотров потока");
+                previous = task.getId();
+            }
+        }
+    }
+
+    private static int[] ids(List<AbstractTask> history) {
+        return history.stream().mapToInt(AbstractTask::getId).toArray();
+    }
+}
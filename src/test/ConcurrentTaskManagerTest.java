@@ -0,0 +1,567 @@
+package test;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import run.ConcurrentTaskManager;
+import run.util.Managers;
+import tasks.EpicTask;
+import tasks.Status;
+import tasks.SubTask;
+import tasks.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * тесты потокобезопасного менеджера задач
+ * (контрактные тесты TaskManagerTest и тесты одновременной работы нескольких потоков)
+ *
+ * @see ConcurrentTaskManager
+ */
+class ConcurrentTaskManagerTest extends TaskManagerTest<ConcurrentTaskManager> {
+
+    @BeforeEach
+    void eachSetUp() {
+        manager = Managers.getConcurrent();
+        makeItems();
+    }
+
+    @Test
+    void testGetNewTaskId() {
+        assertNewTaskId();
+    }
+
+    @Test
+    void testGetAllTasksNotEmpty() {
+        manager.addNewTask(task4);
+        manager.addNewTask(task6);
+        Task[] expected = {task4, task6};
+        assertGetAllTasks(expected);
+    }
+
+    @Test
+    void testGetAllTasksWhenEmpty() {
+        Task[] expected = {};
+        assertGetAllTasks(expected);
+    }
+
+
+    @Test
+    void testGetAllEpics() {
+        manager.addNewSub(sub1);
+        manager.addNewSub(sub2);
+        manager.addNewSub(sub5);
+        manager.addNewEpic(epic7);
+        manager.addNewEpic(epic3);
+        EpicTask[] expected = {epic3, epic7};
+        assertGetAllEpics(expected);
+    }
+
+    @Test
+    void testGetAllEpicsEmpty() {
+        EpicTask[] expected = {};
+        assertGetAllEpics(expected);
+    }
+
+    @Test
+    void testGetAllSubsNotEmpty() {
+        manager.addNewSub(sub1);
+        manager.addNewSub(sub2);
+        manager.addNewSub(sub5);
+        SubTask[] expected = {sub1, sub2, sub5};
+        assertGetAllSubs(expected);
+    }
+
+    @Test
+    void testGetAllSubsEmpty() {
+        SubTask[] expected = {};
+        assertGetAllSubs(expected);
+    }
+
+    @Test
+    void testGetTaskById() {
+        manager.addNewTask(task4);
+        manager.addNewTask(task6);
+        assertGetTaskById(task4, 4);
+        assertGetTaskById(task6, 6);
+    }
+
+    @Test
+    void testGetNotExistentTaskById() {
+        assertGetTaskById(null, 8);
+    }
+
+    @Test
+    void testGetEpicById() {
+        manager.addNewEpic(epic7);
+        manager.addNewEpic(epic3);
+        assertGetEpicById(epic7, 7);
+        assertGetEpicById(epic3, 3);
+    }
+
+    @Test
+    void testGetNotExistentEpicById() {
+        assertGetEpicById(null, 8);
+    }
+
+    @Test
+    void testGetSubById() {
+        manager.addNewSub(sub1);
+        manager.addNewSub(sub2);
+        manager.addNewSub(sub5);
+        assertGetSubById(sub1, 1);
+        assertGetSubById(sub2, 2);
+        assertGetSubById(sub5, 5);
+    }
+
+    @Test
+    void testGetNotExistentSubById() {
+        assertGetSubById(null, 8);
+    }
+
+    @Test
+    void testAddNewTask() {
+        assertAddNewTask(task4, 4);
+        assertAddNewTask(task6, 6);
+        assertAddNewTask(null, 8);
+    }
+
+    @Test
+    void testAddNewEpic() {
+        assertAddNewEpic(epic7, 7);
+        assertAddNewEpic(null, 8);
+    }
+
+    @Test
+    void testAddNewSub() {
+        assertAddNewSub(sub1, 1);
+        assertAddNewSub(sub5, 5);
+        assertAddNewSub(null, 8);
+    }
+
+    @Test
+    void testUpdateTask() {
+        manager.addNewTask(task4);
+        Task newTask4 = new Task(4, "name new4", "descr new4",
+                Duration.of(15, ChronoUnit.MINUTES),
+                LocalDateTime.of(2022, Month.DECEMBER, 3, 17, 0, 0));
+
+        assertUpdateTask(newTask4, 4);
+        assertUpdateNotExistentTask(new Task(99));
+        assertUpdateNotExistentTask(new Task(-1));
+    }
+
+    @Test
+    void testUpdateEpic() {
+        manager.addNewEpic(epic7);
+        EpicTask newEpic7 = new EpicTask(7, "name new7", "descr new7");
+
+        assertUpdateEpic(newEpic7, 7);
+        assertUpdateNotExistentEpic(new EpicTask(99));
+        assertUpdateNotExistentEpic(new EpicTask(-1));
+    }
+
+    @Test
+    void testUpdateSub() {
+        manager.addNewSub(sub1);
+        SubTask newSub1 = new SubTask(1, 9, "name new1", "descr new1",
+                              Duration.of(25, ChronoUnit.MINUTES),
+                              LocalDateTime.of(2022, Month.DECEMBER, 3, 19, 42, 0));
+
+        assertUpdateSub(newSub1, 1);
+        assertUpdateNotExistentSubTask(new SubTask(99, -1));
+        assertUpdateNotExistentSubTask(new SubTask(-1, -1));
+    }
+
+
+    @Test
+    void testDeleteAllTasks() {
+        assertDeleteAllTasks(task4, task6);
+    }
+
+    @Test
+    void testDeleteAllEpicsWithSubs() {
+        manager.addNewSub(sub1);
+        manager.addNewSub(sub2);
+
+        assertDeleteAllEpics(epic3, epic7);
+    }
+
+    @Test
+    void testDeleteAllSubsAssociated() {
+        manager.addNewEpic(epic3);
+
+        assertDeleteAllSubs(sub1, sub2, sub5);
+        assertFalse(epic3.getSubs().contains(1));
+        assertFalse(epic3.getSubs().contains(2));
+    }
+
+    @Test
+    void testDeleteAllSubsNotAssociated() {
+    assertDeleteAllSubs(sub9, sub8);
+    }
+
+    @Test
+    void testDeleteTaskById() {
+        assertDeleteTaskById(task4, 4);
+    }
+
+    @Test
+    void testDeleteEpicByIdNoSubs() {
+        assertDeleteEpicById(epic7, 7);
+    }
+
+    @Test
+    void testDeleteEpicByIdWithSubs() {
+        manager.addNewSub(sub1);
+        manager.addNewSub(sub2);
+        manager.addNewSub(sub5);
+
+        assertDeleteEpicById(epic3, 3);
+        assertFalse(manager.getAllSubs().contains(sub1));
+        assertFalse(manager.getAllSubs().contains(sub2));
+        assertFalse(manager.getAllSubs().contains(sub5));
+    }
+
+    @Test
+    void testDeleteSubByIdNotAssociated() {
+        assertDeleteSubById(sub9,9);
+    }
+
+    @Test
+    void testDeleteSubByIdAssociated() {
+        manager.addNewEpic(epic3);
+
+        assertDeleteSubById(sub1,1);
+        assertFalse(manager.getEpicById(3).getSubs().contains(1));
+        assertTrue(manager.getEpicById(3).getSubs().contains(2));
+        assertTrue(manager.getEpicById(3).getSubs().contains(5));
+        assertDeleteSubById(sub2,2);
+        assertFalse(manager.getEpicById(3).getSubs().contains(2));
+        assertTrue(manager.getEpicById(3).getSubs().contains(5));
+        assertDeleteSubById(sub5,5);
+        assertFalse(manager.getEpicById(3).getSubs().contains(5));
+    }
+
+    @Test
+    void testGetSubsForEpicId() {
+        assertGetSubsForEpicId(epic3, 3, new int[]{1, 2, 5} ,new SubTask[]{sub1, sub2, sub5});
+
+        epic3.addSubTask(sub8);
+
+        assertGetSubsForEpicId(epic3, 3, new int[]{1, 2, 5, 8}, new SubTask[]{sub8});
+    }
+
+    @Test
+    void testGetEpicStatusNoSubs() {
+        assertGetEpicStatus(epic7, Status.NEW, new SubTask[]{}, new Status[]{});
+    }
+
+    @Test
+    void testGetEpicStatusAllSubsNew() {
+        assertGetEpicStatus(epic3, Status.NEW,
+                            new SubTask[]{sub1, sub2, sub5}, new Status[]{Status.NEW, Status.NEW, Status.NEW});
+        assertGetEpicStatus(epic3, Status.NEW,
+                new SubTask[]{sub5}, new Status[]{Status.NEW});
+    }
+
+    @Test
+    void testGetEpicStatusInProgressWithSubStatusDone() {
+        assertGetEpicStatus(epic3, Status.IN_PROGRESS,
+                new SubTask[]{sub1, sub2, sub5}, new Status[]{Status.DONE, Status.NEW, Status.NEW});
+        assertGetEpicStatus(epic3, Status.IN_PROGRESS,
+                new SubTask[]{sub1, sub2, sub5}, new Status[]{Status.NEW, Status.DONE, Status.NEW});
+        assertGetEpicStatus(epic3, Status.IN_PROGRESS,
+                new SubTask[]{sub1, sub2, sub5}, new Status[]{Status.DONE, Status.DONE, Status.NEW});
+        assertGetEpicStatus(epic3, Status.IN_PROGRESS,
+                new SubTask[]{sub1}, new Status[]{Status.IN_PROGRESS});
+    }
+
+    @Test
+    void testGetEpicStatusInProgressWithSubsVariousStatuses() {
+        assertGetEpicStatus(epic3, Status.IN_PROGRESS,
+                new SubTask[]{sub1, sub2, sub5}, new Status[]{Status.DONE, Status.NEW, Status.IN_PROGRESS});
+        assertGetEpicStatus(epic3, Status.IN_PROGRESS,
+                new SubTask[]{sub1, sub2, sub5}, new Status[]{Status.NEW, Status.IN_PROGRESS, Status.DONE});
+    }
+
+    @Test
+    void testGetEpicStatusInProgressWithAllSubsDone() {
+        assertGetEpicStatus(epic3, Status.DONE,
+                new SubTask[]{sub1, sub2, sub5}, new Status[]{Status.DONE, Status.DONE, Status.DONE});
+        assertGetEpicStatus(epic3, Status.DONE,
+                new SubTask[]{sub1, sub2}, new Status[]{Status.DONE, Status.DONE});
+        assertGetEpicStatus(epic3, Status.DONE,
+                new SubTask[]{sub1}, new Status[]{Status.DONE});
+    }
+
+    @Test
+    void testClearSubsListOfEpic() {
+        assertClearSubsListOfEpic(epic7, 7, 0, new SubTask[]{});
+        assertClearSubsListOfEpic(epic3, 3, 4, new SubTask[]{sub8});
+        assertClearSubsListOfEpic(epic3, 3, 3, new SubTask[]{sub5, sub2, sub1});
+    }
+
+    @Test
+    void testGetPrioritizedTasks() {
+        task4.setStartTime(LocalDateTime.of(2000, 1, 1, 0,0,0));
+        task6.setStartTime(LocalDateTime.of(1999, 1, 1, 0,0,0));
+        sub1.setStartTime(LocalDateTime.of(2001, 1, 1, 0,0,0));
+        sub2.setStartTime(LocalDateTime.of(2010, 1, 1, 0,0,0));
+        sub5.setStartTime(LocalDateTime.of(2002, 1, 1, 0,0,0));
+
+        assertGetPrioritizedTasks(new Task[]{task4, task6},
+                                  new SubTask[]{sub5, sub1, sub2}, new int[]{6,4,1,5,2});
+    }
+
+    /**
+     * тест проверки пересечений по соседним задачам:
+     * пересечение с предыдущей и последующей задачей, совпадающий старт, задачи "встык"
+     */
+    @Test
+    void testValidateTimeFrameNeighbours() {
+        assertValidateTimeFrameNeighbours(manager::validateTimeFrame);
+    }
+
+    /**
+     * тест задач нулевой длительности на старте другой задачи: промежутки [start, end)
+     * в поиске свободного промежутка и проверке пересечений
+     */
+    @Test
+    void testZeroDurationAtSharedStart() {
+        assertZeroDurationAtSharedStart(manager::validateTimeFrame);
+    }
+
+
+    /**
+     * тест обновления задачи: предыдущая версия задачи не участвует в проверке пересечений
+     * и удаляется из списка приоритетов
+     */
+    @Test
+    void testUpdateTaskReplacesPrioritized() {
+        manager.addNewTask(task4);
+        Task moved = new Task(4, "name 4", "descr 4", Duration.ofMinutes(30),
+                task4.getStartTime().plusMinutes(5));
+
+        assertEquals(4, manager.updateTask(moved));
+        assertEquals(List.of(moved), manager.getPrioritizedTasks());
+        assertSame(moved, manager.getPrioritizedTasks().get(0));
+    }
+
+    /**
+     * тест статуса эпика после обновления и удаления подзадач:
+     * обновленная подзадача заменяет предыдущую в эпике
+     */
+    @Test
+    void testEpicStatusAfterUpdateSub() {
+        assertEpicStatusAfterUpdateSub();
+    }
+
+    @Test
+    void testStreamsAndPages() {
+        assertStreamsAndPages();
+    }
+
+    @Test
+    void testPrioritizedPagesWithUnscheduled() {
+        assertPrioritizedPagesWithUnscheduled();
+    }
+
+    @Test
+    void testStatusQueries() {
+        assertStatusQueries();
+    }
+
+    @Test
+    void testTimeRangeQueries() {
+        assertTimeRangeQueries();
+    }
+
+    @Test
+    void testFindFreeSlot() {
+        assertFindFreeSlot();
+    }
+
+    /**
+     * тест одновременного добавления задач с общими слотами времени:
+     * в каждый слот добавляется ровно одна задача, идентификаторы не повторяются
+     */
+    @Test
+    void testConcurrentAddNoOverlaps() throws Exception {
+        final int threads = 16;
+        final int slots = 2_000;
+        List<Integer> added = runInThreads(threads, thread -> {
+            List<Integer> ids = new ArrayList<>();
+            for (int slot = 0; slot < slots; slot++) {
+                int id = manager.getNewTaskId();
+                if (manager.addNewTask(makeTask(id, 10L * slot, 10)) == id) {
+                    ids.add(id);
+                }
+            }
+            return ids;
+        });
+
+        assertEquals(slots, added.size(), "в слот добавлено больше одной задачи");
+        assertEquals(slots, new HashSet<>(added).size());
+        List<Task> prioritized = manager.getPrioritizedTasks();
+        assertEquals(slots, prioritized.size());
+        for (int i = 1; i < prioritized.size(); i++) {
+            assertFalse(prioritized.get(i - 1).getEndTime().isAfter(prioritized.get(i).getStartTime()));
+        }
+    }
+
+    /**
+     * тест одновременной работы с подзадачами одного эпика:
+     * статус эпика (счетчики подзадач эпика по статусам) и список подзадач эпика согласованы после завершения потоков
+     */
+    @Test
+    void testConcurrentSubsOfEpic() throws Exception {
+        final int perThread = 500;
+        for (int id = 1_000; id < 1_000 + 8 * perThread; id++) {
+            SubTask sub = new SubTask(id, 7, "name " + id, "descr " + id,
+                    Duration.ofMinutes(1), LocalDateTime.of(2001, 1, 1, 0, 0).plusMinutes(id));
+            epic7.addSubTask(sub);
+            manager.addNewSub(sub);
+        }
+        manager.addNewEpic(epic7);
+        runInThreads(8, thread -> {
+            for (int i = 0; i < perThread; i++) {
+                int id = 1_000 + thread * perThread + i;
+                SubTask updated = new SubTask(id, 7, "name " + id, "descr " + id,
+                        Duration.ofMinutes(1), LocalDateTime.of(2001, 1, 1, 0, 0).plusMinutes(id));
+                updated.setStatus(Status.DONE);
+                assertEquals(id, manager.updateSub(updated));
+                if (i % 2 == 0) {
+                    manager.deleteSubById(id);
+                }
+                manager.getSubsForEpicId(7);
+                manager.getEpicStatus(7);
+            }
+            return List.of();
+        });
+
+        assertEquals(8 * perThread / 2, manager.getAllSubs().size());
+        assertEquals(manager.getAllSubs().size(), epic7.getSubs().size());
+        assertEquals(Status.DONE, manager.getEpicStatus(7));
+    }
+
+    /**
+     * тест одновременного переноса подзадачи в другой эпик и удаления подзадачи:
+     * после удаления подзадача не остается ни в одном эпике
+     */
+    @Test
+    void testDeleteSubWhileMoved() throws Exception {
+        manager.addNewEpic(epic3);
+        manager.addNewEpic(epic7);
+        for (int id = 1_000; id < 1_500; id++) {
+            int subId = id;
+            LocalDateTime start = LocalDateTime.of(2001, 1, 1, 0, 0).plusMinutes(id);
+            manager.addNewSub(new SubTask(subId, 3, "name", "descr", Duration.ofMinutes(1), start));
+            runInThreads(2, thread -> {
+                if (thread == 0) {
+                    manager.updateSub(new SubTask(subId, 7, "name", "descr", Duration.ofMinutes(1), start));
+                } else {
+                    manager.deleteSubById(subId);
+                }
+                return List.of();
+            });
+            assertNull(manager.getSubById(subId));
+            assertFalse(epic3.hasSub(subId), "удаленная подзадача осталась в эпике 3");
+            assertFalse(epic7.hasSub(subId), "удаленная подзадача осталась в эпике 7");
+        }
+    }
+
+    /**
+     * нагрузочная проверка: смешанные операции чтения и записи при 1/4/16/64 потоках
+     * (чтение по id с записью в историю, статус и время окончания; каждая десятая операция - обновление)
+     * для сравнения операции выполняются и с историей InMemoryHistoryManager под блокировкой объекта истории;
+     * выводится таблица операций в секунду (результаты - docs/benchmarks.md), проверяется целостность
+     * списка приоритетов и истории
+     */
+    @Test
+    void testContention() throws Exception {
+        // прогрев JIT, результаты не выводятся
+        measureContention(Managers.getConcurrent(), 4);
+        measureContention(new ConcurrentTaskManager(Managers.getDefaultHistory()), 4);
+        System.out.println("ConcurrentTaskManager, операций в секунду: потоков | ConcurrentHistoryManager"
+                + " | InMemoryHistoryManager под блокировкой");
+        for (int threads : new int[]{1, 4, 16, 64}) {
+            double lockFree = measureContention(Managers.getConcurrent(), threads);
+            double locked = measureContention(new ConcurrentTaskManager(Managers.getDefaultHistory()), threads);
+            System.out.printf("%d | %.0f | %.0f%n", threads, lockFree, locked);
+        }
+    }
+
+    /**
+     * смешанные операции над 10 000 задачами в заданном количестве потоков
+     *
+     * @return операций в секунду
+     */
+    private static double measureContention(ConcurrentTaskManager shared, int threads) throws Exception {
+        for (int id = 0; id < 10_000; id++) {
+            shared.addNewTask(makeTask(id, 10L * id, 5));
+        }
+        shared.setIdForNewTask(10_000);
+        final int operations = 20_000;
+        long begin = System.nanoTime();
+        runInThreads(threads, thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < operations; i++) {
+                int id = random.nextInt(10_000);
+                if (i % 10 == 0) {
+                    shared.updateTask(makeTask(id, 10L * id + random.nextInt(5), 5));
+                } else {
+                    assertEquals(id, shared.getTaskById(id).getId());
+                    shared.getTaskStatus(id);
+                    shared.getTaskEndTime(id);
+                }
+            }
+            return List.of();
+        });
+        long nanos = System.nanoTime() - begin;
+        assertEquals(10_000, shared.getPrioritizedTasks().size());
+        assertEquals(new HashSet<>(shared.getHistory()).size(), shared.getHistory().size(),
+                "задача повторяется в истории");
+        return threads * operations * 1e9 / nanos;
+    }
+
+    /**
+     * выполнение действия в нескольких потоках с одновременным стартом
+     *
+     * @param threads количество потоков
+     * @param action действие (параметр - номер потока), возвращает список идентификаторов
+     * @return объединенные результаты потоков
+     */
+    private static List<Integer> runInThreads(int threads, ThreadAction action) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<List<Integer>>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return action.run(thread);
+                }));
+            }
+            start.countDown();
+            List<Integer> result = new ArrayList<>();
+            for (Future<List<Integer>> future : futures) {
+                result.addAll(future.get(60, TimeUnit.SECONDS));
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface ThreadAction {
+        List<Integer> run(int thread);
+    }
+}
@@ -186,6 +186,31 @@ class EpicTaskTest {
         assertEquals(Duration.ZERO, epicWithSubs.getDuration());
     }
 
+    /**
+     * тест окончания эпика и старта при удалении подзадачи, отделенной от остальных промежутком:
+     * старт - самый ранний старт, окончание - самое позднее окончание оставшихся подзадач
+     */
+    @Test
+    void testTimeWindowFromSubsTimeline() {
+        epicWithSubs.addSubTask(sub6);
+        assertEquals(sub6.getStartTime(), epicWithSubs.getStartTime());
+        assertEquals(sub5.getEndTime(), epicWithSubs.getEndTime());
+
+        epicWithSubs.removeSubTask(sub6);
+        assertEquals(sub3.getStartTime(), epicWithSubs.getStartTime());
+        epicWithSubs.removeSubTask(sub5);
+        assertEquals(sub4.getEndTime(), epicWithSubs.getEndTime());
+
+        sub4.setStartTime(moment.plusHours(1));
+        assertEquals(moment.plusMinutes(75), epicWithSubs.getEndTime(), "не учтено изменение старта подзадачи");
+        sub4.setDuration(Duration.ofMinutes(5));
+        assertEquals(moment.plusMinutes(65), epicWithSubs.getEndTime(), "не учтено изменение длительности");
+        assertEquals(sub3.getDuration().plus(sub4.getDuration()), epicWithSubs.getDuration());
+
+        epicWithSubs.clearSubTasks();
+        assertEquals(AbstractTask.DEFAULT_TIME, epicWithSubs.getEndTime());
+    }
+
     /**
      * тест удаления всех подзадач
      */
@@ -197,6 +222,36 @@ class EpicTaskTest {
         assertEquals(Duration.ZERO, epicWithSubs.getDuration());
     }
 
+    /**
+     * тест счетчиков статусов подзадач:
+     * статус эпика пересчитывается при изменении статуса, замене и удалении подзадач
+     */
+    @Test
+    void testSubsStatusCounters() {
+        assertEquals(Status.NEW, epicNoSubs.getSubsStatus());
+        assertEquals(Status.NEW, epicWithSubs.getSubsStatus());
+
+        sub3.setStatus(Status.DONE);
+        assertEquals(Status.IN_PROGRESS, epicWithSubs.getSubsStatus());
+        sub4.setStatus(Status.DONE);
+        sub5.setStatus(Status.DONE);
+        assertEquals(Status.DONE, epicWithSubs.getSubsStatus());
+
+        SubTask updated = new SubTask(5, 2, "name5", "descr5",
+                Duration.ofMinutes(5), moment.plusMinutes(25));
+        epicWithSubs.addSubTask(updated);
+        assertEquals(Status.IN_PROGRESS, epicWithSubs.getSubsStatus(), "подзадача не заменена");
+        assertEquals(3, epicWithSubs.getSubs().size());
+        sub5.setStatus(Status.NEW);
+        assertEquals(Status.IN_PROGRESS, epicWithSubs.getSubsStatus(), "учтен статус замененной подзадачи");
+
+        epicWithSubs.removeSubTask(updated);
+        assertEquals(Status.DONE, epicWithSubs.getSubsStatus());
+        epicWithSubs.clearSubTasks();
+        sub3.setStatus(Status.IN_PROGRESS);
+        assertEquals(Status.NEW, epicWithSubs.getSubsStatus());
+    }
+
     /**
      * тест получения статуса заглушки
      */
@@ -264,6 +319,32 @@ class EpicTaskTest {
         assertArrayEquals(new Integer[]{3, 4, 5}, epicWithSubs.getSubs().toArray(new Integer[]{}));
     }
 
+    /**
+     * тест подзадачи, добавленной в эпики двух менеджеров (разные экземпляры эпика с одним id)
+     * изменения статуса и времени подзадачи должны учитываться обоими эпиками,
+     * удаление подзадачи из одного эпика не отключает второй
+     */
+    @Test
+    void testSubSharedByTwoEpics() {
+        EpicTask otherEpic = new EpicTask(2, "name2", "descr2", sub3, sub4, sub5);
+
+        sub3.setStatus(Status.DONE);
+        sub4.setStatus(Status.DONE);
+        sub5.setStatus(Status.DONE);
+        assertEquals(Status.DONE, epicWithSubs.getSubsStatus());
+        assertEquals(Status.DONE, otherEpic.getSubsStatus());
+
+        epicWithSubs.removeSubTask(sub5);
+        sub5.setStatus(Status.NEW);
+        sub3.setStartTime(moment.minusHours(1));
+        assertEquals(Status.DONE, epicWithSubs.getSubsStatus());
+        assertEquals(Status.IN_PROGRESS, otherEpic.getSubsStatus());
+        assertEquals(moment.minusHours(1), epicWithSubs.getStartTime());
+        assertEquals(moment.minusHours(1), otherEpic.getStartTime());
+        assertEquals(moment.plusMinutes(30), otherEpic.getEndTime());
+        assertEquals(moment.plusMinutes(25), epicWithSubs.getEndTime());
+    }
+
     /**
      * тест сериализации()
      */
@@ -5,7 +5,14 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import run.FileBackedTasksManager;
+import run.InMemoryHistoryManager;
+import run.util.BinarySnapshot;
+import run.util.ManagerSaveException;
 import run.util.Managers;
+import run.util.SnapshotFormat;
+import run.util.SyncedFiles;
+import run.util.TaskJournal;
+import run.util.TaskLoader;
 import run.util.TaskSaver;
 import tasks.AbstractTask;
 import tasks.EpicTask;
@@ -18,7 +25,13 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 
 class FileBackedTaskManagerTest extends InMemoryTaskManagerTest {
@@ -303,6 +316,378 @@ class FileBackedTaskManagerTest extends InMemoryTaskManagerTest {
         Assertions.assertNotNull(manager.getEpicById(7));
         Assertions.assertEquals(epic7, manager.getEpicById(7), "полученный эпик" + manager.getEpicById(7).toString());
     }
+    /**
+     * тестирование режима журнала: изменения дописываются в журнал, снимок не перезаписывается
+     * при восстановлении записи журнала применяются к снимку
+     */
+    @Test
+    void testJournalReplay() throws IOException {
+        File file = new File("data/testSaveJournal.csv");
+        manager = new FileBackedTasksManager(file.getPath(), true);
+        addItemsToManager();
+        manager.deleteTaskById(6);
+        manager.getTaskById(4);
+        manager.getSubById(1);
+        File journal = new File(file.getPath() + TaskJournal.SUFFIX);
+
+        Assertions.assertEquals(List.of(TaskSaver.HEADER, ""), Files.readAllLines(file.toPath()),
+                "снимок перезаписан в режиме журнала");
+        Assertions.assertTrue(journal.exists(), "журнал не создан");
+
+        manager = new FileBackedTasksManager(file, true);
+
+        Assertions.assertEquals(List.of(task4), manager.getAllTasks());
+        Assertions.assertEquals(5, manager.getAllSubs().size());
+        Assertions.assertArrayEquals(new Integer[]{1, 2, 5, 8, 9},
+                manager.getEpicById(3).getSubs().toArray(new Integer[]{}));
+        Assertions.assertArrayEquals(new int[]{3, 1, 4},
+                manager.getHistory().stream().mapToInt(AbstractTask::getId).toArray());
+        Files.deleteIfExists(journal.toPath());
+        Files.deleteIfExists(file.toPath());
+    }
+
+    /**
+     * тестирование записи в журнал после исключения в операции менеджера:
+     * операция, завершившаяся исключением, не отключает запись последующих изменений
+     */
+    @Test
+    void testJournalAfterFailedChange() throws IOException {
+        File file = new File("data/testSaveJournalFailure.csv");
+        File journal = new File(file.getPath() + TaskJournal.SUFFIX);
+        try {
+            manager = new FileBackedTasksManager(file.getPath(), true);
+            Assertions.assertThrows(NullPointerException.class, () -> manager.deleteEpicById(99));
+            manager.addNewTask(task4);
+
+            Assertions.assertTrue(journal.exists(), "изменение не записано в журнал");
+            Assertions.assertEquals(List.of(task4), new FileBackedTasksManager(file, true).getAllTasks());
+        } finally {
+            Files.deleteIfExists(journal.toPath());
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    /**
+     * тестирование сворачивания журнала в снимок при достижении порога
+     */
+    @Test
+    void testJournalCompaction() throws IOException {
+        File file = new File("data/testSaveJournal.csv");
+        FileBackedTasksManager journaled = new FileBackedTasksManager(file.getPath(), true);
+        journaled.setCompactThreshold(3);
+        manager = journaled;
+        addItemsToManager();
+        File journal = new File(file.getPath() + TaskJournal.SUFFIX);
+
+        Assertions.assertFalse(journal.exists(), "журнал не свернут");
+        Assertions.assertEquals(9, Files.readAllLines(file.toPath()).size() - 2,
+                "снимок не содержит всех задач");
+        Assertions.assertFalse(new File(file.getPath() + SyncedFiles.TEMP_SUFFIX).exists(),
+                "временный файл снимка не переименован");
+        Files.deleteIfExists(journal.toPath());
+        Files.deleteIfExists(file.toPath());
+    }
+
+    /**
+     * тестирование записи просмотров в отдельный журнал просмотров (режим полной перезаписи)
+     * просмотр задачи не должен перезаписывать файл сохранения
+     */
+    @Test
+    void testHistoryViewLog() throws IOException {
+        File file = makeEmptySaveFile();
+        manager = Managers.loadFromFile(file);
+        addItemsToManager();
+        List<String> snapshot = Files.readAllLines(file.toPath());
+        for (int id : new int[]{4, 6, 4}) {
+            manager.getTaskById(id);
+        }
+        manager.getEpicById(7);
+
+        Assertions.assertEquals(snapshot, Files.readAllLines(file.toPath()), "снимок перезаписан при просмотре");
+
+        manager = Managers.loadFromFile(file);
+
+        Assertions.assertArrayEquals(new int[]{7, 4, 6},
+                manager.getHistory().stream().mapToInt(AbstractTask::getId).toArray());
+        Files.deleteIfExists(new File(file.getPath() + TaskJournal.HISTORY_SUFFIX).toPath());
+    }
+
+    /**
+     * тестирование групповой записи: после ожидания flush() все изменения записаны в файл
+     */
+    @Test
+    void testGroupCommitFlush() throws Exception {
+        File file = makeEmptySaveFile();
+        FileBackedTasksManager grouped = Managers.loadFromFile(file);
+        grouped.enableGroupCommit(1000, 1000);
+        manager = grouped;
+        addItemsToManager();
+        manager.getTaskById(4);
+        grouped.flush().get(5, TimeUnit.SECONDS);
+
+        FileBackedTasksManager restored = Managers.loadFromFile(file);
+
+        Assertions.assertEquals(new HashSet<>(manager.getAllTasks()), new HashSet<>(restored.getAllTasks()));
+        Assertions.assertEquals(new HashSet<>(manager.getAllSubs()), new HashSet<>(restored.getAllSubs()));
+        Assertions.assertEquals(new HashSet<>(manager.getAllEpics()), new HashSet<>(restored.getAllEpics()));
+        Assertions.assertEquals(List.of(task4), restored.getHistory());
+        grouped.close();
+    }
+
+    /**
+     * тестирование ошибки групповой записи: CompletableFuture из flush() завершается с исключением,
+     * несохраненные изменения записываются при следующей записи
+     */
+    @Test
+    void testGroupCommitFailure() throws Exception {
+        File file = new File("data/testSaveFailure.csv");
+        FileBackedTasksManager grouped = new FileBackedTasksManager(file.getPath());
+        grouped.enableGroupCommit(1000, 1000);
+        manager = grouped;
+        try {
+            // каталог на месте файла сохранения: запись в файл невозможна
+            Files.delete(file.toPath());
+            Files.createDirectory(file.toPath());
+            manager.addNewTask(task4);
+            ExecutionException failure = Assertions.assertThrows(ExecutionException.class,
+                    () -> grouped.flush().get(5, TimeUnit.SECONDS));
+            Assertions.assertInstanceOf(ManagerSaveException.class, failure.getCause());
+
+            Files.delete(file.toPath());
+            manager.addNewTask(task6);
+            grouped.flush().get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(new HashSet<>(List.of(task4, task6)),
+                    new HashSet<>(new FileBackedTasksManager(file).getAllTasks()));
+        } finally {
+            grouped.close();
+            Files.deleteIfExists(file.toPath());
+            Files.deleteIfExists(new File(file.getPath() + SyncedFiles.TEMP_SUFFIX).toPath());
+        }
+    }
+
+    /**
+     * тестирование ограниченной истории менеджера с сохранением в файл: при просмотре сверх ограничения
+     * вытесняется задача, просмотренная раньше остальных; после восстановления (в т.ч. из журнала)
+     * история содержит только последние просмотренные задачи
+     */
+    @Test
+    void testBoundedHistory() throws IOException {
+        File file = new File("data/testSaveBoundedHistory.csv");
+        File journal = new File(file.getPath() + TaskJournal.SUFFIX);
+        try {
+            manager = new FileBackedTasksManager(file.getPath(), true, SnapshotFormat.CSV,
+                    Managers.getDefaultHistory(2));
+            addItemsToManager();
+            for (int id : new int[]{4, 6, 4}) {
+                manager.getTaskById(id);
+            }
+            manager.getSubById(1);
+
+            Assertions.assertArrayEquals(new int[]{1, 4},
+                    manager.getHistory().stream().mapToInt(AbstractTask::getId).toArray());
+            FileBackedTasksManager restored = new FileBackedTasksManager(new TaskLoader(file), true,
+                    Managers.getDefaultHistory(2));
+            Assertions.assertEquals(manager.getHistory(), restored.getHistory());
+
+            Managers.setDefaultHistoryCapacity(1);
+            Assertions.assertArrayEquals(new int[]{1}, new FileBackedTasksManager(file, true).getHistory().stream()
+                    .mapToInt(AbstractTask::getId).toArray(), "ограничение по умолчанию не применено");
+        } finally {
+            Managers.setDefaultHistoryCapacity(Integer.MAX_VALUE);
+            Files.deleteIfExists(journal.toPath());
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    /**
+     * тестирование загрузки без записи в файл: восстановление истории не перезаписывает
+     * ни снимок, ни журнал просмотров
+     */
+    @Test
+    void testLoadWithoutWrites() throws IOException {
+        File file = makeEmptySaveFile();
+        manager = Managers.loadFromFile(file);
+        addItemsToManager();
+        for (int id : new int[]{4, 6}) {
+            manager.getTaskById(id);
+        }
+        manager.getEpicById(3);
+        File viewLog = new File(file.getPath() + TaskJournal.HISTORY_SUFFIX);
+        byte[] snapshot = Files.readAllBytes(file.toPath());
+        byte[] views = Files.readAllBytes(viewLog.toPath());
+
+        FileBackedTasksManager restored = Managers.loadFromFile(file);
+
+        Assertions.assertArrayEquals(new int[]{3, 6, 4},
+                restored.getHistory().stream().mapToInt(AbstractTask::getId).toArray());
+        Assertions.assertArrayEquals(snapshot, Files.readAllBytes(file.toPath()), "снимок перезаписан при загрузке");
+        Assertions.assertArrayEquals(views, Files.readAllBytes(viewLog.toPath()),
+                "журнал просмотров изменен при загрузке");
+        Files.deleteIfExists(viewLog.toPath());
+    }
+
+    /**
+     * тестирование восстановления списка приоритетов при загрузке
+     */
+    @Test
+    void testPrioritizedTasksAfterLoad() {
+        File file = makeEmptySaveFile();
+        manager = Managers.loadFromFile(file);
+        addItemsToManager();
+        List<Task> expected = manager.getPrioritizedTasks();
+
+        FileBackedTasksManager restored = Managers.loadFromFile(file);
+
+        Assertions.assertEquals(expected, restored.getPrioritizedTasks());
+        Task overlapping = new Task(100, "name 100", "descr 100", task4.getDuration(), task4.getStartTime());
+        Assertions.assertFalse(restored.validateTimeFrame(overlapping), "пересечение с восстановленной задачей");
+    }
+
+    /**
+     * замер времени загрузки в зависимости от размера файла сохранения
+     * история содержит половину задач (без ограничения размера), поэтому запись файла при восстановлении
+     * каждого просмотра дала бы рост O(H·N); время загрузки в расчете на задачу должно расти не больше,
+     * чем в несколько раз при росте файла в 8 раз (при O(H·N) - в 8 раз и больше)
+     */
+    @Test
+    void testStartupLinear() throws IOException {
+        File file = new File("data/testSaveStartup.csv");
+        int[] sizes = {20_000, 40_000, 80_000, 160_000};
+        double[] nanosPerTask = new double[sizes.length];
+        try {
+            writeStartupFile(file, sizes[0]);
+            loadStartup(file, sizes[0]); // прогрев
+            for (int i = 0; i < sizes.length; i++) {
+                writeStartupFile(file, sizes[i]);
+                long best = Long.MAX_VALUE;
+                for (int round = 0; round < 3; round++) {
+                    best = Math.min(best, loadStartup(file, sizes[i]));
+                }
+                nanosPerTask[i] = (double) best / sizes[i];
+                System.out.printf("загрузка %d задач (%d КБ, история %d): %.1f мс, %.0f нс на задачу%n",
+                        sizes[i], file.length() / 1024, sizes[i] / 2, best / 1e6, nanosPerTask[i]);
+            }
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+        Assertions.assertTrue(nanosPerTask[sizes.length - 1] < nanosPerTask[0] * 3,
+                "время загрузки растет быстрее размера файла");
+    }
+
+    /**
+     * загрузка файла сохранения с неограниченной историей
+     * @return время загрузки, нс
+     */
+    private static long loadStartup(File file, int tasks) {
+        long begin = System.nanoTime();
+        FileBackedTasksManager loaded = new FileBackedTasksManager(new TaskLoader(file), false,
+                new InMemoryHistoryManager());
+        long nanos = System.nanoTime() - begin;
+        Assertions.assertEquals(tasks / 2, loaded.getHistory().size());
+        return nanos;
+    }
+
+    /**
+     * файл сохранения: эпики по десять подзадач, остальное - задачи; история - каждая вторая задача
+     */
+    private static void writeStartupFile(File file, int tasks) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath())) {
+            writer.write(TaskSaver.HEADER + '\n');
+            for (int id = 1; id <= tasks; id++) {
+                if (id % 20 == 1) {
+                    writer.write(id + ",EPIC,epic " + id + ",N_A,descr " + id + ",,\n");
+                } else if (id % 20 <= 10) {
+                    writer.write(id + ",SUBT,sub " + id + ",NEW,descr " + id + ",2000-01-01T00:00,PT0S,"
+                            + (id - id % 20 + 1) + '\n');
+                } else {
+                    writer.write(id + ",NORM,name " + id + ",NEW,descr " + id + ",2000-01-01T00:00,PT0S\n");
+                }
+            }
+            writer.write('\n');
+            for (int id = tasks; id > 0; id -= 2) {
+                writer.write(id + (id > 2 ? "," : ""));
+            }
+        }
+    }
+
+    /**
+     * тестирование двоичного снимка и преобразования файла сохранения между форматами
+     */
+    @Test
+    void testBinarySnapshotConversion() throws IOException {
+        File file = new File("data/testSaveBinary.csv");
+        File idsFile = new File(file.getPath() + FileBackedTasksManager.IDS_SUFFIX);
+        try {
+            manager = new FileBackedTasksManager(file.getPath(), false, SnapshotFormat.BINARY);
+            addItemsToManager();
+            manager.getTaskById(4);
+            manager.getSubById(1);
+
+            Assertions.assertTrue(BinarySnapshot.isBinary(file), "снимок записан не в двоичном формате");
+            long binarySize = file.length();
+            FileBackedTasksManager restored = new FileBackedTasksManager(file);
+
+            Assertions.assertEquals(SnapshotFormat.BINARY, restored.getFormat());
+            Assertions.assertEquals(new HashSet<>(manager.getAllTasks()), new HashSet<>(restored.getAllTasks()));
+            Assertions.assertEquals(new HashSet<>(manager.getAllSubs()), new HashSet<>(restored.getAllSubs()));
+            Assertions.assertEquals(new HashSet<>(manager.getAllEpics()), new HashSet<>(restored.getAllEpics()));
+            Assertions.assertEquals(manager.getHistory(), restored.getHistory());
+            Assertions.assertEquals(sub1.getStartTime(), restored.getSubById(1).getStartTime());
+            Assertions.assertEquals(sub1.getDuration(), restored.getSubById(1).getDuration());
+
+            restored.convertTo(SnapshotFormat.CSV);
+
+            Assertions.assertFalse(BinarySnapshot.isBinary(file), "снимок не преобразован в CSV");
+            Assertions.assertTrue(file.length() > binarySize);
+            FileBackedTasksManager fromCsv = new FileBackedTasksManager(file);
+            Assertions.assertEquals(new HashSet<>(manager.getAllSubs()), new HashSet<>(fromCsv.getAllSubs()));
+            Assertions.assertEquals(restored.getHistory(), fromCsv.getHistory());
+        } finally {
+            Files.deleteIfExists(idsFile.toPath());
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    /**
+     * тестирование выдачи идентификаторов блоками: идентификаторы уникальны при выдаче из нескольких потоков,
+     * после перезапуска выдача продолжается после арендованных блоков (без файла границы - после максимального
+     * идентификатора загруженных задач)
+     */
+    @Test
+    void testIdAllocationSurvivesRestart() throws InterruptedException, IOException {
+        File file = new File("data/testSaveIds.csv");
+        File idsFile = new File(file.getPath() + FileBackedTasksManager.IDS_SUFFIX);
+        try {
+            FileBackedTasksManager fileManager = new FileBackedTasksManager(file.getPath());
+            Set<Integer> ids = ConcurrentHashMap.newKeySet();
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 3_000; i++) {
+                        ids.add(fileManager.getNewTaskId());
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            Assertions.assertFalse(idsFile.exists(), "граница идентификаторов записана при аренде блока");
+            fileManager.addNewTask(task4);
+
+            Assertions.assertEquals(12_000, ids.size(), "идентификаторы выданы повторно");
+            FileBackedTasksManager restored = new FileBackedTasksManager(file);
+            Assertions.assertTrue(restored.getNewTaskId() > Collections.max(ids), "идентификатор выдан повторно");
+
+            Files.delete(idsFile.toPath());
+            FileBackedTasksManager withoutIds = new FileBackedTasksManager(file);
+            Assertions.assertEquals(5, withoutIds.getNewTaskId());
+        } finally {
+            Files.deleteIfExists(idsFile.toPath());
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
     @Override
     @Test
     void testGetPrioritizedTasks() {
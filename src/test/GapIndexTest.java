@@ -0,0 +1,106 @@
+package test;
+
+import org.junit.jupiter.api.Test;
+import run.ConcurrentTaskManager;
+import run.InMemoryTaskManager;
+import run.util.GapIndex;
+import run.util.Managers;
+import tasks.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * тест индекса свободных промежутков: совпадение с перебором промежутков при случайных операциях,
+ * поиск свободного времени в плотно заполненном расписании (100 000 задач) в сравнении с просмотром
+ * списка приоритетов (реализация TaskManager по умолчанию в ConcurrentTaskManager)
+ */
+class GapIndexTest {
+    private static final LocalDateTime START = LocalDateTime.of(2020, 1, 1, 0, 0, 0);
+
+    @Test
+    void testSameResultAsLinearSearch() {
+        GapIndex index = new GapIndex();
+        TreeMap<LocalDateTime, LocalDateTime> expected = new TreeMap<>();
+        Random random = new Random(21);
+        for (int i = 0; i < 20_000; i++) {
+            LocalDateTime start = START.plusMinutes(10L * random.nextInt(1_000));
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(start) != null, index.remove(start));
+            } else if (!expected.containsKey(start)) {
+                LocalDateTime end = start.plusMinutes(1 + random.nextInt(9));
+                expected.put(start, end);
+                index.add(start, end);
+            }
+            assertEquals(expected.size(), index.size());
+            if (i % 10 == 0) {
+                LocalDateTime after = START.plusMinutes(random.nextInt(10_000));
+                Duration duration = Duration.ofMinutes(1 + random.nextInt(9));
+                assertEquals(linearFind(expected, after, duration), index.find(after, duration, null));
+            }
+        }
+        index.add(START.plusYears(1), LocalDateTime.MAX);
+        assertEquals(START.plusYears(1), index.find(START.plusMonths(11), Duration.ofDays(40), null));
+        assertNull(index.find(START.plusMonths(11), Duration.ofDays(40), START.plusYears(1)));
+    }
+
+    @Test
+    void testDenseCalendar() {
+        InMemoryTaskManager indexed = new InMemoryTaskManager(Managers.getDefaultHistory());
+        ConcurrentTaskManager linear = Managers.getConcurrent();
+        Random random = new Random(100);
+        LocalDateTime start = START;
+        for (int id = 0; id < 100_000; id++) {
+            // промежутки 0-4 минуты, каждый тысячный - 60 минут
+            start = start.plusMinutes(id % 1_000 == 999 ? 60 : random.nextInt(5));
+            Task task = new Task(id, "name " + id, "descr " + id, Duration.ofMinutes(10), start);
+            assertEquals(id, indexed.addNewTask(task));
+            assertEquals(id, linear.addNewTask(task));
+            start = start.plusMinutes(10);
+        }
+        indexed.deleteTaskById(50_000);
+        linear.deleteTaskById(50_000);
+        LocalDateTime end = start;
+
+        final int queries = 300;
+        LocalDateTime[] after = new LocalDateTime[queries];
+        Duration[] duration = new Duration[queries];
+        for (int i = 0; i < queries; i++) {
+            after[i] = START.plusMinutes(random.nextInt((int) Duration.between(START, end).toMinutes()));
+            duration[i] = Duration.ofMinutes(5 + random.nextInt(30));
+        }
+        LocalDateTime[] expected = new LocalDateTime[queries];
+        long begin = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            expected[i] = linear.findFreeSlot(after[i], duration[i], null);
+        }
+        long linearNanos = System.nanoTime() - begin;
+        indexed.findFreeSlot(START, Duration.ofMinutes(1), null);
+        begin = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            assertEquals(expected[i], indexed.findFreeSlot(after[i], duration[i], null));
+        }
+        long indexedNanos = System.nanoTime() - begin;
+        System.out.printf("поиск свободного времени (100 000 задач): просмотр списка %.1f мкс, индекс %.1f мкс%n",
+                linearNanos / 1e3 / queries, indexedNanos / 1e3 / queries);
+
+        Task scheduled = new Task(100_000, "name", "descr", Duration.ofMinutes(45),
+                indexed.findFreeSlot(START, Duration.ofMinutes(45), null));
+        assertEquals(100_000, indexed.addNewTask(scheduled), "найденный промежуток пересекается с задачами");
+        assertNotEquals(scheduled.getStartTime(), indexed.findFreeSlot(START, Duration.ofMinutes(45), null));
+    }
+
+    private static LocalDateTime linearFind(TreeMap<LocalDateTime, LocalDateTime> gaps, LocalDateTime after,
+                                            Duration duration) {
+        for (Map.Entry<LocalDateTime, LocalDateTime> gap : gaps.entrySet()) {
+            LocalDateTime from = gap.getKey().isBefore(after) ? after : gap.getKey();
+            if (!from.plus(duration).isAfter(gap.getValue())) {
+                return from;
+            }
+        }
+        return null;
+    }
+}
@@ -148,4 +148,31 @@ public class InMemoryHistoryManagerTest {
         AbstractTask[] actSequence = listAct.toArray(new AbstractTask[]{});
         Assert.assertArrayEquals(reversedArr, actSequence);
     }
-}
\ No newline at end of file
+
+    /**
+     * тест истории с ограничением количества задач:
+     * при переполнении удаляется задача, просмотренная раньше остальных (с учетом повторных просмотров)
+     * {@link run.InMemoryHistoryManager#InMemoryHistoryManager(int)}
+     */
+    @Test
+    public void boundedEvictsLeastRecent() {
+        InMemoryHistoryManager bounded = new InMemoryHistoryManager(4);
+        for (int i = 0; i < 6; i++) {
+            bounded.add(initialArr[i]);
+        }
+        Assert.assertArrayEquals(new AbstractTask[]{initialArr[5], initialArr[4], initialArr[3], initialArr[2]},
+                bounded.getHistory().toArray(new AbstractTask[]{}));
+
+        // повторный просмотр переносит задачу в конец истории
+        bounded.add(initialArr[2]);
+        bounded.add(initialArr[6]);
+        Assert.assertArrayEquals(new AbstractTask[]{initialArr[6], initialArr[2], initialArr[5], initialArr[4]},
+                bounded.getHistory().toArray(new AbstractTask[]{}));
+
+        // после удаления задачи вытеснение не требуется
+        bounded.remove(5);
+        bounded.add(initialArr[7]);
+        Assert.assertEquals(4, bounded.getHistory().size());
+        Assert.assertEquals(initialArr[4], bounded.getHistory().get(3));
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import run.InMemoryTaskManager;
 import run.util.Managers;
+import run.util.TimeSlotGrid;
 import tasks.EpicTask;
 import tasks.Status;
 import tasks.SubTask;
@@ -13,6 +14,7 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.Month;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -312,6 +314,130 @@ class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
                                   new SubTask[]{sub5, sub1, sub2}, new int[]{6,4,1,5,2});
     }
 
+    @Test
+    void testStreamsAndPages() {
+        assertStreamsAndPages();
+    }
+
+    @Test
+    void testPrioritizedPagesWithUnscheduled() {
+        assertPrioritizedPagesWithUnscheduled();
+    }
+
+    @Test
+    void testStatusQueries() {
+        assertStatusQueries();
+    }
+
+    /**
+     * тест индекса статусов для задачи, добавленной в два менеджера:
+     * изменение статуса видно в обоих индексах, удаление из одного менеджера не отключает другой
+     */
+    @Test
+    void testStatusIndexSharedTask() {
+        InMemoryTaskManager other = new InMemoryTaskManager(Managers.getDefaultHistory());
+        manager.addNewTask(task4);
+        other.addNewTask(task4);
+
+        task4.setStatus(Status.DONE);
+        assertEquals(List.of(task4), manager.getTasksByStatus(Status.DONE));
+        assertEquals(List.of(task4), other.getTasksByStatus(Status.DONE));
+        assertTrue(manager.getTasksByStatus(Status.NEW).isEmpty());
+        assertTrue(other.getTasksByStatus(Status.NEW).isEmpty());
+
+        other.deleteTaskById(4);
+        task4.setStatus(Status.IN_PROGRESS);
+        assertEquals(List.of(task4), manager.getTasksByStatus(Status.IN_PROGRESS));
+        assertTrue(manager.getTasksByStatus(Status.DONE).isEmpty(), "индекс не обновлен после удаления из другого менеджера");
+        assertTrue(other.getTasksByStatus(Status.IN_PROGRESS).isEmpty());
+    }
+
+    @Test
+    void testTimeRangeQueries() {
+        assertTimeRangeQueries();
+    }
+
+    @Test
+    void testFindFreeSlot() {
+        assertFindFreeSlot();
+    }
+
+    /**
+     * тест массовой загрузки задач
+     * список приоритетов заполняется в порядке старта, пересекающиеся задачи возвращаются
+     */
+    @Test
+    void testLoadTasks() {
+        sub2.setStartTime(LocalDateTime.of(2000, 1, 1, 0, 45, 0));
+        sub2.setDuration(Duration.ofMinutes(5));
+
+        List<Task> overlapping = manager.loadTasks(List.of(task6, task4), List.of(sub5, sub2, sub1),
+                List.of(epic3, epic7));
+
+        assertEquals(List.of(sub2), overlapping);
+        assertArrayEquals(new int[]{1, 4, 2, 6, 5},
+                manager.getPrioritizedTasks().stream().mapToInt(Task::getId).toArray());
+        assertEquals(List.of(1, 2, 5), manager.getEpicById(3).getSubs());
+        assertEquals(2, manager.getAllEpics().size());
+    }
+
+    /**
+     * тест удаления загруженной пересекающейся задачи:
+     * после удаления последней такой задачи проверки снова идут только по соседним задачам
+     */
+    @Test
+    void testLoadTasksOverlapRemoved() {
+        sub2.setStartTime(LocalDateTime.of(2000, 1, 1, 0, 45, 0));
+        sub2.setDuration(Duration.ofMinutes(5));
+        LocalDateTime from = LocalDateTime.of(2000, 1, 1, 0, 0, 0);
+
+        assertEquals(List.of(sub2), manager.loadTasks(List.of(task6, task4), List.of(sub5, sub2, sub1),
+                List.of(epic3, epic7)));
+        assertEquals(List.of(task4, sub2), manager.getTasksActiveAt(from.plusMinutes(47)));
+
+        manager.deleteSubById(2);
+        assertEquals(List.of(task4), manager.getTasksActiveAt(from.plusMinutes(47)));
+        assertFalse(manager.validateTimeFrame(makeTask(100, 45, 5)), "пересечение с задачей 4");
+        assertEquals(from.plusMinutes(20), manager.findFreeSlot(from, Duration.ofMinutes(10), null));
+
+        assertEquals(100, manager.addNewTask(makeTask(100, 20, 10)));
+        assertEquals(from.plusMinutes(30), manager.findFreeSlot(from, Duration.ofMinutes(10), null));
+        assertFalse(manager.validateTimeFrame(makeTask(101, 25, 10)), "пересечение с задачей 100");
+    }
+
+    /**
+     * тест задач без времени старта: не пересекаются между собой, идут в списке приоритетов
+     * после задач с временем старта в порядке добавления, удаляются и обновляются по своему экземпляру
+     * задачи с одинаковым временем старта при загрузке не теряются
+     */
+    @Test
+    void testUnscheduledTasks() {
+        manager.addNewTask(task6);
+        Task[] unscheduled = new Task[3];
+        for (int i = 0; i < unscheduled.length; i++) {
+            unscheduled[i] = new Task(12 - i, "name", "descr", Duration.ZERO, Task.DEFAULT_TIME);
+            assertEquals(12 - i, manager.addNewTask(unscheduled[i]));
+        }
+        manager.addNewTask(task4);
+        assertArrayEquals(new int[]{4, 6, 10, 11, 12},
+                manager.getPrioritizedTasks().stream().mapToInt(Task::getId).toArray());
+
+        manager.deleteTaskById(11);
+        Task scheduled = new Task(12, "name", "descr", Duration.ofMinutes(5), LocalDateTime.of(2000, 1, 1, 0, 35));
+        assertEquals(12, manager.updateTask(scheduled));
+        assertArrayEquals(new int[]{12, 4, 6, 10},
+                manager.getPrioritizedTasks().stream().mapToInt(Task::getId).toArray());
+        Task sameStart = new Task(13, "name", "descr", Duration.ofMinutes(5), task4.getStartTime());
+        assertEquals(-1, manager.addNewTask(sameStart), "задача с тем же временем старта добавлена");
+
+        InMemoryTaskManager loaded = new InMemoryTaskManager(Managers.getDefaultHistory());
+        List<Task> overlapping = loaded.loadTasks(List.of(task4, sameStart, unscheduled[0], unscheduled[2]),
+                List.of(), List.of());
+        assertEquals(List.of(sameStart), overlapping);
+        assertArrayEquals(new int[]{4, 13, 10, 12},
+                loaded.getPrioritizedTasks().stream().mapToInt(Task::getId).toArray());
+    }
+
     /**
      * тест метода testValidateTimeFrame()
      * для работы теста нуэно применить модификатор public к методу
@@ -329,4 +455,101 @@ class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
         boolean b = manager.validateTimeFrame(task6);
         System.out.println(b);
     }
+
+    /**
+     * тест проверки пересечений по соседним задачам:
+     * пересечение с предыдущей и последующей задачей, совпадающий старт, задачи "встык"
+     */
+    @Test
+    void testValidateTimeFrameNeighbours() {
+        assertValidateTimeFrameNeighbours(manager::validateTimeFrame);
+    }
+
+    /**
+     * тест задач нулевой длительности на старте другой задачи: промежутки [start, end)
+     * в поиске свободного промежутка и проверке пересечений
+     */
+    @Test
+    void testZeroDurationAtSharedStart() {
+        assertZeroDurationAtSharedStart(manager::validateTimeFrame);
+    }
+
+    /**
+     * тест задач нулевой длительности на старте другой задачи с сеткой занятости
+     */
+    @Test
+    void testZeroDurationAtSharedStartWithGrid() {
+        manager.setTimeGrid(new TimeSlotGrid(LocalDateTime.of(2000, 1, 1, 0, 0), Duration.ofMinutes(15), 96));
+        assertZeroDurationAtSharedStart(manager::validateTimeFrame);
+    }
+
+
+    /**
+     * тест обновления задачи: предыдущая версия задачи не участвует в проверке пересечений
+     * и удаляется из списка приоритетов
+     */
+    @Test
+    void testUpdateTaskReplacesPrioritized() {
+        manager.addNewTask(task4);
+        Task moved = new Task(4, "name 4", "descr 4", Duration.ofMinutes(30),
+                task4.getStartTime().plusMinutes(5));
+
+        assertEquals(4, manager.updateTask(moved));
+        assertEquals(List.of(moved), manager.getPrioritizedTasks());
+        assertSame(moved, manager.getPrioritizedTasks().get(0));
+    }
+
+    /**
+     * тест статуса эпика после обновления и удаления подзадач:
+     * обновленная подзадача заменяет предыдущую в эпике
+     */
+    @Test
+    void testEpicStatusAfterUpdateSub() {
+        assertEpicStatusAfterUpdateSub();
+    }
+
+    /**
+     * тест кэшированных списков задач: до изменения возвращается тот же неизменяемый список,
+     * после изменения - новый список; изменение задач не перестраивает список эпиков
+     */
+    @Test
+    void testSnapshotsCachedUntilChange() {
+        manager.addNewTask(task4);
+        manager.addNewEpic(epic7);
+        List<Task> tasks = manager.getAllTasks();
+        List<EpicTask> epics = manager.getAllEpics();
+        List<Task> prioritized = manager.getPrioritizedTasks();
+
+        assertSame(tasks, manager.getAllTasks());
+        assertSame(prioritized, manager.getPrioritizedTasks());
+        assertThrows(UnsupportedOperationException.class, () -> tasks.add(task6));
+
+        Task moved = new Task(4, "name 4", "descr 4", Duration.ofMinutes(30),
+                task4.getStartTime().plusMinutes(5));
+        manager.updateTask(moved);
+
+        assertNotSame(tasks, manager.getAllTasks());
+        assertSame(moved, manager.getAllTasks().get(0));
+        assertSame(moved, manager.getPrioritizedTasks().get(0));
+        assertSame(epics, manager.getAllEpics());
+        manager.deleteTaskById(4);
+        assertTrue(manager.getAllTasks().isEmpty());
+        assertTrue(manager.getPrioritizedTasks().isEmpty());
+    }
+
+    /**
+     * тест добавления большого количества задач: каждая задача проверяется только по соседям
+     */
+    @Test
+    void testAddManyScheduledTasks() {
+        InMemoryTaskManager inMemory = (InMemoryTaskManager) Managers.getDefault();
+        final int count = 100_000;
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, inMemory.addNewTask(makeTask(i, 2L * i, 1)));
+        }
+
+        assertEquals(count, inMemory.getPrioritizedTasks().size());
+        assertEquals(-1, inMemory.addNewTask(makeTask(count, 2L * count - 3, 2)));
+        assertEquals(count, inMemory.addNewTask(makeTask(count, 2L * count - 1, 1)));
+    }
 }
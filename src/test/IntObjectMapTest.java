@@ -0,0 +1,143 @@
+package test;
+
+import org.junit.jupiter.api.Test;
+import run.InMemoryTaskManager;
+import run.util.IntObjectMap;
+import run.util.Managers;
+import tasks.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * тест IntObjectMap: совпадение содержимого с HashMap при случайных операциях,
+ * порядок перебора небольших ключей, удаление при переборе
+ */
+class IntObjectMapTest {
+
+    @Test
+    void testSameContentAsHashMap() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        Map<Integer, String> expected = new HashMap<>();
+        Random random = new Random(14);
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(5_000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                String value = "v" + i;
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        assertEquals(expected, map);
+        for (int key = -100; key < 4_900; key++) {
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+    }
+
+    @Test
+    void testAscendingOrderOfSmallKeys() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        for (int key : new int[]{7, 3, 12, 1, 40, 5}) {
+            map.put(key, "v" + key);
+        }
+        map.remove(12);
+
+        assertEquals(List.of(1, 3, 5, 7, 40), new ArrayList<>(map.keySet()));
+        assertEquals(List.of("v1", "v3", "v5", "v7", "v40"), new ArrayList<>(map.values()));
+    }
+
+    @Test
+    void testRemoveWhileIterating() {
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+        for (int key = 0; key < 1_000; key++) {
+            map.put(key * 16, Integer.valueOf(key));
+        }
+        map.values().removeIf(value -> value % 2 == 0);
+        map.entrySet().iterator().next().setValue(-1);
+
+        assertEquals(500, map.size());
+        assertEquals(-1, map.get(16));
+        assertNull(map.get(32));
+        assertEquals(999, map.get(999 * 16));
+        assertThrows(NullPointerException.class, () -> map.put(1, null));
+        assertThrows(ConcurrentModificationException.class, () -> {
+            for (Integer key : map.keySet()) {
+                map.put(key + 1, Integer.valueOf(0));
+            }
+        });
+    }
+
+    /**
+     * замер занимаемой памяти для 1 000 000 задач (результаты - docs/benchmarks.md):
+     * - накладные расходы Мапы (без самих задач): HashMap<Integer, Task> и IntObjectMap<Task>
+     * с одними и теми же объектами задач
+     * - объекты задач и структуры InMemoryTaskManager после загрузки задач (loadTasks) без самих задач
+     * память измеряется как занятая куча после сборки мусора
+     */
+    @Test
+    void testFootprintOneMillionTasks() {
+        final int count = 1_000_000;
+        long before = usedHeap();
+        Task[] tasks = new Task[count];
+        LocalDateTime start = LocalDateTime.of(2000, 1, 1, 0, 0);
+        for (int id = 0; id < count; id++) {
+            tasks[id] = new Task(id + 1, "name", "descr", Duration.ofMinutes(1), start.plusMinutes(2L * id));
+        }
+        long tasksBytes = usedHeap() - before;
+
+        before = usedHeap();
+        Map<Integer, Task> hashMap = new HashMap<>();
+        for (Task task : tasks) {
+            hashMap.put(task.getId(), task);
+        }
+        long hashMapBytes = usedHeap() - before;
+        assertEquals(count, hashMap.size());
+        hashMap = null;
+
+        before = usedHeap();
+        IntObjectMap<Task> intMap = new IntObjectMap<>();
+        for (Task task : tasks) {
+            intMap.put(task.getId(), task);
+        }
+        long intMapBytes = usedHeap() - before;
+        assertEquals(count, intMap.size());
+        intMap = null;
+
+        List<Task> loaded = Arrays.asList(tasks);
+        before = usedHeap();
+        InMemoryTaskManager manager = new InMemoryTaskManager(Managers.getDefaultHistory());
+        manager.loadTasks(loaded, List.of(), List.of());
+        manager.getPrioritizedTasks();
+        long managerBytes = usedHeap() - before;
+        assertEquals(count, manager.getAllTasks().size());
+
+        System.out.printf("1 000 000 задач: HashMap %.1f МБ, IntObjectMap %.1f МБ; "
+                        + "объекты задач %.1f МБ, InMemoryTaskManager без задач %.1f МБ (%d байт на задачу)%n",
+                hashMapBytes / 1e6, intMapBytes / 1e6, tasksBytes / 1e6, managerBytes / 1e6,
+                managerBytes / count);
+        assertTrue(intMapBytes * 2 < hashMapBytes, "IntObjectMap занимает не меньше половины HashMap");
+    }
+
+    /**
+     * занятая куча после сборки мусора (сборка повторяется, пока объем занятой памяти уменьшается)
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long current = runtime.totalMemory() - runtime.freeMemory();
+            if (current >= used) {
+                return current;
+            }
+            used = current;
+        }
+        return used;
+    }
+}
@@ -0,0 +1,180 @@
+package test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import run.MappedTaskManager;
+import run.util.ManagerLoadException;
+import run.util.Managers;
+import tasks.EpicTask;
+import tasks.Status;
+import tasks.SubTask;
+import tasks.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * тесты менеджера с хранением задач в отображенном в память файле
+ * (контрактные тесты TaskManagerTest выполняются для нового файла)
+ *
+ * @see MappedTaskManager
+ */
+class MappedTaskManagerTest extends InMemoryTaskManagerTest {
+    private static final File FILE = new File("data/testSaveMapped.tmm");
+
+    @Override
+    @BeforeEach
+    void eachSetUp() {
+        deleteFiles();
+        manager = Managers.loadMapped(FILE);
+        makeItems();
+    }
+
+    @AfterEach
+    void eachTearDown() {
+        ((MappedTaskManager) manager).close();
+        deleteFiles();
+    }
+
+    /**
+     * тестирование повторного открытия файла: задачи читаются из файла по запросу
+     */
+    @Test
+    void testReopen() {
+        addItemsToManager();
+        manager.deleteTaskById(6);
+        ((MappedTaskManager) manager).close();
+
+        MappedTaskManager reopened = Managers.loadMapped(FILE);
+        manager = reopened;
+
+        Task task = reopened.getTaskById(4);
+        Assertions.assertEquals(task4, task);
+        Assertions.assertEquals(task4.getStartTime(), task.getStartTime());
+        Assertions.assertEquals(task4.getDuration(), task.getDuration());
+        EpicTask epic = reopened.getEpicById(3);
+        Assertions.assertEquals(List.of(1, 2, 5, 8, 9), epic.getSubs());
+        Assertions.assertEquals(epic3.getStartTime(), epic.getStartTime());
+        Assertions.assertEquals(List.of(task4), reopened.getAllTasks());
+        Assertions.assertEquals(new HashSet<>(List.of(sub1, sub2, sub5, sub8, sub9)),
+                new HashSet<>(reopened.getAllSubs()));
+        Assertions.assertEquals(10, reopened.getNewTaskId());
+    }
+
+    /**
+     * тестирование проверки файла при открытии: записи ссылаются на строки за пределами
+     * усеченной кучи - файл не открывается
+     */
+    @Test
+    void testReopenTruncatedHeap() throws IOException {
+        addItemsToManager();
+        File heap = ((MappedTaskManager) manager).getHeapFile();
+        ((MappedTaskManager) manager).close();
+        try (FileChannel channel = FileChannel.open(heap.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() / 2);
+        }
+
+        Assertions.assertThrows(ManagerLoadException.class, () -> new MappedTaskManager(FILE));
+        deleteFiles();
+        manager = Managers.loadMapped(FILE);
+    }
+
+    /**
+     * тестирование повторного использования записей удаленных задач
+     */
+    @Test
+    void testReuseFreedRecords() {
+        addItemsToManager();
+        long length = FILE.length();
+        manager.deleteAllSubs();
+        manager.deleteAllTasks();
+        addItemsToManager();
+        ((MappedTaskManager) manager).close();
+
+        manager = Managers.loadMapped(FILE);
+
+        Assertions.assertEquals(length, FILE.length());
+        Assertions.assertEquals(5, manager.getAllSubs().size());
+        Assertions.assertEquals(2, manager.getAllTasks().size());
+        Assertions.assertEquals(2, manager.getAllEpics().size());
+    }
+
+    /**
+     * тестирование сжатия кучи строк: строки измененных и удаленных задач освобождаются,
+     * неизмененные строки не дописываются повторно, после повторного открытия строки читаются из новой кучи
+     */
+    @Test
+    void testCompactHeap() {
+        addItemsToManager();
+        MappedTaskManager mapped = (MappedTaskManager) manager;
+        long length = mapped.getHeapFile().length();
+        Task updated = new Task(4, task4.getName(), task4.getDescription(), task4.getDuration(), task4.getStartTime());
+        updated.setStatus(Status.DONE);
+        mapped.updateTask(updated);
+        Assertions.assertEquals(length, mapped.getHeapFile().length(), "неизмененные строки дописаны в кучу");
+
+        updated = new Task(4, "renamed 4", task4.getDescription(), task4.getDuration(), task4.getStartTime());
+        updated.setStatus(Status.DONE);
+        mapped.updateTask(updated);
+        mapped.deleteTaskById(6);
+        File previousHeap = mapped.getHeapFile();
+        mapped.compactHeap();
+
+        Assertions.assertFalse(previousHeap.exists(), "остался файл предыдущей кучи");
+        Assertions.assertEquals(length - task4.getName().length() + "renamed 4".length()
+                - task6.getName().length() - task6.getDescription().length(), mapped.getHeapFile().length());
+        Assertions.assertEquals("renamed 4", mapped.getTaskById(4).getName());
+        mapped.close();
+
+        manager = Managers.loadMapped(FILE);
+        Assertions.assertEquals("renamed 4", manager.getTaskById(4).getName());
+        Assertions.assertEquals(Status.DONE, manager.getTaskStatus(4));
+        Assertions.assertEquals(sub9.getDescription(), manager.getSubById(9).getDescription());
+        Assertions.assertNull(manager.getTaskById(6));
+    }
+
+    /**
+     * тестирование автоматического сжатия кучи строк при многократном изменении задачи
+     */
+    @Test
+    void testAutoCompactHeap() {
+        manager.addNewTask(task4);
+        String padding = "x".repeat(1000);
+        for (int i = 0; i < 500; i++) {
+            manager.updateTask(new Task(4, "name " + i + padding, "descr 4", task4.getDuration(),
+                    task4.getStartTime()));
+        }
+        long length = ((MappedTaskManager) manager).getHeapFile().length();
+        Assertions.assertTrue(length < 3 * 64 * 1024, "куча не сжата: " + length + " байт");
+        Assertions.assertEquals("name 499" + padding, manager.getTaskById(4).getName());
+    }
+
+    private void addItemsToManager() {
+        for (SubTask s : new SubTask[]{sub1, sub2, sub5, sub8, sub9}) {
+            manager.addNewSub(s);
+        }
+        for (EpicTask e : new EpicTask[]{epic3, epic7}) {
+            manager.addNewEpic(e);
+        }
+        for (Task t : new Task[]{task4, task6}) {
+            manager.addNewTask(t);
+        }
+    }
+
+    private static void deleteFiles() {
+        try {
+            Files.deleteIfExists(FILE.toPath());
+            Files.deleteIfExists(new File(FILE.getPath() + MappedTaskManager.HEAP_SUFFIX).toPath());
+            Files.deleteIfExists(new File(FILE.getPath() + MappedTaskManager.ALT_HEAP_SUFFIX).toPath());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -2,16 +2,29 @@ package test;
 
 import org.junit.Before;
 import org.junit.Test;
+import run.util.CsvCodec;
 import run.util.ManagerLoadException;
+import run.util.ParallelTaskLoader;
 import run.util.TaskLoader;
+import run.util.TaskSaver;
 import tasks.AbstractTask;
 import tasks.EpicTask;
+import tasks.Status;
 import tasks.SubTask;
 import tasks.Task;
+import tasks.TaskType;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.*;
 
@@ -32,6 +45,7 @@ public class TaskLoaderTest {
     HashMap<Integer, EpicTask> actEpics = new HashMap<>();
     TaskLoader taskLoader;
     int expMaxId;
+    static final int LARGE_FILE_TASKS = 100_000;
 
     /**
      * сохранение строк с данными о задачах в список строк
@@ -212,6 +226,239 @@ public class TaskLoaderTest {
         assertEquals(expMaxId, taskLoader.getMaxId());
     }
 
+    /**
+     * тест построчной загрузки большого файла
+     *
+     * @see TaskLoader#TaskLoader(File, TaskLoader.LoadProgress)
+     * проверка количества восстановленных задач, истории и отчета о ходе загрузки
+     */
+    @Test
+    public void loadLargeFileWithProgress() throws IOException {
+        File file = makeLargeFile();
+        List<Long> reported = new ArrayList<>();
+
+        TaskLoader loader = new TaskLoader(file, (bytesRead, totalBytes) -> reported.add(bytesRead));
+
+        assertEquals(LARGE_FILE_TASKS, loader.getTasks().size());
+        assertEquals(LARGE_FILE_TASKS, loader.getMaxId());
+        assertEquals(2, loader.getHistory().size());
+        assertEquals(LARGE_FILE_TASKS / 10_000 + 1, reported.size());
+        assertEquals(Long.valueOf(file.length()), reported.get(reported.size() - 1));
+        Files.delete(file.toPath());
+    }
+
+    /**
+     * тест параллельной загрузки
+     *
+     * @see ParallelTaskLoader#load(File, ForkJoinPool)
+     * результат должен совпадать с последовательной загрузкой
+     */
+    @Test
+    public void parallelLoadMatchesSequential() throws IOException {
+        File file = makeLargeFile();
+
+        TaskLoader sequential = new TaskLoader(file);
+        TaskLoader parallel = ParallelTaskLoader.load(file, new ForkJoinPool(4));
+
+        assertEquals(sequential.getTasks(), parallel.getTasks());
+        assertEquals(sequential.getMaxId(), parallel.getMaxId());
+        assertEquals(sequential.getHistory(), parallel.getHistory());
+        Files.delete(file.toPath());
+    }
+
+    /**
+     * тест параллельной загрузки файла без задач и истории
+     */
+    @Test
+    public void parallelLoadEmptyFile() throws IOException {
+        File file = new File("data/testLoadEmpty.csv");
+        Files.writeString(file.toPath(), TaskSaver.HEADER + "\n\n");
+
+        TaskLoader parallel = ParallelTaskLoader.load(file);
+
+        assertTrue(parallel.getTasks().isEmpty());
+        assertTrue(parallel.getHistory().isEmpty());
+        Files.delete(file.toPath());
+    }
+
+    /**
+     * тест параллельной загрузки файла с переводами строк "\r\n":
+     * пустая строка "\r\n\r\n" отделяет строку истории
+     */
+    @Test
+    public void parallelLoadCrLfFile() throws IOException {
+        File file = new File("data/testLoadCrLf.csv");
+        try {
+            Files.writeString(file.toPath(), String.join("\r\n", lines) + "\r\n");
+
+            TaskLoader parallel = ParallelTaskLoader.load(file);
+
+            assertEquals(new TaskLoader(file).getTasks(), parallel.getTasks());
+            assertEquals(List.of(1, 2, 3), parallel.getHistory().stream().map(AbstractTask::getId).toList());
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    /**
+     * тест сообщений о записях с ошибками формата
+     *
+     * @see ParallelTaskLoader#load(File, ForkJoinPool)
+     * параллельная загрузка (части файла разбираются в разных потоках) должна сообщать о пропущенных
+     * записях так же, как последовательная: те же номера записей в порядке файла
+     */
+    @Test
+    public void parallelLoadReportsMalformedRecords() throws IOException {
+        File file = new File("data/testLoadMalformed.csv");
+        PrintStream out = System.out;
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(file.toPath())) {
+                writer.write(TaskSaver.HEADER + '\n');
+                for (int id = 1; id <= 20_000; id++) {
+                    writer.write(id % 7_000 == 5
+                            ? id + ",NORM,name " + id + ",UNKNOWN,descr " + id + ",2000-01-01T00:00,PT0S\n"
+                            : id + ",NORM,name " + id + ",NEW,descr " + id + ",2000-01-01T00:00,PT0S\n");
+                }
+                writer.write("\n1,2");
+            }
+            ByteArrayOutputStream sequentialOut = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(sequentialOut, true, StandardCharsets.UTF_8));
+            TaskLoader sequential = new TaskLoader(file);
+            ByteArrayOutputStream parallelOut = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(parallelOut, true, StandardCharsets.UTF_8));
+            TaskLoader parallel = ParallelTaskLoader.load(file, new ForkJoinPool(4));
+            System.setOut(out);
+
+            assertEquals(sequential.getTasks(), parallel.getTasks());
+            assertEquals(20_000 - 3, parallel.getTasks().size());
+            assertEquals(sequentialOut.toString(StandardCharsets.UTF_8),
+                    parallelOut.toString(StandardCharsets.UTF_8));
+            assertTrue(parallelOut.toString(StandardCharsets.UTF_8).contains("запись 14005 пропущена"));
+        } finally {
+            System.setOut(out);
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    /**
+     * тест восстановления полей в кавычках (RFC-4180)
+     *
+     * @see run.util.CsvCodec
+     * название и описание с запятыми, кавычками и переводом строки, время начала и длительность
+     * должны совпадать после сохранения и последовательной/параллельной загрузки
+     */
+    @Test
+    public void loadQuotedFields() throws IOException {
+        Task task = new Task(1, "name, with comma", "say \"hi\"\nsecond line",
+                Duration.ofMinutes(90), LocalDateTime.of(2000, 1, 1, 10, 30, 15));
+        File file = new File("data/testLoadQuoted.csv");
+        Files.writeString(file.toPath(), TaskSaver.HEADER + '\n'
+                + TaskSaver.taskToString(task)
+                + "2,NORM,plain,DONE,plain,,\n"
+                + "\n1,2");
+
+        for (TaskLoader loader : List.of(new TaskLoader(file), ParallelTaskLoader.load(file))) {
+            Task restored = loader.getTasks().get(1);
+            assertEquals(task.getName(), restored.getName());
+            assertEquals(task.getDescription(), restored.getDescription());
+            assertEquals(task.getStartTime(), restored.getStartTime());
+            assertEquals(task.getDuration(), restored.getDuration());
+            assertEquals(AbstractTask.DEFAULT_TIME, loader.getTasks().get(2).getStartTime());
+            assertEquals(2, loader.getHistory().size());
+        }
+        Files.delete(file.toPath());
+    }
+
+    /**
+     * сравнение разбора записей однопроходным CsvCodec.Cursor и прежним разбором через String.split
+     *
+     * @see run.util.CsvCodec.Cursor
+     * оба разбора приводят все поля записи к типам задачи (включая время старта и длительность);
+     * результаты разбора должны совпадать, время разбора выводится на консоль
+     */
+    @Test
+    public void csvCodecVersusSplit() {
+        final int records = 200_000;
+        List<String> rows = new ArrayList<>(records);
+        LocalDateTime start = LocalDateTime.of(2000, 1, 1, 0, 0);
+        for (int id = 1; id <= records; id++) {
+            rows.add(id % 4 == 0
+                    ? id + ",SUBT,name " + id + ",DONE,descr " + id + "," + start.plusMinutes(id) + ",PT15M," + (id - 1)
+                    : id + ",NORM,name " + id + ",NEW,descr " + id + "," + start.plusMinutes(id) + ",PT1H30M");
+        }
+        long splitNanos = Long.MAX_VALUE;
+        long codecNanos = Long.MAX_VALUE;
+        // первый проход - прогрев, в результат идет лучший из проходов
+        for (int round = 0; round < 4; round++) {
+            long begin = System.nanoTime();
+            long expected = 0;
+            for (String row : rows) {
+                expected += splitChecksum(row);
+            }
+            long splitTime = System.nanoTime() - begin;
+            begin = System.nanoTime();
+            long actual = 0;
+            CsvCodec.Cursor cursor = new CsvCodec.Cursor();
+            for (String row : rows) {
+                actual += codecChecksum(cursor.reset(row));
+            }
+            long codecTime = System.nanoTime() - begin;
+            assertEquals(expected, actual);
+            if (round > 0) {
+                splitNanos = Math.min(splitNanos, splitTime);
+                codecNanos = Math.min(codecNanos, codecTime);
+            }
+        }
+        System.out.printf("разбор записи (%d записей): String.split %.0f нс, CsvCodec %.0f нс%n",
+                records, (double) splitNanos / records, (double) codecNanos / records);
+    }
+
+    /**
+     * прежний разбор записи (до CsvCodec): String.split и преобразование полей-строк
+     * @return контрольная сумма полей
+     */
+    private static long splitChecksum(String row) {
+        String[] fields = row.split(",");
+        int id = Integer.parseInt(fields[0]);
+        TaskType type = TaskType.valueOf(fields[1].toUpperCase().trim());
+        String name = fields[2];
+        Status status = Status.valueOf(fields[3].toUpperCase().trim());
+        String description = fields[4];
+        LocalDateTime start = LocalDateTime.parse(fields[5]);
+        Duration duration = Duration.parse(fields[6]);
+        int epicId = fields.length == 8 ? Integer.parseInt(fields[7]) : -1;
+        return checksum(id, type, name, status, description, start, duration, epicId);
+    }
+
+    /**
+     * разбор записи курсором CsvCodec (как в TaskLoader)
+     * @return контрольная сумма полей
+     */
+    private static long codecChecksum(CsvCodec.Cursor cursor) {
+        cursor.next();
+        int id = cursor.intValue();
+        cursor.next();
+        TaskType type = cursor.enumValue(TaskType.values());
+        cursor.next();
+        String name = cursor.stringValue();
+        cursor.next();
+        Status status = cursor.enumValue(Status.values());
+        cursor.next();
+        String description = cursor.stringValue();
+        cursor.next();
+        LocalDateTime start = cursor.dateTimeValue();
+        cursor.next();
+        Duration duration = cursor.durationValue();
+        int epicId = cursor.next() ? cursor.intValue() : -1;
+        return checksum(id, type, name, status, description, start, duration, epicId);
+    }
+
+    private static long checksum(int id, TaskType type, String name, Status status, String description,
+                                 LocalDateTime start, Duration duration, int epicId) {
+        return id + type.ordinal() + name.length() + status.ordinal() + description.length()
+                + start.getMinute() + duration.getSeconds() + epicId;
+    }
+
     /**
      * вспомогательный метод поиска первого расхождения в восстановленных мапах задач
      * @param expMap ожидаемый HashMap элементов (задач/подзадач/эпиков)
@@ -229,4 +476,20 @@ public class TaskLoaderTest {
         }
         return -1;
     }
-}
\ No newline at end of file
+
+    /**
+     * вспомогательный метод создания большого файла сохранения
+     * @return объект файла
+     */
+    private File makeLargeFile() throws IOException {
+        File file = new File("data/testLoadLarge.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath())) {
+            writer.write(TaskSaver.HEADER + '\n');
+            for (int id = 1; id <= LARGE_FILE_TASKS; id++) {
+                writer.write(id + ",NORM,name " + id + ",NEW,descr " + id + ",2000-01-01T00:00,PT0S\n");
+            }
+            writer.write("\n" + LARGE_FILE_TASKS + ",1");
+        }
+        return file;
+    }
+}
@@ -7,6 +7,7 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.Month;
 import java.util.*;
+import java.util.function.Predicate;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -373,10 +374,260 @@ abstract class TaskManagerTest<M extends TaskManager> {
         assertTrue(manager.getEpicById(epicId).getSubs().isEmpty(), "в списке подзадач эпика остались задачи");
     }
 
+    /**
+     * проверка пересечений по соседним задачам:
+     * пересечение с предыдущей и последующей задачей, совпадающий старт, задачи "встык"
+     * (промежутки задач полуоткрытые [start, end): задача нулевой длительности на старте другой задачи не пересекается)
+     *
+     * @param validateTimeFrame проверка пересечения менеджера (validateTimeFrame не входит в TaskManager)
+     */
+    void assertValidateTimeFrameNeighbours(Predicate<AbstractTask> validateTimeFrame) {
+        task6.setStartTime(LocalDateTime.of(2000, 1, 1, 0, 0, 0));
+        task6.setDuration(Duration.ofMinutes(10));
+        task4.setStartTime(LocalDateTime.of(2000, 1, 1, 0, 30, 0));
+        task4.setDuration(Duration.ofMinutes(10));
+        manager.addNewTask(task6);
+        manager.addNewTask(task4);
+
+        assertFalse(validateTimeFrame.test(makeTask(100, 5, 10)), "пересечение с предыдущей задачей");
+        assertFalse(validateTimeFrame.test(makeTask(100, 25, 10)), "пересечение с последующей задачей");
+        assertFalse(validateTimeFrame.test(makeTask(100, 30, 5)), "совпадающий старт");
+        assertTrue(validateTimeFrame.test(makeTask(100, 30, 0)), "задача нулевой длительности на старте задачи");
+        assertFalse(validateTimeFrame.test(makeTask(100, 35, 0)), "задача нулевой длительности внутри задачи");
+        assertFalse(validateTimeFrame.test(makeTask(100, 0, 60)), "задача накрывает обе задачи");
+        assertTrue(validateTimeFrame.test(makeTask(100, 10, 20)), "задача встык с обеими задачами");
+        assertTrue(validateTimeFrame.test(makeTask(100, 40, 10)), "задача после всех задач");
+    }
+
+    /**
+     * проверка задач нулевой длительности при полуоткрытых промежутках [start, end):
+     * свободный промежуток, проверка пересечений и добавление задачи на старте задачи нулевой длительности
+     * согласованы в любом порядке добавления; задача ненулевой длительности не может накрывать
+     * задачу нулевой длительности
+     *
+     * @param validateTimeFrame проверка пересечения менеджера (validateTimeFrame не входит в TaskManager)
+     */
+    void assertZeroDurationAtSharedStart(Predicate<AbstractTask> validateTimeFrame) {
+        LocalDateTime day = LocalDateTime.of(2000, 1, 1, 0, 0, 0);
+        manager.addNewTask(makeTask(6, 0, 10));
+        assertEquals(100, manager.addNewTask(makeTask(100, 30, 0)));
+
+        assertEquals(day.plusMinutes(30), manager.findFreeSlot(day.plusMinutes(30), Duration.ofMinutes(10), null));
+        assertTrue(validateTimeFrame.test(makeTask(101, 30, 10)), "задача на старте задачи нулевой длительности");
+        assertEquals(101, manager.addNewTask(makeTask(101, 30, 10)));
+        assertFalse(validateTimeFrame.test(makeTask(102, 35, 0)), "задача нулевой длительности внутри задачи");
+        assertFalse(validateTimeFrame.test(makeTask(102, 30, 5)), "совпадающий старт задач ненулевой длительности");
+        assertTrue(validateTimeFrame.test(makeTask(102, 40, 0)), "задача нулевой длительности на окончании задачи");
+
+        assertEquals(103, manager.addNewTask(makeTask(103, 50, 0)));
+        assertEquals(day.plusMinutes(50), manager.findFreeSlot(day.plusMinutes(45), Duration.ofMinutes(10), null));
+        assertFalse(validateTimeFrame.test(makeTask(104, 45, 10)), "задача накрывает задачу нулевой длительности");
+
+        assertArrayEquals(new int[]{6, 100, 101, 103}, ids(manager.getPrioritizedTasks()));
+        assertArrayEquals(new int[]{101}, ids(manager.getTasksActiveAt(day.plusMinutes(30))));
+        assertArrayEquals(new int[]{101, 103}, ids(manager.getPrioritizedPage(day.plusMinutes(30), 100, 3)));
+        assertArrayEquals(new int[]{103}, ids(manager.getPrioritizedPage(day.plusMinutes(30), 101, 3)));
+        assertArrayEquals(new int[]{100, 101}, ids(manager.getTasksStartingBetween(day.plusMinutes(30),
+                day.plusMinutes(50))));
+
+        manager.deleteTaskById(100);
+        assertTrue(validateTimeFrame.test(makeTask(100, 30, 0)), "задача нулевой длительности на старте задачи");
+        assertEquals(100, manager.addNewTask(makeTask(100, 30, 0)));
+        assertArrayEquals(new int[]{6, 100, 101, 103}, ids(manager.getPrioritizedTasks()));
+    }
+
+    /**
+     * проверка статуса эпика после обновления и удаления подзадач:
+     * обновленная подзадача заменяет предыдущую в эпике, статус замененной подзадачи не учитывается
+     */
+    void assertEpicStatusAfterUpdateSub() {
+        manager.addNewSub(sub1);
+        manager.addNewSub(sub2);
+        manager.addNewSub(sub5);
+        manager.addNewEpic(epic3);
+        assertEquals(Status.NEW, manager.getEpicStatus(3));
+
+        SubTask updated = new SubTask(2, 3, "name 2", "descr 2", sub2.getDuration(), sub2.getStartTime());
+        updated.setStatus(Status.DONE);
+        assertEquals(2, manager.updateSub(updated));
+        assertEquals(Status.IN_PROGRESS, manager.getEpicStatus(3));
+        sub2.setStatus(Status.NEW);
+        assertEquals(Status.IN_PROGRESS, manager.getEpicStatus(3), "учтен статус замененной подзадачи");
+
+        updated = new SubTask(1, 3, "name 1", "descr 1", sub1.getDuration(), sub1.getStartTime());
+        updated.setStatus(Status.DONE);
+        assertEquals(1, manager.updateSub(updated));
+        manager.deleteSubById(5);
+        assertEquals(Status.DONE, manager.getEpicStatus(3));
+        manager.clearSubsListOfEpic(3);
+        assertEquals(Status.NEW, manager.getEpicStatus(3));
+    }
+
+    /**
+     * проверка потоков задач и постраничного вывода:
+     * страницы подзадач эпика по идентификатору, страницы списка приоритетов по времени старта
+     */
+    void assertStreamsAndPages() {
+        epic3.addSubTask(sub8, sub9);
+        Arrays.stream(new SubTask[]{sub1, sub2, sub5, sub8, sub9}).forEach(s -> manager.addNewSub(s));
+        manager.addNewEpic(epic3);
+        manager.addNewTask(task4);
+        manager.addNewTask(task6);
+
+        assertEquals(5, manager.streamSubs().count());
+        assertArrayEquals(new int[]{4, 6}, manager.streamTasks().mapToInt(Task::getId).sorted().toArray());
+        assertEquals(List.of(epic3), manager.streamEpics().toList());
+
+        assertArrayEquals(new int[]{1, 2}, ids(manager.getSubsPage(3, Integer.MIN_VALUE, 2)));
+        assertArrayEquals(new int[]{5, 8}, ids(manager.getSubsPage(3, 2, 2)));
+        assertArrayEquals(new int[]{9}, ids(manager.getSubsPage(3, 8, 2)));
+        assertTrue(manager.getSubsPage(3, 9, 2).isEmpty(), "страница после последней подзадачи не пуста");
+        assertTrue(manager.getSubsPage(99, Integer.MIN_VALUE, 2).isEmpty());
+
+        assertArrayEquals(new int[]{1, 2, 4}, ids(manager.getPrioritizedPage(null, 3)));
+        assertArrayEquals(new int[]{6, 5, 8}, ids(manager.getPrioritizedPage(task4.getStartTime(), 3)));
+        assertArrayEquals(new int[]{9}, ids(manager.getPrioritizedPage(sub8.getStartTime(), 3)));
+        assertTrue(manager.getPrioritizedPage(sub9.getStartTime(), 3).isEmpty());
+    }
+
+    /**
+     * проверка обхода списка приоритетов по курсору (время старта, идентификатор) до конца:
+     * после задач с временем старта выводятся задачи без времени старта, каждая задача - ровно один раз
+     */
+    void assertPrioritizedPagesWithUnscheduled() {
+        Arrays.stream(new SubTask[]{sub1, sub2, sub5}).forEach(s -> manager.addNewSub(s));
+        manager.addNewTask(task4);
+        for (int id : new int[]{22, 20, 21}) {
+            manager.addNewTask(new Task(id, "name " + id, "descr " + id, Duration.ZERO, Task.DEFAULT_TIME));
+        }
+        manager.addNewTask(task6);
+
+        List<Integer> walked = new ArrayList<>();
+        List<Task> page = manager.getPrioritizedPage(null, 0, 2);
+        for (int pages = 0; !page.isEmpty(); pages++) {
+            assertTrue(pages < 10, "постраничный обход не заканчивается");
+            page.forEach(task -> walked.add(task.getId()));
+            Task last = page.get(page.size() - 1);
+            page = manager.getPrioritizedPage(last.getStartTime(), last.getId(), 2);
+        }
+        assertEquals(List.of(1, 2, 4, 6, 5, 20, 21, 22), walked);
+        assertArrayEquals(new int[]{1, 2, 4, 6, 5, 20, 21, 22}, ids(manager.getPrioritizedTasks()));
+
+        assertArrayEquals(new int[]{20, 21}, ids(manager.getPrioritizedPage(sub5.getStartTime(), 2)),
+                "после задач с временем старта не выведены задачи без времени старта");
+        manager.deleteTaskById(21);
+        assertArrayEquals(new int[]{22}, ids(manager.getPrioritizedPage(Task.DEFAULT_TIME, 21, 2)),
+                "курсор по удаленной задаче");
+    }
+
+    /**
+     * проверка выборки задач и подзадач по статусу (в т.ч. подзадач эпика)
+     * статус меняется обновлением, прямым изменением задачи и удалением
+     */
+    void assertStatusQueries() {
+        Arrays.stream(new SubTask[]{sub1, sub2, sub5}).forEach(s -> manager.addNewSub(s));
+        manager.addNewEpic(epic3);
+        manager.addNewTask(task4);
+        manager.addNewTask(task6);
+
+        assertArrayEquals(new int[]{4, 6}, sortedIds(manager.getTasksByStatus(Status.NEW)));
+        assertArrayEquals(new int[]{1, 2, 5}, sortedIds(manager.getSubsByStatus(3, Status.NEW)));
+        assertTrue(manager.getSubsByStatus(Status.DONE).isEmpty());
+
+        sub2.setStatus(Status.DONE);
+        task6.setStatus(Status.IN_PROGRESS);
+        assertArrayEquals(new int[]{1, 5}, sortedIds(manager.getSubsByStatus(Status.NEW)));
+        assertArrayEquals(new int[]{2}, sortedIds(manager.getSubsByStatus(3, Status.DONE)));
+        assertArrayEquals(new int[]{6}, sortedIds(manager.getTasksByStatus(Status.IN_PROGRESS)));
+
+        Task updated = new Task(4, "name 4", "descr 4", task4.getDuration(), task4.getStartTime());
+        updated.setStatus(Status.DONE);
+        manager.updateTask(updated);
+        assertTrue(manager.getTasksByStatus(Status.NEW).isEmpty(), "в индексе осталась замененная задача");
+        assertArrayEquals(new int[]{4}, sortedIds(manager.getTasksByStatus(Status.DONE)));
+        task4.setStatus(Status.IN_PROGRESS);
+        assertArrayEquals(new int[]{6}, sortedIds(manager.getTasksByStatus(Status.IN_PROGRESS)),
+                "учтен статус замененной задачи");
+
+        manager.deleteSubById(2);
+        assertTrue(manager.getSubsByStatus(Status.DONE).isEmpty());
+        assertTrue(manager.getSubsByStatus(3, Status.DONE).isEmpty());
+        assertTrue(manager.getSubsByStatus(99, Status.NEW).isEmpty());
+        manager.deleteAllTasks();
+        assertTrue(manager.getTasksByStatus(Status.IN_PROGRESS).isEmpty());
+        assertTrue(manager.getTasksByStatus(Status.DONE).isEmpty());
+    }
+
+    /**
+     * проверка выборки задач по промежутку старта и по моменту выполнения
+     */
+    void assertTimeRangeQueries() {
+        Arrays.stream(new SubTask[]{sub1, sub2, sub5, sub8, sub9}).forEach(s -> manager.addNewSub(s));
+        manager.addNewTask(task4);
+        manager.addNewTask(task6);
+        LocalDateTime day = LocalDateTime.of(2000, 1, 1, 0, 0, 0);
+
+        assertArrayEquals(new int[]{1, 2, 4, 6, 5}, ids(manager.getTasksStartingBetween(day, day.plusDays(1))));
+        assertArrayEquals(new int[]{2, 4}, ids(manager.getTasksStartingBetween(day.plusMinutes(20),
+                day.plusMinutes(55))), "старт окончания промежутка не включается");
+        assertArrayEquals(new int[]{8}, ids(manager.getTasksStartingBetween(day.plusYears(1),
+                day.plusYears(2))));
+        assertTrue(manager.getTasksStartingBetween(day.plusDays(1), day).isEmpty());
+
+        assertArrayEquals(new int[]{1}, ids(manager.getTasksActiveAt(day)));
+        assertArrayEquals(new int[]{2}, ids(manager.getTasksActiveAt(day.plusMinutes(20))),
+                "задача, заканчивающаяся в этот момент, не выполняется");
+        assertArrayEquals(new int[]{6}, ids(manager.getTasksActiveAt(day.plusMinutes(84))));
+        assertArrayEquals(new int[]{5}, ids(manager.getTasksActiveAt(day.plusMinutes(85))));
+        assertTrue(manager.getTasksActiveAt(day.plusMinutes(36)).isEmpty(), "промежуток между задачами");
+        assertTrue(manager.getTasksActiveAt(day.minusMinutes(1)).isEmpty());
+        assertArrayEquals(new int[]{8, 9}, ids(manager.getPrioritizedPage(day.plusMinutes(85), 2)));
+    }
+
+    /**
+     * проверка поиска ближайшего свободного промежутка (до и после удаления задачи)
+     */
+    void assertFindFreeSlot() {
+        Arrays.stream(new SubTask[]{sub1, sub2, sub5, sub8}).forEach(s -> manager.addNewSub(s));
+        manager.addNewTask(task4);
+        manager.addNewTask(task6);
+        LocalDateTime day = LocalDateTime.of(2000, 1, 1, 0, 0, 0);
+
+        assertEquals(day.plusMinutes(35), manager.findFreeSlot(day, Duration.ofMinutes(5), null));
+        assertEquals(day.plusMinutes(36), manager.findFreeSlot(day.plusMinutes(36), Duration.ofMinutes(3), null));
+        assertEquals(day.plusMinutes(105), manager.findFreeSlot(day, Duration.ofMinutes(6), null));
+        assertNull(manager.findFreeSlot(day, Duration.ofMinutes(6), day.plusHours(1)));
+        assertEquals(day.minusHours(1), manager.findFreeSlot(day.minusHours(1), Duration.ofMinutes(60), null));
+        assertEquals(sub8.getEndTime(), manager.findFreeSlot(sub8.getStartTime(), Duration.ofDays(1000), null));
+
+        manager.deleteTaskById(4);
+        assertEquals(day.plusMinutes(35), manager.findFreeSlot(day, Duration.ofMinutes(20), null));
+        Task scheduled = new Task(10, "name 10", "descr 10", Duration.ofMinutes(20),
+                manager.findFreeSlot(day, Duration.ofMinutes(20), null));
+        assertEquals(10, manager.addNewTask(scheduled));
+        assertEquals(day.plusMinutes(105), manager.findFreeSlot(day, Duration.ofMinutes(1), null));
+    }
+
+    private static int[] sortedIds(List<? extends AbstractTask> items) {
+        return items.stream().mapToInt(AbstractTask::getId).sorted().toArray();
+    }
+
+    private static int[] ids(List<? extends AbstractTask> items) {
+        return items.stream().mapToInt(AbstractTask::getId).toArray();
+    }
+
     void assertGetPrioritizedTasks(Task[] tasks, SubTask[] subs, int[] expected) {
         Arrays.stream(tasks).forEach(t -> manager.addNewTask(t));
         Arrays.stream(subs).forEach(s -> manager.addNewSub(s));
         int[] actual = manager.getPrioritizedTasks().stream().mapToInt(e -> e.getId()).toArray();
         assertArrayEquals(expected, actual);
     }
-}
\ No newline at end of file
+
+    /**
+     * задача с заданным стартом (в минутах от 2000-01-01 00:00) и длительностью
+     */
+    static Task makeTask(int id, long startMinute, long durationMinutes) {
+        return new Task(id, "name " + id, "descr " + id, Duration.ofMinutes(durationMinutes),
+                LocalDateTime.of(2000, 1, 1, 0, 0, 0).plusMinutes(startMinute));
+    }
+}
@@ -0,0 +1,98 @@
+package test;
+
+import org.junit.jupiter.api.Test;
+import run.InMemoryTaskManager;
+import run.util.Managers;
+import run.util.TimeSlotGrid;
+import tasks.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * тест сетки занятости: проверка пересечения по сетке совпадает с проверкой по списку приоритетов
+ * при добавлении и удалении задач (в т.ч. за пределами горизонта), скорость проверки
+ * в сравнении с проверкой по списку приоритетов
+ */
+class TimeSlotGridTest {
+    private static final LocalDateTime START = LocalDateTime.of(2020, 1, 1, 0, 0, 0);
+
+    @Test
+    void testCheck() {
+        TimeSlotGrid grid = new TimeSlotGrid(START, Duration.ofMinutes(15), 4);
+        grid.book(START.plusMinutes(20), START.plusMinutes(25));
+
+        assertEquals(START.plusHours(1), grid.getHorizon());
+        assertTrue(grid.covers(START, START.plusHours(1)));
+        assertFalse(grid.covers(START.minusMinutes(1), START.plusMinutes(5)));
+        assertEquals(TimeSlotGrid.Occupancy.FREE, grid.check(START, START.plusMinutes(15)));
+        assertEquals(TimeSlotGrid.Occupancy.FREE, grid.check(START.plusMinutes(30), START.plusMinutes(45)));
+        assertEquals(TimeSlotGrid.Occupancy.BUSY, grid.check(START, START.plusMinutes(30)));
+        assertEquals(TimeSlotGrid.Occupancy.UNKNOWN, grid.check(START.plusMinutes(25), START.plusMinutes(30)));
+        grid.release(START.plusMinutes(20), START.plusMinutes(25));
+        assertEquals(TimeSlotGrid.Occupancy.FREE, grid.check(START, START.plusHours(1)));
+    }
+
+    @Test
+    void testSameResultAsTreeCheck() {
+        InMemoryTaskManager withGrid = new InMemoryTaskManager(Managers.getDefaultHistory());
+        InMemoryTaskManager withoutGrid = new InMemoryTaskManager(Managers.getDefaultHistory());
+        withGrid.setTimeGrid(new TimeSlotGrid(START, Duration.ofMinutes(15), 96 * 5));
+        Random random = new Random(22);
+        for (int id = 0; id < 20_000; id++) {
+            // задачи частично за пределами горизонта (5 суток) и нулевой длительности
+            Task task = new Task(id, "name", "descr", Duration.ofMinutes(random.nextInt(40)),
+                    START.plusMinutes(random.nextInt(8_000) - 300));
+            boolean valid = withoutGrid.validateTimeFrame(task);
+            assertEquals(valid, withGrid.validateTimeFrame(task), task.toString());
+            if (valid) {
+                assertEquals(id, withGrid.addNewTask(task));
+                assertEquals(id, withoutGrid.addNewTask(task));
+            }
+            if (id % 3 == 0) {
+                int deleted = random.nextInt(id + 1);
+                withGrid.deleteTaskById(deleted);
+                withoutGrid.deleteTaskById(deleted);
+            }
+        }
+        assertEquals(withoutGrid.getPrioritizedTasks(), withGrid.getPrioritizedTasks());
+    }
+
+    @Test
+    void testProbeThroughput() {
+        InMemoryTaskManager withGrid = new InMemoryTaskManager(Managers.getDefaultHistory());
+        InMemoryTaskManager withoutGrid = new InMemoryTaskManager(Managers.getDefaultHistory());
+        // горизонт - 1 год слотами по 15 минут
+        withGrid.setTimeGrid(new TimeSlotGrid(START, Duration.ofMinutes(15), 96 * 366));
+        for (int id = 0; id < 20_000; id++) {
+            Task task = new Task(id, "name", "descr", Duration.ofMinutes(60), START.plusHours(id / 8 * 24 + id % 8));
+            withGrid.addNewTask(task);
+            withoutGrid.addNewTask(task);
+        }
+        final int probes = 1_000_000;
+        Random random = new Random(1);
+        Task[] probe = new Task[1_024];
+        for (int i = 0; i < probe.length; i++) {
+            probe[i] = new Task(-1, "probe", "descr", Duration.ofMinutes(30),
+                    START.plusMinutes(15L * random.nextInt(96 * 365)));
+        }
+        int expected = 0;
+        long begin = System.nanoTime();
+        for (int i = 0; i < probes; i++) {
+            expected += withoutGrid.validateTimeFrame(probe[i & 1_023]) ? 1 : 0;
+        }
+        long treeNanos = System.nanoTime() - begin;
+        int actual = 0;
+        begin = System.nanoTime();
+        for (int i = 0; i < probes; i++) {
+            actual += withGrid.validateTimeFrame(probe[i & 1_023]) ? 1 : 0;
+        }
+        long gridNanos = System.nanoTime() - begin;
+        System.out.printf("проверка пересечения (1 000 000 проверок): список приоритетов %.0f нс, сетка %.0f нс%n",
+                (double) treeNanos / probes, (double) gridNanos / probes);
+        assertEquals(expected, actual);
+    }
+}